@@ -49,6 +49,16 @@ public final class BluetoothBindingConstants {
     public static final String CHANNEL_ADAPTER = "adapter";
     public static final String CHANNEL_CONNECTED_ADAPTER = "connected-adapter";
     public static final String CHANNEL_AUTHENTICATED = "authenticated";
+    public static final String CHANNEL_ADVERTISEMENT_RATE = "advertisement-rate";
+    public static final String CHANNEL_DEVICES_SEEN = "devices-seen";
+    public static final String CHANNEL_DEVICES_CONNECTED = "devices-connected";
+    public static final String CHANNEL_OPERATIONS_IN_FLIGHT = "operations-in-flight";
+    public static final String CHANNEL_OPERATION_LATENCY = "operation-latency";
+    public static final String CHANNEL_FAILED_OPERATIONS = "failed-operations";
+    public static final String CHANNEL_GATT_LATENCY_P50 = "gatt-latency-p50";
+    public static final String CHANNEL_GATT_LATENCY_P95 = "gatt-latency-p95";
+    public static final String CHANNEL_GATT_LATENCY_P99 = "gatt-latency-p99";
+    public static final String CHANNEL_GATT_ERROR_RATE = "gatt-error-rate";
 
     // Thing (device) properties
     public static final String PROPERTY_ADDRESS = "Address";
@@ -77,5 +87,17 @@ public final class BluetoothBindingConstants {
     public static final String DEFAULT_ADAPTERS_LOCATION = "Bluetooth Adapters";
     public static final String DEFAULT_DEVICES_LOCATION = "Bluetooth Devices";
     public static final int DEFAULT_RSS_REPORTING_RATE = 5000;
+    public static final int DEFAULT_CHANNEL_TYPE_CACHE_SIZE = 1000;
+    public static final int DEFAULT_INITIALIZATION_WAVE_SIZE = 0;
+    public static final int DEFAULT_INITIALIZATION_WAVE_INTERVAL = 1000;
+    public static final int DEFAULT_CONFIGURATION_WRITE_DELAY = 1000;
+    public static final int DEFAULT_MAILBOX_CAPACITY = 1000;
+    public static final int DEFAULT_IO_THREADS = 2;
+    public static final int DEFAULT_IO_QUEUE_CAPACITY = 100;
+    public static final int DEFAULT_ADAPTER_METRICS_INTERVAL = 10;
+    public static final int DEFAULT_DEVICE_METRICS_INTERVAL = 60;
+    public static final int DEFAULT_TRACING_BUFFER_SIZE = 256;
+    public static final int DEFAULT_PROMETHEUS_EXPORT_INTERVAL = 15;
+    public static final int DEFAULT_CAPTURE_QUEUE_CAPACITY = 4096;
 
 }
@@ -0,0 +1,110 @@
+package org.sputnikdev.esh.binding.bluetooth.capture;
+
+import org.sputnikdev.bluetooth.URL;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads captured payloads from a binary log written by {@link CaptureWriter}.
+ *
+ * @author Vlad Kolotov
+ */
+public class CaptureReader implements Closeable {
+
+    private static final CaptureRecord.Type[] TYPES = CaptureRecord.Type.values();
+
+    private final DataInputStream input;
+    private final List<URL> urls = new ArrayList<>();
+    private boolean headerRead;
+    private long lastTimestamp;
+
+    /**
+     * Creates a reader.
+     * @param input input stream, it is recommended to be buffered
+     */
+    public CaptureReader(InputStream input) {
+        this.input = new DataInputStream(input);
+    }
+
+    /**
+     * Reads next record.
+     * A truncated last record (e.g. the binding was killed while capturing) is treated as the end of the log.
+     * @return next record or null if the end of the log is reached
+     * @throws IOException if the log is corrupted or cannot be read
+     */
+    public CaptureRecord read() throws IOException {
+        if (!headerRead && !readHeader()) {
+            return null;
+        }
+        int type = input.read();
+        if (type < 0) {
+            return null;
+        }
+        if (type >= TYPES.length) {
+            throw new IOException("Unknown record type: " + type);
+        }
+        try {
+            return readRecord(TYPES[type]);
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private CaptureRecord readRecord(CaptureRecord.Type type) throws IOException {
+        long delta = readVarLong();
+        lastTimestamp += (delta >>> 1) ^ -(delta & 1);
+        int index = (int) readVarLong();
+        if (index == urls.size()) {
+            urls.add(new URL(input.readUTF()));
+        } else if (index > urls.size()) {
+            throw new IOException("Unknown URL index: " + index);
+        }
+        byte[] payload = new byte[(int) readVarLong()];
+        input.readFully(payload);
+        return new CaptureRecord(type, lastTimestamp, urls.get(index), payload);
+    }
+
+    private boolean readHeader() throws IOException {
+        int magic;
+        try {
+            magic = input.readInt();
+        } catch (EOFException ex) {
+            // empty log
+            return false;
+        }
+        if (magic != CaptureWriter.MAGIC) {
+            throw new IOException("Not a bluetooth capture log");
+        }
+        byte version = input.readByte();
+        if (version != CaptureWriter.VERSION) {
+            throw new IOException("Unsupported bluetooth capture log version: " + version);
+        }
+        lastTimestamp = input.readLong();
+        headerRead = true;
+        return true;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.sputnikdev.esh.binding.bluetooth.capture;
+
+import org.sputnikdev.bluetooth.URL;
+
+/**
+ * A payload captured from a governor callback: advertised service data, an RSSI sample or a characteristic
+ * notification.
+ *
+ * @author Vlad Kolotov
+ */
+public final class CaptureRecord {
+
+    /**
+     * Captured payload types.
+     */
+    public enum Type {
+        /**
+         * Advertised service data (or manufacturer data), URL of the (virtual) service.
+         */
+        SERVICE_DATA,
+        /**
+         * RSSI sample (big-endian short), URL of the device.
+         */
+        RSSI,
+        /**
+         * Characteristic notification, URL of the characteristic.
+         */
+        NOTIFICATION
+    }
+
+    private final Type type;
+    private final long timestamp;
+    private final URL url;
+    private final byte[] payload;
+
+    /**
+     * Creates a record.
+     * @param type payload type
+     * @param timestamp capture time, microseconds since epoch
+     * @param url device, service or characteristic URL
+     * @param payload payload
+     */
+    public CaptureRecord(Type type, long timestamp, URL url, byte[] payload) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.url = url;
+        this.payload = payload;
+    }
+
+    /**
+     * Creates an RSSI record.
+     * @param timestamp capture time, microseconds since epoch
+     * @param url device URL
+     * @param rssi RSSI
+     * @return RSSI record
+     */
+    public static CaptureRecord rssi(long timestamp, URL url, short rssi) {
+        return new CaptureRecord(Type.RSSI, timestamp, url, new byte[] {(byte) (rssi >> 8), (byte) rssi});
+    }
+
+    /**
+     * Returns payload type.
+     * @return payload type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns capture time, microseconds since epoch.
+     * @return capture time
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns device URL (RSSI), service URL (service data) or characteristic URL (notifications).
+     * @return URL
+     */
+    public URL getURL() {
+        return url;
+    }
+
+    /**
+     * Returns captured payload.
+     * @return payload
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Decodes RSSI of an RSSI record.
+     * @return RSSI
+     */
+    public short getRSSI() {
+        return (short) ((payload[0] << 8) | (payload[1] & 0xFF));
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + timestamp + " " + url + " (" + payload.length + " bytes)";
+    }
+
+}
@@ -0,0 +1,200 @@
+package org.sputnikdev.esh.binding.bluetooth.capture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.URL;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An opt-in recorder of payloads (advertised service data, RSSI samples, characteristic notifications) seen by
+ * the handlers. Payloads are appended to a binary log (see {@link CaptureWriter}) which can be fed back through
+ * the handlers by {@link ReplayEngine}, e.g. to benchmark or to reproduce parse errors on production traffic.
+ *
+ * <p>Governor callbacks only put records into a bounded queue, records are written by a dedicated thread.
+ * If the queue is full (the disk cannot keep up), records are dropped rather than blocking bluetooth callbacks.
+ * When the recorder is not recording, there are no allocations and no shared state is touched.
+ *
+ * @author Vlad Kolotov
+ */
+public class CaptureRecorder {
+
+    private static final long FLUSH_INTERVAL = 1000;
+    private static final long STOP_TIMEOUT = 5000;
+    // capture time is measured by the monotonic clock (microsecond resolution) relative to the epoch time
+    private static final long EPOCH_MICROS = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private static final long EPOCH_NANOS = System.nanoTime();
+
+    private Logger logger = LoggerFactory.getLogger(CaptureRecorder.class);
+
+    private final int queueCapacity;
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicReference<Recording> recording = new AtomicReference<>();
+
+    /**
+     * Creates a recorder.
+     * @param queueCapacity max number of records waiting to be written
+     */
+    public CaptureRecorder(int queueCapacity) {
+        this.queueCapacity = Math.max(queueCapacity, 1);
+    }
+
+    /**
+     * Starts recording into a file. The file gets overwritten if it exists.
+     * @param file a log file
+     * @throws IOException if the file cannot be created
+     */
+    public synchronized void start(Path file) throws IOException {
+        stop();
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        start(file, new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+
+    synchronized void start(Path file, OutputStream output) {
+        stop();
+        recorded.set(0);
+        dropped.set(0);
+        Recording current = new Recording(file, new CaptureWriter(output));
+        recording.set(current);
+        current.thread.start();
+        logger.info("Capturing bluetooth payloads to: {}", file);
+    }
+
+    /**
+     * Stops recording, records which are still in the queue get written.
+     */
+    public synchronized void stop() {
+        Recording current = recording.getAndSet(null);
+        if (current != null) {
+            current.stopped = true;
+            try {
+                current.thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.info("Stopped capturing bluetooth payloads to: {}, recorded: {}, dropped: {}",
+                    current.file, recorded.get(), dropped.get());
+        }
+    }
+
+    /**
+     * Records a payload if the recorder is recording.
+     * @param type payload type
+     * @param url device, service or characteristic URL
+     * @param payload payload
+     */
+    public void record(CaptureRecord.Type type, URL url, byte[] payload) {
+        Recording current = recording.get();
+        if (current != null) {
+            current.offer(new CaptureRecord(type, now(), url, payload.clone()));
+        }
+    }
+
+    /**
+     * Records an RSSI sample if the recorder is recording.
+     * @param url device URL
+     * @param rssi RSSI
+     */
+    public void recordRSSI(URL url, short rssi) {
+        Recording current = recording.get();
+        if (current != null) {
+            current.offer(CaptureRecord.rssi(now(), url, rssi));
+        }
+    }
+
+    /**
+     * Checks whether the recorder is recording.
+     * @return true if the recorder is recording
+     */
+    public boolean isRecording() {
+        return recording.get() != null;
+    }
+
+    /**
+     * Returns the file being recorded to.
+     * @return log file or null if the recorder is not recording
+     */
+    public Path getFile() {
+        Recording current = recording.get();
+        return current != null ? current.file : null;
+    }
+
+    /**
+     * Returns number of records written by the current (or the last) recording.
+     * @return number of written records
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * Returns number of records dropped by the current (or the last) recording because the queue was full.
+     * @return number of dropped records
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private static long now() {
+        return EPOCH_MICROS + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - EPOCH_NANOS);
+    }
+
+    /**
+     * A recording session: the queue and the thread which writes records from the queue into the file.
+     */
+    private final class Recording implements Runnable {
+
+        private final Path file;
+        private final CaptureWriter writer;
+        private final BlockingQueue<CaptureRecord> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread thread;
+        private volatile boolean stopped;
+
+        private Recording(Path file, CaptureWriter writer) {
+            this.file = file;
+            this.writer = writer;
+            thread = new Thread(this, "bluetooth-capture");
+            thread.setDaemon(true);
+        }
+
+        private void offer(CaptureRecord record) {
+            if (stopped || !queue.offer(record)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            try (CaptureWriter output = writer) {
+                while (!stopped || !queue.isEmpty()) {
+                    CaptureRecord record = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (record != null) {
+                        output.write(record);
+                        recorded.incrementAndGet();
+                    } else {
+                        output.flush();
+                    }
+                }
+            } catch (IOException ex) {
+                logger.warn("Could not capture bluetooth payloads: {} : {}", file, ex.getMessage());
+                stopped = true;
+                // the recording is over, unless it has been stopped or replaced already
+                recording.compareAndSet(this, null);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.sputnikdev.esh.binding.bluetooth.capture;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes captured payloads into a compact binary log. The log starts with a header:
+ * <pre>
+ *     int     magic ("BTCP")
+ *     byte    version
+ *     long    timestamp of the first record, microseconds since epoch
+ * </pre>
+ * followed by records:
+ * <pre>
+ *     byte    record type (ordinal of {@link CaptureRecord.Type})
+ *     varlong time since the previous record, microseconds (zigzag encoded)
+ *     varint  URL index, URLs are written once: a new index is followed by the URL string (modified UTF-8)
+ *     varint  payload length
+ *     byte[]  payload
+ * </pre>
+ * A typical advertisement record takes a few bytes on top of its payload.
+ *
+ * @author Vlad Kolotov
+ */
+public class CaptureWriter implements Closeable, Flushable {
+
+    static final int MAGIC = 0x42544350;
+    static final byte VERSION = 1;
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> urls = new HashMap<>();
+    private boolean headerWritten;
+    private long lastTimestamp;
+
+    /**
+     * Creates a writer.
+     * @param output output stream, it is recommended to be buffered
+     */
+    public CaptureWriter(OutputStream output) {
+        this.output = new DataOutputStream(output);
+    }
+
+    /**
+     * Appends a record to the log.
+     * @param record a record
+     * @throws IOException if the record cannot be written
+     */
+    public void write(CaptureRecord record) throws IOException {
+        if (!headerWritten) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeLong(record.getTimestamp());
+            lastTimestamp = record.getTimestamp();
+            headerWritten = true;
+        }
+        output.writeByte(record.getType().ordinal());
+        long delta = record.getTimestamp() - lastTimestamp;
+        writeVarLong((delta << 1) ^ (delta >> 63));
+        lastTimestamp = record.getTimestamp();
+        String url = record.getURL().toString();
+        Integer index = urls.get(url);
+        if (index == null) {
+            writeVarLong(urls.size());
+            output.writeUTF(url);
+            urls.put(url, urls.size());
+        } else {
+            writeVarLong(index);
+        }
+        writeVarLong(record.getPayload().length);
+        output.write(record.getPayload());
+    }
+
+    @Override
+    public void flush() throws IOException {
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.sputnikdev.esh.binding.bluetooth.capture;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Feeds captured payloads (see {@link CaptureRecorder}) back to a consumer (normally bluetooth handlers),
+ * in the recorded order and either preserving the recorded timing (optionally accelerated) or as fast as possible.
+ * Replaying the same log against different versions of the binding gives identical input, which makes
+ * results of optimisations comparable.
+ *
+ * @author Vlad Kolotov
+ */
+public class ReplayEngine {
+
+    /**
+     * Replays payloads with the recorded timing.
+     */
+    public static final double REAL_TIME = 1;
+    /**
+     * Replays payloads as fast as possible.
+     */
+    public static final double MAX_SPEED = 0;
+
+    private final double speed;
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+
+    /**
+     * Creates a replay engine.
+     * @param speed replay speed, e.g. 1 - real time, 10 - ten times faster, 0 - as fast as possible
+     */
+    public ReplayEngine(double speed) {
+        this(speed, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    ReplayEngine(double speed, LongSupplier clock, Sleeper sleeper) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Replay speed must not be negative: " + speed);
+        }
+        this.speed = speed;
+        this.clock = clock;
+        this.sleeper = sleeper;
+    }
+
+    /**
+     * Replays a log file.
+     * @param file a log file
+     * @param consumer consumer of the records
+     * @return number of replayed records
+     * @throws IOException if the log cannot be read
+     * @throws InterruptedException if the replay gets interrupted
+     */
+    public long replay(Path file, Consumer<CaptureRecord> consumer) throws IOException, InterruptedException {
+        try (CaptureReader reader = new CaptureReader(new BufferedInputStream(Files.newInputStream(file)))) {
+            return replay(reader, consumer);
+        }
+    }
+
+    /**
+     * Replays records of a log.
+     * @param reader a log reader
+     * @param consumer consumer of the records
+     * @return number of replayed records
+     * @throws IOException if the log cannot be read
+     * @throws InterruptedException if the replay gets interrupted
+     */
+    public long replay(CaptureReader reader, Consumer<CaptureRecord> consumer)
+            throws IOException, InterruptedException {
+        long count = 0;
+        long started = clock.getAsLong();
+        long firstTimestamp = 0;
+        CaptureRecord record;
+        while ((record = reader.read()) != null) {
+            if (count == 0) {
+                firstTimestamp = record.getTimestamp();
+            }
+            if (speed != MAX_SPEED) {
+                long due = started + (long) (TimeUnit.MICROSECONDS.toNanos(record.getTimestamp() - firstTimestamp)
+                        / speed);
+                long delay = due - clock.getAsLong();
+                if (delay > 0) {
+                    sleeper.sleep(delay);
+                }
+            }
+            // records which are already due are not delayed, so the replay must be interruptible regardless
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            consumer.accept(record);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Waits until the next record is due.
+     */
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+}
@@ -0,0 +1,480 @@
+package org.sputnikdev.esh.binding.bluetooth.console;
+
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingRegistry;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+import org.eclipse.smarthome.io.console.extensions.ConsoleCommandExtension;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Reference;
+import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecorder;
+import org.sputnikdev.esh.binding.bluetooth.capture.ReplayEngine;
+import org.sputnikdev.esh.binding.bluetooth.handler.GenericBluetoothDeviceHandler;
+import org.sputnikdev.esh.binding.bluetooth.handler.HandlerDiagnostics;
+import org.sputnikdev.esh.binding.bluetooth.metrics.HistogramSnapshot;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsSnapshot;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Trace;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Tracer;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Console commands to inspect performance of the binding on a live system:
+ * <ul>
+ *     <li>{@code bluetooth stats [seconds]} - event rates, parse and read times of adapters and devices
+ *     measured over a sampling window (at most 60 seconds)</li>
+ *     <li>{@code bluetooth top [events|cpu] [seconds]} - the busiest devices sorted by event rate
+ *     or by time spent in parsing</li>
+ *     <li>{@code bluetooth handlers <thingUID>} - poll schedule, mailbox and the channel handler registry
+ *     of a thing handler</li>
+ *     <li>{@code bluetooth traces [count]} - the most recent payload traces, time spent in each processing stage
+ *     (tracing must be enabled, see {@link Tracer})</li>
+ *     <li>{@code bluetooth capture [start <file>|stop]} - records advertisements, RSSI samples and notifications
+ *     seen by the handlers to a file</li>
+ *     <li>{@code bluetooth replay [<file> [speed]|stop]} - feeds a recorded file back through the handlers
+ *     in background, records are routed to handlers by device URL (adapter and device address)</li>
+ * </ul>
+ *
+ * @author Vlad Kolotov
+ */
+@Component(immediate = true, service = ConsoleCommandExtension.class)
+public class BluetoothConsoleCommandExtension extends AbstractConsoleCommandExtension {
+
+    private static final String SUBCMD_STATS = "stats";
+    private static final String SUBCMD_TOP = "top";
+    private static final String SUBCMD_HANDLERS = "handlers";
+    private static final String SUBCMD_TRACES = "traces";
+    private static final String SUBCMD_CAPTURE = "capture";
+    private static final String SUBCMD_REPLAY = "replay";
+    private static final String CAPTURE_START = "start";
+    private static final String CAPTURE_STOP = "stop";
+    private static final String REPLAY_STOP = "stop";
+    private static final String SORT_EVENTS = "events";
+    private static final String SORT_CPU = "cpu";
+    private static final int DEFAULT_WINDOW = 5;
+    // the console thread is blocked while sampling
+    private static final int MAX_WINDOW = 60;
+    private static final int TOP_SIZE = 20;
+    private static final int DEFAULT_TRACES = 20;
+    private static final String STATS_FORMAT = "%-28s %10s %10s %10s %10s %10s %10s %10s %8s";
+    private static final String TOP_FORMAT = "%-44s %10s %10s %10s %10s";
+
+    private Logger logger = LoggerFactory.getLogger(BluetoothConsoleCommandExtension.class);
+
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bluetooth-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Replay replay;
+    private volatile MetricsRegistry metricsRegistry;
+    private volatile CaptureRecorder captureRecorder;
+    private volatile ThingRegistry thingRegistry;
+
+    public BluetoothConsoleCommandExtension() {
+        super(BluetoothBindingConstants.BINDING_ID, "Inspect performance of the bluetooth binding.");
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 0) {
+            printUsage(console);
+            return;
+        }
+        try {
+            switch (args[0]) {
+                case SUBCMD_STATS:
+                    printStats(console, getWindow(args, 1));
+                    break;
+                case SUBCMD_TOP:
+                    boolean sortByCpu = args.length > 1 && SORT_CPU.equals(args[1]);
+                    printTop(console, sortByCpu, getWindow(args, args.length > 1 && isSortKey(args[1]) ? 2 : 1));
+                    break;
+                case SUBCMD_HANDLERS:
+                    if (args.length < 2) {
+                        printUsage(console);
+                    } else {
+                        printHandler(console, args[1]);
+                    }
+                    break;
+                case SUBCMD_TRACES:
+                    printTraces(console, args.length > 1 ? Math.max(Integer.parseInt(args[1]), 1) : DEFAULT_TRACES);
+                    break;
+                case SUBCMD_CAPTURE:
+                    capture(console, args);
+                    break;
+                case SUBCMD_REPLAY:
+                    replay(console, args);
+                    break;
+                default:
+                    console.println("Unknown command '" + args[0] + "'");
+                    printUsage(console);
+            }
+        } catch (NumberFormatException ex) {
+            console.println("Sampling window, number of traces and replay speed must be numbers");
+        } catch (IllegalArgumentException ex) {
+            console.println(ex.getMessage());
+        } catch (IOException ex) {
+            console.println("Could not access capture file: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Arrays.asList(
+                buildCommandUsage(SUBCMD_STATS + " [seconds]",
+                        "event rates, parse and read times of adapters and devices"),
+                buildCommandUsage(SUBCMD_TOP + " [" + SORT_EVENTS + "|" + SORT_CPU + "] [seconds]",
+                        "the busiest devices sorted by event rate or by time spent in parsing"),
+                buildCommandUsage(SUBCMD_HANDLERS + " <thingUID>",
+                        "poll schedule, mailbox and channel handlers of a thing"),
+                buildCommandUsage(SUBCMD_TRACES + " [count]",
+                        "the most recent payload traces (time spent in each processing stage)"),
+                buildCommandUsage(SUBCMD_CAPTURE + " [" + CAPTURE_START + " <file>|" + CAPTURE_STOP + "]",
+                        "records advertisements, RSSI samples and notifications to a file"),
+                buildCommandUsage(SUBCMD_REPLAY + " [<file> [speed]|" + REPLAY_STOP + "]",
+                        "feeds a recorded file back through the handlers in background "
+                                + "(speed 0 - as fast as possible)"));
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        replayExecutor.shutdownNow();
+    }
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public void unsetMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = null;
+    }
+
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    public void setCaptureRecorder(CaptureRecorder captureRecorder) {
+        this.captureRecorder = captureRecorder;
+    }
+
+    public void unsetCaptureRecorder(CaptureRecorder captureRecorder) {
+        this.captureRecorder = null;
+    }
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    public void setThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = thingRegistry;
+    }
+
+    public void unsetThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = null;
+    }
+
+    private void printStats(Console console, int window) throws InterruptedException {
+        Window sample = sample(console, window);
+        if (sample == null) {
+            return;
+        }
+        console.println(String.format(STATS_FORMAT, "Scope", "Events/s", "Notif/s", "Adv/s", "States/s",
+                "Parse ms", "Parse p95", "Read ms", "Errors"));
+        sample.after.getScopes().stream().filter(scope -> scope.startsWith(MetricsRegistry.ADAPTER_SCOPE)
+                || scope.startsWith(MetricsRegistry.DEVICE_SCOPE))
+                .sorted().forEach(scope -> {
+                    HistogramSnapshot parse = sample.histogram(scope, MetricsRegistry.PARSE_TIME);
+                    HistogramSnapshot read = sample.histogram(scope, MetricsRegistry.READ_TIME);
+                    long errors = sample.count(scope, MetricsRegistry.PARSE_ERRORS)
+                            + sample.count(scope, MetricsRegistry.READ_ERRORS)
+                            + sample.count(scope, MetricsRegistry.WRITE_ERRORS);
+                    console.println(String.format(STATS_FORMAT, scope,
+                            rate(sample.eventRate(scope)),
+                            rate(sample.rate(scope, MetricsRegistry.NOTIFICATIONS)),
+                            rate(sample.rate(scope, MetricsRegistry.ADVERTISEMENTS)),
+                            rate(sample.rate(scope, MetricsRegistry.STATE_UPDATES)),
+                            millis(parse.getMean()), millis(parse.getPercentile(0.95)),
+                            millis(read.getMean()), errors));
+                });
+        if (sample.after.getScopes().contains(MetricsRegistry.SCHEDULER_SCOPE)) {
+            console.println(String.format("Scheduler: %d job(s), tick lag %d ms (max %d ms)",
+                    sample.after.getGauge(MetricsRegistry.SCHEDULER_SCOPE, MetricsRegistry.SCHEDULER_QUEUE_DEPTH),
+                    sample.after.getGauge(MetricsRegistry.SCHEDULER_SCOPE, MetricsRegistry.SCHEDULER_TICK_LAG),
+                    sample.after.getGauge(MetricsRegistry.SCHEDULER_SCOPE, MetricsRegistry.SCHEDULER_MAX_TICK_LAG)));
+        }
+    }
+
+    private void printTop(Console console, boolean sortByCpu, int window) throws InterruptedException {
+        Window sample = sample(console, window);
+        if (sample == null) {
+            return;
+        }
+        Map<String, String> things = getHandlers().stream().collect(
+                Collectors.toMap(HandlerDiagnostics::getMetricsScope, HandlerDiagnostics::getThingUID, (a, b) -> a));
+        Function<String, Double> cost = scope -> sample.histogram(scope, MetricsRegistry.PARSE_TIME).getSum()
+                / 1000.0 / sample.getSeconds();
+        Comparator<String> comparator = sortByCpu
+                ? Comparator.comparing(cost) : Comparator.comparing(sample::eventRate);
+        console.println(String.format(TOP_FORMAT, "Device", "Events/s", "Parse ms/s", "Parse ms", "Mailbox"));
+        sample.after.getScopes().stream().filter(scope -> scope.startsWith(MetricsRegistry.DEVICE_SCOPE))
+                .sorted(comparator.reversed()).limit(TOP_SIZE).forEach(scope -> {
+                    HistogramSnapshot parse = sample.histogram(scope, MetricsRegistry.PARSE_TIME);
+                    HandlerDiagnostics handler = getHandler(things.get(scope));
+                    console.println(String.format(TOP_FORMAT, things.getOrDefault(scope, scope),
+                            rate(sample.eventRate(scope)), rate(cost.apply(scope)), millis(parse.getMean()),
+                            handler != null ? handler.getMailboxDepth() : "-"));
+                });
+    }
+
+    private void printHandler(Console console, String thingUID) {
+        HandlerDiagnostics handler = getHandler(thingUID);
+        if (handler == null) {
+            console.println("Bluetooth thing handler not found: " + thingUID);
+            return;
+        }
+        console.println("Thing:            " + handler.getThingUID());
+        console.println("URL:              " + handler.getGovernorURL());
+        console.println("Status:           " + handler.getThingStatus());
+        console.println("Channel handlers: " + handler.getChannelHandlerCount()
+                + " (linked channels: " + handler.getLinkedChannelCount() + ")");
+        console.println("Polling:          " + handler.getPollingTaskCount()
+                + " task(s) every " + handler.getPollingInterval() + "s");
+        console.println("Mailbox:          " + handler.getMailboxDepth()
+                + " pending, " + handler.getMailboxDropped() + " dropped");
+        console.println("Last error:       " + (handler.getLastError() != null ? handler.getLastError() : "-"));
+        long timeToOnline = handler.getTimeToOnline();
+        console.println("Time to online:   " + (timeToOnline >= 0 ? timeToOnline + " ms" : "-"));
+        handler.getChannelRegistry().forEach(line -> console.println("  " + line));
+    }
+
+    private void printTraces(Console console, int count) {
+        MetricsRegistry registry = metricsRegistry;
+        if (registry == null) {
+            console.println("Bluetooth binding is not running");
+            return;
+        }
+        Tracer tracer = registry.getTracer();
+        if (!tracer.isEnabled()) {
+            console.println("Tracing is disabled, see 'tracingSampling' binding parameter");
+            return;
+        }
+        List<Trace> traces = tracer.getTraces();
+        traces.subList(Math.max(traces.size() - count, 0), traces.size())
+                .forEach(trace -> console.println(trace.toString()));
+        console.println(Math.min(traces.size(), count) + " of " + traces.size() + " recent trace(s)");
+    }
+
+    private void capture(Console console, String[] args) throws IOException {
+        CaptureRecorder recorder = captureRecorder;
+        if (recorder == null) {
+            console.println("Bluetooth binding is not running");
+            return;
+        }
+        if (args.length > 2 && CAPTURE_START.equals(args[1])) {
+            recorder.start(Paths.get(args[2]));
+        } else if (args.length > 1 && CAPTURE_STOP.equals(args[1])) {
+            recorder.stop();
+        } else if (args.length > 1) {
+            printUsage(console);
+            return;
+        }
+        console.println("Capturing:        " + (recorder.isRecording() ? recorder.getFile() : "no"));
+        console.println("Recorded:         " + recorder.getRecorded() + ", dropped: " + recorder.getDropped());
+    }
+
+    private void replay(Console console, String[] args) throws IOException {
+        Replay current = replay;
+        if (args.length > 1 && REPLAY_STOP.equals(args[1])) {
+            if (current != null) {
+                current.future.cancel(true);
+            }
+        } else if (args.length > 1) {
+            if (current != null && !current.future.isDone()) {
+                console.println("Replay is already running, stop it first: " + current.file);
+                return;
+            }
+            Path file = Paths.get(args[1]);
+            if (!Files.isReadable(file)) {
+                throw new FileNotFoundException(file.toString());
+            }
+            current = new Replay(file, new ReplayEngine(
+                    args.length > 2 ? Double.parseDouble(args[2]) : ReplayEngine.REAL_TIME), getDeviceHandlers());
+            replay = current;
+            current.future = replayExecutor.submit(current);
+        }
+        if (current == null) {
+            console.println("Replaying:        no");
+            return;
+        }
+        console.println("Replaying:        " + current.file + " ("
+                + (current.future.isCancelled() ? "stopped" : current.state) + ")");
+        console.println("Device handlers:  " + current.handlers.size());
+        console.println("Replayed:         " + current.replayed.get() + ", records of unknown devices: "
+                + current.unknown.get());
+    }
+
+    private Map<URL, GenericBluetoothDeviceHandler> getDeviceHandlers() {
+        return thingRegistry.getAll().stream().map(Thing::getHandler)
+                .filter(GenericBluetoothDeviceHandler.class::isInstance)
+                .map(GenericBluetoothDeviceHandler.class::cast)
+                .collect(Collectors.toMap(handler -> new URL(handler.getGovernorURL()).getDeviceURL(),
+                        Function.identity(), (a, b) -> a));
+    }
+
+    private Window sample(Console console, int seconds) throws InterruptedException {
+        MetricsRegistry registry = metricsRegistry;
+        if (registry == null) {
+            console.println("Bluetooth binding is not running");
+            return null;
+        }
+        if (seconds > MAX_WINDOW) {
+            console.println("Sampling window is limited to " + MAX_WINDOW + "s");
+            seconds = MAX_WINDOW;
+        }
+        console.println("Sampling for " + seconds + "s...");
+        MetricsSnapshot before = registry.snapshot();
+        Thread.sleep(seconds * 1000L);
+        return new Window(before, registry.snapshot());
+    }
+
+    private List<HandlerDiagnostics> getHandlers() {
+        return thingRegistry.getAll().stream().map(Thing::getHandler)
+                .filter(HandlerDiagnostics.class::isInstance).map(HandlerDiagnostics.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    private HandlerDiagnostics getHandler(String thingUID) {
+        if (thingUID == null) {
+            return null;
+        }
+        Thing thing;
+        try {
+            thing = thingRegistry.get(new ThingUID(thingUID));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        return thing != null && thing.getHandler() instanceof HandlerDiagnostics
+                ? (HandlerDiagnostics) thing.getHandler() : null;
+    }
+
+    private static int getWindow(String[] args, int index) {
+        return args.length > index ? Math.max(Integer.parseInt(args[index]), 1) : DEFAULT_WINDOW;
+    }
+
+    private static boolean isSortKey(String arg) {
+        return SORT_EVENTS.equals(arg) || SORT_CPU.equals(arg);
+    }
+
+    private static String rate(double rate) {
+        return String.format("%.1f", rate);
+    }
+
+    private static String millis(double micros) {
+        return String.format("%.2f", micros / 1000);
+    }
+
+    /**
+     * Metrics collected over a sampling window.
+     */
+    private static final class Window {
+
+        private final MetricsSnapshot before;
+        private final MetricsSnapshot after;
+
+        private Window(MetricsSnapshot before, MetricsSnapshot after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        private double getSeconds() {
+            return Math.max(after.getTimestamp() - before.getTimestamp(), 1) / 1000.0;
+        }
+
+        private long count(String scope, String metric) {
+            return after.getCounter(scope, metric) - before.getCounter(scope, metric);
+        }
+
+        private double rate(String scope, String metric) {
+            return count(scope, metric) / getSeconds();
+        }
+
+        private double eventRate(String scope) {
+            return (count(scope, MetricsRegistry.NOTIFICATIONS) + count(scope, MetricsRegistry.ADVERTISEMENTS)
+                    + count(scope, MetricsRegistry.STATE_UPDATES)) / getSeconds();
+        }
+
+        private HistogramSnapshot histogram(String scope, String metric) {
+            return after.getHistogram(scope, metric).minus(before.getHistogram(scope, metric));
+        }
+    }
+
+    /**
+     * A replay running in background. Records are routed to device handlers by device URL, so that the same device
+     * seen by different adapters is replayed to the right handler.
+     */
+    private final class Replay implements Runnable {
+
+        private final Path file;
+        private final ReplayEngine engine;
+        private final Map<URL, GenericBluetoothDeviceHandler> handlers;
+        private final AtomicLong replayed = new AtomicLong();
+        private final AtomicLong unknown = new AtomicLong();
+        private volatile Future<?> future;
+        private volatile String state = "running";
+
+        private Replay(Path file, ReplayEngine engine, Map<URL, GenericBluetoothDeviceHandler> handlers) {
+            this.file = file;
+            this.engine = engine;
+            this.handlers = handlers;
+        }
+
+        @Override
+        public void run() {
+            long started = System.currentTimeMillis();
+            try {
+                engine.replay(file, record -> {
+                    GenericBluetoothDeviceHandler handler = handlers.get(record.getURL().getDeviceURL());
+                    if (handler != null) {
+                        handler.replay(record);
+                        replayed.incrementAndGet();
+                    } else {
+                        unknown.incrementAndGet();
+                    }
+                });
+                state = "completed in " + (System.currentTimeMillis() - started) + " ms";
+            } catch (IOException ex) {
+                state = "failed: " + ex.getMessage();
+                logger.warn("Could not replay bluetooth payloads: {} : {}", file, ex.getMessage());
+            } catch (InterruptedException ex) {
+                state = "stopped";
+            } catch (RuntimeException ex) {
+                state = "failed: " + ex.getMessage();
+                logger.warn("Could not replay bluetooth payloads: {}", file, ex);
+            }
+            logger.info("Replayed bluetooth payloads: {}, records: {}, records of unknown devices: {}, {}",
+                    file, replayed.get(), unknown.get(), state);
+        }
+    }
+
+}
@@ -9,6 +9,7 @@ import org.eclipse.smarthome.core.thing.ThingUID;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sputnikdev.bluetooth.AddressUtils;
@@ -20,6 +21,7 @@ import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
 import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothUtils;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
 
 /**
  * Bluetooth adapters and devices discovery service.
@@ -36,6 +38,7 @@ public class BluetoothDiscoveryServiceImpl extends AbstractDiscoveryService
     private final Logger logger = LoggerFactory.getLogger(BluetoothDiscoveryServiceImpl.class);
     private BluetoothManager bluetoothManager;
     private Inbox inbox;
+    private volatile MetricsRegistry metricsRegistry;
 
     public BluetoothDiscoveryServiceImpl() {
         super(BluetoothBindingConstants.SUPPORTED_THING_TYPES, 0, false);
@@ -43,6 +46,7 @@ public class BluetoothDiscoveryServiceImpl extends AbstractDiscoveryService
 
     @Override
     public void discovered(DiscoveredDevice device) {
+        countMetric(device.getURL(), MetricsRegistry.DISCOVERED_DEVICES);
         if (isBackgroundDiscoveryEnabled()) {
             discover(device);
         }
@@ -50,6 +54,7 @@ public class BluetoothDiscoveryServiceImpl extends AbstractDiscoveryService
 
     @Override
     public void discovered(DiscoveredAdapter adapter) {
+        countMetric(adapter.getURL(), MetricsRegistry.DISCOVERED_ADAPTERS);
         if (isBackgroundDiscoveryEnabled()) {
             discover(adapter);
         }
@@ -65,6 +70,7 @@ public class BluetoothDiscoveryServiceImpl extends AbstractDiscoveryService
 
     @Override
     public void deviceLost(DiscoveredDevice device) {
+        countMetric(device.getURL(), MetricsRegistry.LOST_DEVICES);
         if (isBackgroundDiscoveryEnabled()) {
             logger.info("Device lost: {}", device.getURL());
             thingRemoved(BluetoothUtils.getDeviceUID(device));
@@ -124,6 +130,22 @@ public class BluetoothDiscoveryServiceImpl extends AbstractDiscoveryService
         this.inbox = null;
     }
 
+    @Reference(cardinality = ReferenceCardinality.OPTIONAL, policy = ReferencePolicy.DYNAMIC)
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public void unsetMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = null;
+    }
+
+    private void countMetric(URL url, String metric) {
+        MetricsRegistry registry = metricsRegistry;
+        if (registry != null) {
+            registry.adapter(url.getAdapterAddress()).counter(metric).increment();
+        }
+    }
+
     private void discover(DiscoveredDevice device) {
         ThingUID bridgeUID = device.isCombined() ? null : BluetoothUtils.getAdapterUID(device.getURL());
         ThingUID thingUID = BluetoothUtils.getDeviceUID(device);
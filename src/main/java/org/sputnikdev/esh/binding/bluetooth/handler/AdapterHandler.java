@@ -3,6 +3,7 @@ package org.sputnikdev.esh.binding.bluetooth.handler;
 
 import org.eclipse.smarthome.config.core.Configuration;
 import org.eclipse.smarthome.core.library.types.DateTimeType;
+import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
@@ -16,6 +17,7 @@ import org.sputnikdev.bluetooth.manager.GovernorListener;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
 import org.sputnikdev.esh.binding.bluetooth.internal.AdapterConfig;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContext;
+import org.sputnikdev.esh.binding.bluetooth.internal.TimingWheel;
 
 import java.time.Instant;
 import java.time.ZoneId;
@@ -25,7 +27,6 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -37,7 +38,8 @@ public class AdapterHandler extends BluetoothHandler<AdapterGovernor>
         implements BridgeHandler, AdapterListener, GovernorListener {
 
     private Logger logger = LoggerFactory.getLogger(AdapterHandler.class);
-    private ScheduledFuture<?> syncTask;
+    private TimingWheel.Job syncTask;
+    private TimingWheel.Job throughputTask;
     private CompletableFuture<Void> setAliasFuture;
 
     private final SingleChannelHandler<Boolean, OnOffType> discoveringHandler = new BooleanTypeChannelHandler(
@@ -80,37 +82,46 @@ public class AdapterHandler extends BluetoothHandler<AdapterGovernor>
     }
 
     @Override
-    public void initialize() {
+    protected void initializeHandler() {
         // make sure we subscribe to events first (before channel initialization)
         AdapterGovernor adapterGovernor = getGovernor();
         adapterGovernor.addGovernorListener(this);
         adapterGovernor.addAdapterListener(this);
 
         // initialize all channel handlers
-        super.initialize();
+        super.initializeHandler();
 
         lastUpdatedChanged(Instant.now());
         updateDevice(getConfig());
 
         setAliasFuture = adapterGovernor.<AdapterGovernor, Void>whenReady(governor -> {
-            governor.setAlias(thing.getLabel());
+            getIoExecutor().execute(() -> governor.setAlias(thing.getLabel()));
             return null;
         });
 
         updateStatus(adapterGovernor.isReady() ? ThingStatus.ONLINE : ThingStatus.OFFLINE);
 
-        syncTask = scheduler.scheduleAtFixedRate(() -> {
+        syncTask = getTimingWheel().scheduleWithFixedDelay(() -> {
             discoveringControlHandler.updateChannel(discoveringControlHandler.getValue());
         }, 5, 10, TimeUnit.SECONDS);
+
+        int metricsInterval = getBindingConfig().getAdapterMetricsInterval();
+        if (metricsInterval > 0) {
+            AdapterThroughput throughput = new AdapterThroughput(getMetrics());
+            throughputTask = getTimingWheel().scheduleWithFixedDelay(() -> updateThroughput(throughput),
+                    metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
     }
 
     @Override
-    public void dispose() {
+    protected void disposeHandler() {
         logger.info("Disposing Adapter handler");
         if (syncTask != null) {
-            syncTask.cancel(true);
+            syncTask.cancel();
         }
         syncTask = null;
+        Optional.ofNullable(throughputTask).ifPresent(TimingWheel.Job::cancel);
+        throughputTask = null;
         AdapterGovernor adapterGovernor = getGovernor();
         adapterGovernor.removeAdapterListener(this);
         adapterGovernor.removeGovernorListener(this);
@@ -140,6 +151,23 @@ public class AdapterHandler extends BluetoothHandler<AdapterGovernor>
         updateState(BluetoothBindingConstants.CHANNEL_LAST_UPDATED, new DateTimeType(calendar));
     }
 
+    private void updateThroughput(AdapterThroughput throughput) {
+        AdapterThroughput.Sample sample = throughput.sample();
+        String adapterAddress = getURL().getAdapterAddress();
+        long devicesSeen = getBluetoothContext().getManager().getDiscoveredDevices().stream()
+                .filter(device -> adapterAddress.equals(device.getURL().getAdapterAddress())).count();
+        updateState(BluetoothBindingConstants.CHANNEL_ADVERTISEMENT_RATE,
+                new DecimalType(sample.getAdvertisementRate()));
+        updateState(BluetoothBindingConstants.CHANNEL_DEVICES_SEEN, new DecimalType(devicesSeen));
+        updateState(BluetoothBindingConstants.CHANNEL_DEVICES_CONNECTED, new DecimalType(sample.getDevicesConnected()));
+        updateState(BluetoothBindingConstants.CHANNEL_OPERATIONS_IN_FLIGHT,
+                new DecimalType(sample.getOperationsInFlight()));
+        updateState(BluetoothBindingConstants.CHANNEL_OPERATION_LATENCY,
+                new DecimalType(sample.getOperationLatency()));
+        updateState(BluetoothBindingConstants.CHANNEL_FAILED_OPERATIONS,
+                new DecimalType(sample.getFailedOperations()));
+    }
+
     @Override
     public void childHandlerInitialized(ThingHandler childHandler, Thing childThing) {
     }
@@ -158,7 +186,7 @@ public class AdapterHandler extends BluetoothHandler<AdapterGovernor>
             adapterGovernor.setSignalPropagationExponent(config.getSignalPropagationExponent());
         }
         if (adapterGovernor.isReady()) {
-            adapterGovernor.setAlias(getThing().getLabel());
+            getIoExecutor().execute(() -> adapterGovernor.setAlias(getThing().getLabel()));
         }
     }
 }
@@ -0,0 +1,125 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import org.sputnikdev.esh.binding.bluetooth.metrics.HistogramSnapshot;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsScope;
+
+/**
+ * Calculates throughput of an adapter from its metrics (see {@link MetricsRegistry}). Rates and averages
+ * are calculated over the period of time since the previous sample.
+ *
+ * @author Vlad Kolotov
+ */
+class AdapterThroughput {
+
+    private final MetricsScope metrics;
+    private long sampled = System.nanoTime();
+    private long advertisements;
+    private long failed;
+    private long operations;
+    private long latency;
+
+    AdapterThroughput(MetricsScope metrics) {
+        this.metrics = metrics;
+        advertisements = count(MetricsRegistry.ADVERTISEMENTS);
+        failed = getFailed();
+        HistogramSnapshot reads = metrics.histogram(MetricsRegistry.READ_TIME).snapshot();
+        HistogramSnapshot writes = metrics.histogram(MetricsRegistry.WRITE_TIME).snapshot();
+        operations = reads.getCount() + writes.getCount();
+        latency = reads.getSum() + writes.getSum();
+    }
+
+    /**
+     * Takes a new sample.
+     * @return throughput since the previous sample
+     */
+    Sample sample() {
+        long now = System.nanoTime();
+        double elapsed = Math.max(now - sampled, 1) / 1e9;
+        sampled = now;
+
+        long newAdvertisements = count(MetricsRegistry.ADVERTISEMENTS);
+        long newFailed = getFailed();
+        HistogramSnapshot reads = metrics.histogram(MetricsRegistry.READ_TIME).snapshot();
+        HistogramSnapshot writes = metrics.histogram(MetricsRegistry.WRITE_TIME).snapshot();
+        long newOperations = reads.getCount() + writes.getCount();
+        long newLatency = reads.getSum() + writes.getSum();
+
+        Sample sample = new Sample();
+        sample.advertisementRate = (newAdvertisements - advertisements) / elapsed;
+        sample.failedOperations = newFailed - failed;
+        sample.operationLatency = newOperations > operations
+                ? (newLatency - latency) / 1000.0 / (newOperations - operations) : 0;
+        sample.operationsInFlight = Math.max(
+                count(MetricsRegistry.OPERATIONS_STARTED) - count(MetricsRegistry.OPERATIONS_FINISHED), 0);
+        sample.devicesConnected = Math.max(
+                count(MetricsRegistry.CONNECTIONS) - count(MetricsRegistry.DISCONNECTIONS), 0);
+
+        advertisements = newAdvertisements;
+        failed = newFailed;
+        operations = newOperations;
+        latency = newLatency;
+        return sample;
+    }
+
+    private long getFailed() {
+        return count(MetricsRegistry.READ_ERRORS) + count(MetricsRegistry.WRITE_ERRORS);
+    }
+
+    private long count(String metric) {
+        return metrics.counter(metric).getCount();
+    }
+
+    /**
+     * Adapter throughput over a period of time.
+     */
+    static final class Sample {
+
+        private double advertisementRate;
+        private long failedOperations;
+        private double operationLatency;
+        private long operationsInFlight;
+        private long devicesConnected;
+
+        /**
+         * Returns number of advertisements per second.
+         * @return advertisement rate
+         */
+        double getAdvertisementRate() {
+            return advertisementRate;
+        }
+
+        /**
+         * Returns number of failed GATT operations.
+         * @return number of failed operations
+         */
+        long getFailedOperations() {
+            return failedOperations;
+        }
+
+        /**
+         * Returns average latency of GATT operations in milliseconds.
+         * @return average operation latency
+         */
+        double getOperationLatency() {
+            return operationLatency;
+        }
+
+        /**
+         * Returns number of GATT operations being executed.
+         * @return number of operations in flight
+         */
+        long getOperationsInFlight() {
+            return operationsInFlight;
+        }
+
+        /**
+         * Returns number of connected devices.
+         * @return number of connected devices
+         */
+        long getDevicesConnected() {
+            return devicesConnected;
+        }
+    }
+
+}
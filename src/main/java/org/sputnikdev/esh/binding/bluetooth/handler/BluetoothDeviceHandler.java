@@ -1,9 +1,10 @@
 package org.sputnikdev.esh.binding.bluetooth.handler;
 
-import com.google.common.collect.Sets;
 import org.eclipse.smarthome.config.core.Configuration;
+import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.thing.Channel;
+import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.binding.builder.ChannelBuilder;
 import org.slf4j.Logger;
@@ -15,19 +16,29 @@ import org.sputnikdev.bluetooth.manager.CombinedDeviceGovernor;
 import org.sputnikdev.bluetooth.manager.ConnectionStrategy;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.GattService;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecord;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecorder;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContext;
 import org.sputnikdev.esh.binding.bluetooth.internal.DeviceConfig;
+import org.sputnikdev.esh.binding.bluetooth.internal.GattSpecificationListener;
+import org.sputnikdev.esh.binding.bluetooth.internal.TimingWheel;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsScope;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -36,13 +47,30 @@ import java.util.stream.Collectors;
  * @author Vlad Kolotov - Initial contribution
  */
 public class BluetoothDeviceHandler extends GenericBluetoothDeviceHandler
-        implements BluetoothSmartDeviceListener {
+        implements BluetoothSmartDeviceListener, GattSpecificationListener {
+
+    private static final int MAX_ADVERTISED_DATA = 64;
 
     private Logger logger = LoggerFactory.getLogger(BluetoothDeviceHandler.class);
-    private ScheduledFuture<?> syncTask;
-    private final Set<URL> advertisedData = new HashSet<>();
-    private final ReentrantLock advertisedDataLock = new ReentrantLock();
-    private final ReentrantLock serviceResolvedLock = new ReentrantLock();
+    private TimingWheel.Job syncTask;
+    private TimingWheel.Job latencyTask;
+    // when services got resolved (authentication starts), accessed only by the mailbox
+    private long resolvedAt;
+    // adapter metrics where the current connection has been counted, cleared by the mailbox or on dispose
+    private final AtomicReference<MetricsScope> connectedMetrics = new AtomicReference<>();
+    private volatile boolean disposed;
+    // modified only by the mailbox, but read by transport threads
+    private final Set<URL> advertisedData = Collections.synchronizedSet(
+        Collections.newSetFromMap(new LinkedHashMap<URL, Boolean>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<URL, Boolean> eldest) {
+                // evicted entries are simply re-checked when the device advertises them again
+                return size() > MAX_ADVERTISED_DATA;
+            }
+        }));
+    // persisted GATT layout (characteristic URLs and their flags)
+    private Map<URL, Set<CharacteristicAccessType>> gattLayout;
+    private volatile ChannelChurn lastChurn;
 
     private final BooleanTypeChannelHandler connectedHandler = new BooleanTypeChannelHandler(
             BluetoothDeviceHandler.this, BluetoothBindingConstants.CHANNEL_CONNECTED) {
@@ -93,81 +121,117 @@ public class BluetoothDeviceHandler extends GenericBluetoothDeviceHandler
     }
 
     @Override
-    public void initialize() {
+    protected void initializeHandler() {
+        disposed = false;
         DeviceGovernor governor = getGovernor();
         governor.addBluetoothSmartDeviceListener(this);
 
-        super.initialize();
+        super.initializeHandler();
+
+        getMailbox().execute(this::restoreChannels);
 
-        syncTask = scheduler.scheduleAtFixedRate(() -> {
+        syncTask = getTimingWheel().scheduleWithFixedDelay(() -> {
             connectionControlHandler.updateChannel(connectionControlHandler.getValue());
         }, 5, 30, TimeUnit.SECONDS);
+
+        int metricsInterval = getBindingConfig().getDeviceMetricsInterval();
+        if (metricsInterval > 0) {
+            DeviceLatency latency = new DeviceLatency(getMetrics());
+            latencyTask = getTimingWheel().scheduleWithFixedDelay(() -> updateLatency(latency),
+                    metricsInterval, metricsInterval, TimeUnit.SECONDS);
+        }
     }
 
     @Override
-    public void dispose() {
+    protected void disposeHandler() {
         if (syncTask != null) {
-            syncTask.cancel(true);
+            syncTask.cancel();
         }
         syncTask = null;
+        Optional.ofNullable(latencyTask).ifPresent(TimingWheel.Job::cancel);
+        latencyTask = null;
         DeviceGovernor deviceGovernor = getGovernor();
         deviceGovernor.removeBluetoothSmartDeviceListener(this);
         deviceGovernor.setConnectionControl(false);
         deviceGovernor.setAuthenticationProvider(null);
-        super.dispose();
+        // listeners are removed, servicesUnresolved might never be processed
+        disposed = true;
+        countDisconnection();
+        super.disposeHandler();
     }
 
     @Override
     public void servicesUnresolved() {
-        connectedHandler.updateChannel(false);
-        connectedAdapterHandler.updateChannel(null);
-        authHandler.updateChannel(false);
+        getMailbox().execute(() -> {
+            countDisconnection();
+            connectedHandler.updateChannel(false);
+            connectedAdapterHandler.updateChannel(null);
+            authHandler.updateChannel(false);
+            refreshAdapter();
+        });
     }
 
     @Override
     public void servicesResolved(List<GattService> gattServices) {
-        updateConnectedHandlers();
-        updateLocationHandlers();
+        long resolved = System.nanoTime();
+        getMailbox().execute(() -> {
+            resolvedAt = resolved;
+            refreshAdapter();
+            // disconnection is counted for the same adapter
+            MetricsScope adapterMetrics = getAdapterMetrics();
+            if (connectedMetrics.compareAndSet(null, adapterMetrics)) {
+                adapterMetrics.counter(MetricsRegistry.CONNECTIONS).increment();
+                if (disposed) {
+                    // the handler has been disposed while this event was being processed
+                    countDisconnection();
+                }
+            }
+            updateConnectedHandlers();
+            updateLocationHandlers();
+        });
     }
 
     @Override
     public void authenticated() {
-        if (serviceResolvedLock.tryLock()) {
-            try {
-                buildChannels(getGovernor().getResolvedServices());
-            } finally {
-                serviceResolvedLock.unlock();
+        long authenticated = System.nanoTime();
+        getMailbox().execute(() -> {
+            if (resolvedAt != 0) {
+                getMetrics().histogram(MetricsRegistry.AUTHENTICATION_TIME)
+                        .record(TimeUnit.NANOSECONDS.toMicros(authenticated - resolvedAt));
+                resolvedAt = 0;
             }
-        }
-        authHandler.updateChannel(true);
+            updateChannels(getGovernor().getResolvedServices());
+            authHandler.updateChannel(true);
+        });
     }
 
     @Override
     public void authenticationFailure(Exception reason) {
-        authHandler.updateChannel(false);
+        getMailbox().execute(() -> {
+            getMetrics().counter(MetricsRegistry.AUTHENTICATION_ERRORS).increment();
+            resolvedAt = 0;
+            authHandler.updateChannel(false);
+        });
     }
 
     @Override
     public void ready(boolean ready) {
         super.ready(ready);
-        authHandler.updateChannel(false);
+        getMailbox().execute(() -> authHandler.updateChannel(false));
     }
 
     @Override
     public void serviceDataChanged(Map<URL, byte[]> serviceData) {
-        Set<URL> channelsToBuild = Sets.difference(serviceData.keySet(), advertisedData);
-        if (!channelsToBuild.isEmpty()) {
-            if (advertisedDataLock.tryLock()) {
-                try {
-                    serviceData.entrySet().stream()
-                            .filter(entry -> checkAdvertizedHandlerNeeded(entry.getKey())).forEach(entry -> {
-                                buildServiceHandler(entry.getKey(), entry.getValue());
-                            });
-                    advertisedData.addAll(channelsToBuild);
-                } finally {
-                    advertisedDataLock.unlock();
-                }
-            }
+        countMetric(MetricsRegistry.ADVERTISEMENTS);
+        // recorded here rather than by service handlers, so that data which has no handler yet is recorded too
+        CaptureRecorder recorder = getCaptureRecorder();
+        if (recorder.isRecording()) {
+            serviceData.forEach((url, data) -> recorder.record(CaptureRecord.Type.SERVICE_DATA, url, data));
+        }
+        // advertisements are frequent, so only new advertised data is submitted to the mailbox
+        if (!advertisedData.containsAll(serviceData.keySet())) {
+            // if dropped, it is submitted again on the next advertisement
+            getMailbox().executeDroppable(() -> buildAdvertisedHandlers(serviceData));
         }
     }
 
@@ -181,6 +245,94 @@ public class BluetoothDeviceHandler extends GenericBluetoothDeviceHandler
         serviceDataChanged(virtualServiceData);
     }
 
+    @Override
+    protected void replayServiceData(URL serviceURL, byte[] data) {
+        if (advertisedData.contains(serviceURL)) {
+            super.replayServiceData(serviceURL, data);
+        } else {
+            buildAdvertisedHandlers(Collections.singletonMap(serviceURL, data));
+        }
+    }
+
+    @Override
+    protected String resolveAdapterAddress() {
+        // GATT operations go through the adapter that the device is connected to
+        String connectedAdapter = connectedAdapterHandler.getValue();
+        return connectedAdapter != null ? connectedAdapter : super.resolveAdapterAddress();
+    }
+
+    private void buildAdvertisedHandlers(Map<URL, byte[]> serviceData) {
+        Set<URL> channelsToBuild = new HashSet<>(serviceData.keySet());
+        channelsToBuild.removeAll(advertisedData);
+        serviceData.entrySet().stream()
+                .filter(entry -> channelsToBuild.contains(entry.getKey()))
+                .filter(entry -> checkAdvertizedHandlerNeeded(entry.getKey())).forEach(entry -> {
+                    buildServiceHandler(entry.getKey(), entry.getValue());
+                });
+        advertisedData.addAll(channelsToBuild);
+    }
+
+    private void updateLatency(DeviceLatency latency) {
+        DeviceLatency.Sample sample = latency.sample();
+        if (sample != null) {
+            updateState(BluetoothBindingConstants.CHANNEL_GATT_LATENCY_P50, new DecimalType(sample.getPercentile(0.5)));
+            updateState(BluetoothBindingConstants.CHANNEL_GATT_LATENCY_P95,
+                    new DecimalType(sample.getPercentile(0.95)));
+            updateState(BluetoothBindingConstants.CHANNEL_GATT_LATENCY_P99,
+                    new DecimalType(sample.getPercentile(0.99)));
+            updateState(BluetoothBindingConstants.CHANNEL_GATT_ERROR_RATE, new DecimalType(sample.getErrorRate()));
+        }
+    }
+
+    /**
+     * Returns number of conflated notifications of all characteristics of the device
+     * (see {@link org.sputnikdev.esh.binding.bluetooth.internal.ConflatingMailbox}).
+     * @return number of conflated notifications
+     */
+    public long getConflatedNotifications() {
+        return getChannelHandlers().keySet().stream().filter(handler -> handler instanceof CharacteristicHandler)
+                .mapToLong(handler -> ((CharacteristicHandler) handler).getConflated()).sum();
+    }
+
+    /**
+     * Rebuilds channels of the characteristics which GATT specifications have been changed.
+     * Device connection is not affected.
+     * @param characteristicUUIDs UUIDs of added or changed characteristics (lower case)
+     */
+    @Override
+    public void specificationChanged(Set<String> characteristicUUIDs) {
+        getMailbox().execute(() -> {
+            Predicate<URL> affected = url -> characteristicUUIDs.contains(url.getCharacteristicUUID().toLowerCase());
+            Set<ChannelUID> removed = removeChannelHandlers(handler -> handler instanceof GattChannelHandler
+                    && affected.test(handler.getURL()));
+            logger.info("GATT specification changed, rebuilding channels: {} / {}", getURL(), removed.size());
+            removeChannels(removed);
+
+            // advertised data handlers are rebuilt when the device advertises its data again
+            advertisedData.removeIf(url -> characteristicUUIDs.contains(url.getServiceUUID().toLowerCase()));
+
+            DeviceGovernor governor = getGovernor();
+            if (governor.isReady() && governor.isServicesResolved()) {
+                buildChannels(getLayout(governor.getResolvedServices()), affected);
+            }
+        });
+    }
+
+    @Override
+    public void handleRemoval() {
+        getBluetoothContext().getGattLayoutStorage().remove(getURL());
+        super.handleRemoval();
+    }
+
+    @Override
+    public void dropCachedLayout() {
+        getMailbox().execute(() -> {
+            logger.info("Dropping persisted GATT layout: {}", getURL());
+            getBluetoothContext().getGattLayoutStorage().remove(getURL());
+            gattLayout = null;
+        });
+    }
+
     @Override
     protected void updateDevice(Configuration configuration) {
         super.updateDevice(configuration);
@@ -207,20 +359,138 @@ public class BluetoothDeviceHandler extends GenericBluetoothDeviceHandler
     }
 
     protected void buildChannels(List<GattService> gattServices) {
-        logger.info("Building channels for services: {}", gattServices.size());
+        buildChannels(getLayout(gattServices), url -> true);
+    }
+
+    /**
+     * Returns churn of the last channel reconciliation.
+     * @return churn of the last reconciliation or null if channels have never been reconciled
+     */
+    public ChannelChurn getLastChurn() {
+        return lastChurn;
+    }
+
+    /**
+     * Restores characteristic channels from the persisted GATT layout so that they are available
+     * before the device gets connected.
+     */
+    private void restoreChannels() {
+        Map<URL, Set<CharacteristicAccessType>> layout = getBluetoothContext().getGattLayoutStorage().load(getURL());
+        if (layout != null) {
+            logger.info("Restoring channels from persisted GATT layout: {} / {}", getURL(), layout.size());
+            reconcileChannels(layout);
+            gattLayout = layout;
+        }
+    }
+
+    /**
+     * Brings characteristic channels in line with resolved GATT services. The new layout gets persisted
+     * if it has changed.
+     * @param gattServices resolved GATT services
+     */
+    private void updateChannels(List<GattService> gattServices) {
+        Map<URL, Set<CharacteristicAccessType>> layout = getLayout(gattServices);
+        reconcileChannels(layout);
+        if (!layout.equals(gattLayout)) {
+            gattLayout = layout;
+            getBluetoothContext().getGattLayoutStorage().save(getURL(), layout);
+        }
+    }
+
+    /**
+     * Reconciles registered characteristic handlers and thing channels with a GATT layout:
+     * <ul>
+     *     <li>handlers for characteristics that are no longer present (or which access flags have changed)
+     *     are disposed and their channels removed</li>
+     *     <li>characteristic channels that do not belong to any handler nor to the layout are removed</li>
+     *     <li>retained handlers which channels are missing in the thing are re-attached (channels rebuilt)</li>
+     *     <li>handlers and channels are built for new characteristics</li>
+     * </ul>
+     * @param layout GATT layout
+     */
+    private void reconcileChannels(Map<URL, Set<CharacteristicAccessType>> layout) {
+        Map<URL, Set<CharacteristicAccessType>> desired = layout.entrySet().stream()
+                .filter(entry -> checkCharacteristicHandlerNeeded(entry.getKey()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (first, second) -> first,
+                        LinkedHashMap::new));
+        Map<ChannelHandler, Set<ChannelUID>> registered = getChannelHandlers();
+        Map<Boolean, List<CharacteristicHandler>> partitioned = registered.keySet().stream()
+                .filter(handler -> handler instanceof CharacteristicHandler)
+                .map(handler -> (CharacteristicHandler) handler)
+                .collect(Collectors.partitioningBy(
+                    handler -> handler.getFlags().equals(desired.get(handler.getURL()))));
+        List<CharacteristicHandler> obsolete = partitioned.get(Boolean.FALSE);
+        List<CharacteristicHandler> retained = partitioned.get(Boolean.TRUE);
+
+        Set<ChannelUID> toRemove = getChannels().stream()
+                .filter(channel -> isOrphanCharacteristicChannel(channel, desired.keySet()))
+                .map(Channel::getUID).collect(Collectors.toSet());
+        int orphans = toRemove.size();
+        toRemove.addAll(removeChannelHandlers(obsolete::contains));
+        removeChannels(toRemove);
+
+        List<Channel> reattachedChannels = new ArrayList<>();
+        int reattached = 0;
+        for (CharacteristicHandler handler : retained) {
+            Set<ChannelUID> channelUIDs = registered.get(handler);
+            if (channelUIDs.isEmpty()
+                    || channelUIDs.stream().anyMatch(uid -> getChannel(uid.getIdWithoutGroup()) == null)) {
+                handler.buildChannels().stream()
+                        .filter(channel -> getChannel(channel.getUID().getIdWithoutGroup()) == null)
+                        .forEach(channel -> {
+                            registerChannel(channel.getUID(), handler);
+                            reattachedChannels.add(channel);
+                        });
+                reattached++;
+            }
+        }
+        updateThingWithChannels(reattachedChannels);
+
+        Set<URL> retainedURLs = retained.stream().map(ChannelHandler::getURL).collect(Collectors.toSet());
+        int added = buildChannels(desired, url -> !retainedURLs.contains(url));
+
+        ChannelChurn churn = new ChannelChurn(added, reattached, obsolete.size(), orphans,
+                retained.size() - reattached);
+        lastChurn = churn;
+        logger.info("Channels have been reconciled: {} / {}", getURL(), churn);
+    }
+
+    private boolean isOrphanCharacteristicChannel(Channel channel, Set<URL> characteristics) {
+        String serviceUUID = channel.getProperties().get(BluetoothBindingConstants.PROPERTY_SERVICE_UUID);
+        String characteristicUUID =
+                channel.getProperties().get(BluetoothBindingConstants.PROPERTY_CHARACTERISTIC_UUID);
+        // advertised service data channels (service UUID = characteristic UUID) are not managed by GATT layout
+        return serviceUUID != null && characteristicUUID != null
+                && !serviceUUID.equalsIgnoreCase(characteristicUUID)
+                && findHandler(channel.getUID()) == null
+                && characteristics.stream().noneMatch(url -> serviceUUID.equalsIgnoreCase(url.getServiceUUID())
+                        && characteristicUUID.equalsIgnoreCase(url.getCharacteristicUUID()));
+    }
+
+    private int buildChannels(Map<URL, Set<CharacteristicAccessType>> layout, Predicate<URL> filter) {
         List<Channel> channels = new ArrayList<>();
-        gattServices.stream()
-                .flatMap(service -> service.getCharacteristics().stream())
-                .filter(characteristic -> checkCharacteristicHandlerNeeded(characteristic.getURL()))
+        List<CharacteristicHandler> handlers = layout.entrySet().stream()
+                .filter(characteristic -> filter.test(characteristic.getKey()))
+                .filter(characteristic -> checkCharacteristicHandlerNeeded(characteristic.getKey()))
                 .map(characteristic -> new CharacteristicHandler(
-                        this, characteristic.getURL(), characteristic.getFlags()))
-                .forEach(handler -> {
-                    List<Channel> chnnls = handler.buildChannels();
-                    channels.addAll(chnnls);
-                    chnnls.forEach(channel -> registerChannel(channel.getUID(), handler));
-                });
+                        this, characteristic.getKey(), characteristic.getValue()))
+                .collect(Collectors.toList());
+        logger.info("Building channels for characteristics: {}", handlers.size());
+        handlers.forEach(handler -> {
+            List<Channel> chnnls = handler.buildChannels();
+            channels.addAll(chnnls);
+            chnnls.forEach(channel -> registerChannel(channel.getUID(), handler));
+        });
         checkDuplicateChannelLabels(channels);
         updateThingWithChannels(channels);
+        return handlers.size();
+    }
+
+    private static Map<URL, Set<CharacteristicAccessType>> getLayout(List<GattService> gattServices) {
+        Map<URL, Set<CharacteristicAccessType>> layout = new LinkedHashMap<>();
+        gattServices.stream().flatMap(service -> service.getCharacteristics().stream())
+                .forEach(characteristic -> layout.put(characteristic.getURL(), characteristic.getFlags()));
+        return layout;
     }
 
     private void checkDuplicateChannelLabels(List<Channel> channels) {
@@ -258,6 +528,14 @@ public class BluetoothDeviceHandler extends GenericBluetoothDeviceHandler
         serviceHandler.dataChanged(data, true);
     }
 
+    private void countDisconnection() {
+        // the connection is counted as disconnected only once, either by the mailbox or on dispose
+        MetricsScope metrics = connectedMetrics.getAndSet(null);
+        if (metrics != null) {
+            metrics.counter(MetricsRegistry.DISCONNECTIONS).increment();
+        }
+    }
+
     private void updateConnectedHandlers() {
         connectedHandler.updateChannel(true);
         connectedAdapterHandler.updateChannel(connectedAdapterHandler.getValue());
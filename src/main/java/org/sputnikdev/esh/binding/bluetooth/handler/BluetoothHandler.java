@@ -1,12 +1,14 @@
 package org.sputnikdev.esh.binding.bluetooth.handler;
 
 import org.eclipse.smarthome.config.core.Configuration;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
 import org.eclipse.smarthome.core.thing.Channel;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandler;
+import org.eclipse.smarthome.core.thing.binding.BridgeHandler;
 import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.State;
@@ -16,19 +18,34 @@ import org.slf4j.LoggerFactory;
 import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
+import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecorder;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothBindingConfig;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContext;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothUtils;
-
+import org.sputnikdev.esh.binding.bluetooth.internal.InitializationRamp;
+import org.sputnikdev.esh.binding.bluetooth.internal.SerialExecutor;
+import org.sputnikdev.esh.binding.bluetooth.internal.TimingWheel;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsScope;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Tracer;
+
+import java.time.Instant;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * A root thing handler for all bluetooth handlers. Defines overall structure and provides some useful methods
@@ -36,24 +53,76 @@ import java.util.function.Consumer;
  *
  * @author Vlad Kolotov
  */
-class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
+class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler implements HandlerDiagnostics {
 
     private Logger logger = LoggerFactory.getLogger(BluetoothHandler.class);
 
     private final BluetoothContext bluetoothContext;
     private final URL url;
-    private final Map<ChannelHandler, Set<ChannelUID>> channelHandlers = new ConcurrentHashMap<>();
+    private final ChannelHandlerRegistry channelHandlers = new ChannelHandlerRegistry();
     private final Object updateLock = new Object();
+    private final ConfigurationWriter configurationWriter = new ConfigurationWriter(this);
+    private final SerialExecutor mailbox;
+    private final MetricsScope metrics;
+    // resolved only when the adapter might have changed (see refreshAdapter) or its scope has been removed
+    // (see getAdapterMetrics), not on each metrics event
+    private final AtomicReference<AdapterScope> adapter;
     private CompletableFuture<Void> initFuture;
+    // replaced by initialize(), read by status updates and dispose() on other threads
+    private volatile InitializationRamp.Admission initialization;
+    private volatile String lastError;
 
     BluetoothHandler(Thing thing, BluetoothContext bluetoothContext) {
         super(thing);
         this.bluetoothContext = bluetoothContext;
         url = BluetoothUtils.getURL(thing);
-    }
-
+        BluetoothBindingConfig config = bluetoothContext.getConfig();
+        mailbox = new SerialExecutor(url.toString(), ThreadPoolManager.getPool(BluetoothBindingConstants.BINDING_ID),
+                config.getMailboxCapacity(),
+                SerialExecutor.OverflowPolicy.valueOf(config.getMailboxOverflowPolicy()));
+        MetricsRegistry metricsRegistry = bluetoothContext.getMetricsRegistry();
+        metrics = url.getDeviceAddress() != null
+                ? metricsRegistry.device(url) : metricsRegistry.adapter(url.getAdapterAddress());
+        adapter = new AtomicReference<>(
+                new AdapterScope(url.getAdapterAddress(), metricsRegistry.adapter(url.getAdapterAddress())));
+    }
+
+    /**
+     * Submits the handler for initialization to the initialization ramp (see {@link InitializationRamp}).
+     * Subclasses should override {@link #initializeHandler()} instead.
+     */
     @Override
     public void initialize() {
+        // the handler might have been disposed and is being initialized again (e.g. when the thing is updated)
+        mailbox.resume();
+        initialization = bluetoothContext.getInitializationRamp().admit(thing.getUID(), this instanceof BridgeHandler,
+            () -> {
+                try {
+                    initializeHandler();
+                } catch (RuntimeException ex) {
+                    logger.error("Could not initialize handler: {}", url, ex);
+                    updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.HANDLER_INITIALIZING_ERROR,
+                            ex.getMessage());
+                }
+            });
+    }
+
+    /**
+     * Cancels pending initialization (or waits until it is finished), discards pending events
+     * (the mailbox is paused until the handler is initialized again) and disposes the handler.
+     * Subclasses should override {@link #disposeHandler()} instead.
+     */
+    @Override
+    public void dispose() {
+        Optional.ofNullable(initialization).ifPresent(InitializationRamp.Admission::cancel);
+        mailbox.pause();
+        disposeHandler();
+    }
+
+    /**
+     * Initializes the handler once it is admitted by the initialization ramp.
+     */
+    protected void initializeHandler() {
         super.initialize();
 
         initFuture = getGovernor().whenReady(governor -> {
@@ -62,22 +131,26 @@ class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
         });
     }
 
-    @Override
-    public void handleCommand(ChannelUID channelUID, Command command) {
-        findHandler(channelUID, handler -> handler.handleCommand(channelUID, command));
-    }
-
-    @Override
-    public void dispose() {
+    /**
+     * Disposes the handler. Note that the handler might be disposed before it gets initialized.
+     */
+    protected void disposeHandler() {
         logger.info("Disposing Abstract Bluetooth Handler");
+        configurationWriter.flush();
         super.dispose();
         disposeChannelHandlers();
         Optional.ofNullable(initFuture).ifPresent(future -> future.cancel(true));
     }
 
+    @Override
+    public void handleCommand(ChannelUID channelUID, Command command) {
+        findHandler(channelUID, handler -> handler.handleCommand(channelUID, command));
+    }
+
     @Override
     public void handleConfigurationUpdate(Map<String, Object> configurationParameters) {
         validateConfigurationParameters(configurationParameters);
+        configurationWriter.discard(configurationParameters.keySet());
 
         // can be overridden by subclasses
         Configuration configuration = editConfiguration();
@@ -99,7 +172,7 @@ class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
     public void channelUnlinked(ChannelUID channelUID) {
         super.channelUnlinked(channelUID);
         findHandler(channelUID, channelHandler -> {
-            if (channelHandlers.get(channelHandler).stream()
+            if (channelHandlers.getChannels(channelHandler).stream()
                     .filter(uid -> isLinked(uid.getIdWithoutGroup()) && !uid.equals(channelUID))
                     .count() == 0) {
                 channelHandler.unlinked();
@@ -110,11 +183,19 @@ class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
     @Override
     protected void updateState(String channelID, State state) {
         super.updateState(channelID, state);
+        countMetric(MetricsRegistry.STATE_UPDATES);
     }
 
     @Override
     protected void updateState(ChannelUID channelUID, State state) {
         super.updateState(channelUID, state);
+        countMetric(MetricsRegistry.STATE_UPDATES);
+    }
+
+    @Override
+    public void handleRemoval() {
+        bluetoothContext.getMetricsRegistry().remove(metrics.getName());
+        super.handleRemoval();
     }
 
 
@@ -136,6 +217,13 @@ class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
     @Override
     protected void updateStatus(ThingStatus status, ThingStatusDetail statusDetail, String description) {
         super.updateStatus(status, statusDetail, description);
+        if (statusDetail != null && statusDetail != ThingStatusDetail.NONE) {
+            lastError = Instant.now() + " " + statusDetail + (description != null ? ": " + description : "");
+        }
+        InitializationRamp.Admission admission = initialization;
+        if (status == ThingStatus.ONLINE && admission != null) {
+            admission.online();
+        }
     }
 
     @Override
@@ -152,26 +240,40 @@ class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
         // default implementation
     }
 
+    /**
+     * Persists a configuration parameter. The parameter is written in background together with other
+     * parameters changed shortly (see {@link ConfigurationWriter}).
+     * @param name parameter name
+     * @param value parameter value
+     */
+    protected void persistConfiguration(String name, Object value) {
+        configurationWriter.write(name, value);
+    }
+
     protected BluetoothContext getBluetoothContext() {
         return bluetoothContext;
     }
 
     protected void addChannelHandler(ChannelHandler channelHandler) {
-        channelHandlers.computeIfAbsent(channelHandler, handler -> new HashSet<>());
+        channelHandlers.add(channelHandler);
     }
 
     protected void registerChannel(ChannelUID channelUID, ChannelHandler channelHandler) {
-        channelHandlers.computeIfAbsent(channelHandler, handler -> {
-            if (isLinked(channelUID.getIdWithoutGroup())) {
-                channelHandler.linked();
-            }
-            return new HashSet<>();
-        }).add(channelUID);
+        if (channelHandlers.register(channelUID, channelHandler) && isLinked(channelUID.getIdWithoutGroup())) {
+            channelHandler.linked();
+        }
     }
 
     protected ChannelHandler findHandler(ChannelUID channelUID) {
-        return channelHandlers.entrySet().stream().filter(entry -> entry.getValue().contains(channelUID))
-                .findAny().map(Map.Entry::getKey).orElse(null);
+        return channelHandlers.find(channelUID);
+    }
+
+    /**
+     * Returns a snapshot of registered channel handlers and their channels.
+     * @return channel handlers and their channel UIDs
+     */
+    protected Map<ChannelHandler, Set<ChannelUID>> getChannelHandlers() {
+        return channelHandlers.snapshot();
     }
 
     protected void addChannelHandlers(List<SingleChannelHandler> handlers) {
@@ -181,6 +283,31 @@ class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
         });
     }
 
+    /**
+     * Disposes and unregisters channel handlers matching the provided filter.
+     * @param filter channel handler filter
+     * @return channel UIDs that were registered for the removed channel handlers
+     */
+    protected Set<ChannelUID> removeChannelHandlers(Predicate<ChannelHandler> filter) {
+        Set<ChannelUID> removed = new HashSet<>();
+        channelHandlers.removeIf(filter).forEach((channelHandler, channelUIDs) -> {
+            channelHandler.dispose();
+            removed.addAll(channelUIDs);
+        });
+        return removed;
+    }
+
+    protected void removeChannels(Collection<ChannelUID> channelUIDs) {
+        if (!channelUIDs.isEmpty()) {
+            logger.debug("Removing channels from thing: {} / {}", url, channelUIDs.size());
+            synchronized (updateLock) {
+                ThingBuilder thingBuilder = editThing();
+                channelUIDs.forEach(thingBuilder::withoutChannel);
+                updateThing(thingBuilder.build());
+            }
+        }
+    }
+
     protected void updateThingWithChannels(List<Channel> channels) {
         if (!channels.isEmpty()) {
             logger.debug("Updating thing with channels: {} / {}", url, channels.size());
@@ -232,22 +359,243 @@ class BluetoothHandler<T extends BluetoothGovernor> extends BaseThingHandler {
         return scheduler;
     }
 
+    protected TimingWheel getTimingWheel() {
+        return bluetoothContext.getTimingWheel();
+    }
+
+    /**
+     * Returns an executor for blocking bluetooth I/O (e.g. reading characteristics, setting aliases)
+     * of the adapter that the handler belongs to ({@link #getAdapterAddress()}, for combined devices this is
+     * the adapter that the device is seen by or connected to). Tasks are rejected when the executor is saturated.
+     * @return I/O executor
+     */
+    protected Executor getIoExecutor() {
+        return bluetoothContext.getIoExecutors().getExecutor(getAdapterAddress());
+    }
+
+    /**
+     * Returns metrics of the handler (device or adapter metrics).
+     * @return handler metrics
+     */
+    protected MetricsScope getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns address of the adapter that the handler belongs to (adapter metrics are recorded for this adapter).
+     * The address is cached, it is updated by {@link #refreshAdapter()}.
+     * @return adapter address
+     */
+    protected String getAdapterAddress() {
+        return adapter.get().address;
+    }
+
+    /**
+     * Returns metrics of the adapter that the handler belongs to. The metrics scope is cached,
+     * it is updated by {@link #refreshAdapter()} or when the scope has been removed (the adapter thing
+     * has been removed while the handler is still alive).
+     * @return adapter metrics
+     */
+    protected MetricsScope getAdapterMetrics() {
+        AdapterScope current = adapter.get();
+        if (current.metrics.isRemoved()) {
+            AdapterScope resolved = new AdapterScope(current.address,
+                    bluetoothContext.getMetricsRegistry().adapter(current.address));
+            return adapter.compareAndSet(current, resolved) ? resolved.metrics : adapter.get().metrics;
+        }
+        return current.metrics;
+    }
+
+    /**
+     * Resolves address of the adapter that the handler belongs to. Subclasses (e.g. combined devices) can resolve
+     * the adapter dynamically, in this case {@link #refreshAdapter()} must be called when the adapter might have
+     * changed (e.g. on location or connection changes).
+     * @return adapter address
+     */
+    protected String resolveAdapterAddress() {
+        return url.getAdapterAddress();
+    }
+
+    /**
+     * Re-resolves the adapter that the handler belongs to ({@link #resolveAdapterAddress()}).
+     */
+    protected void refreshAdapter() {
+        String address = resolveAdapterAddress();
+        AdapterScope current = adapter.get();
+        if (!Objects.equals(address, current.address)) {
+            adapter.compareAndSet(current,
+                    new AdapterScope(address, bluetoothContext.getMetricsRegistry().adapter(address)));
+        }
+    }
+
+    /**
+     * Returns payload tracer (see {@link Tracer}).
+     * @return tracer
+     */
+    protected Tracer getTracer() {
+        return bluetoothContext.getMetricsRegistry().getTracer();
+    }
+
+    /**
+     * Returns payload recorder (see {@link CaptureRecorder}).
+     * @return capture recorder
+     */
+    protected CaptureRecorder getCaptureRecorder() {
+        return bluetoothContext.getCaptureRecorder();
+    }
+
+    /**
+     * Increments a counter of the handler and of the adapter that the handler belongs to.
+     * @param metric metric name (see {@link MetricsRegistry})
+     */
+    protected void countMetric(String metric) {
+        metrics.counter(metric).increment();
+        MetricsScope adapterMetrics = getAdapterMetrics();
+        if (adapterMetrics != metrics) {
+            adapterMetrics.counter(metric).increment();
+        }
+    }
+
+    /**
+     * Records a duration (time elapsed since the given moment) in a histogram of the handler
+     * and of the adapter that the handler belongs to.
+     * @param metric metric name (see {@link MetricsRegistry})
+     * @param startNanos a moment obtained from {@link System#nanoTime()}
+     */
+    protected void recordMetric(String metric, long startNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        metrics.histogram(metric).record(micros);
+        MetricsScope adapterMetrics = getAdapterMetrics();
+        if (adapterMetrics != metrics) {
+            adapterMetrics.histogram(metric).record(micros);
+        }
+    }
+
+    /**
+     * Returns the mailbox of the handler. Events coming from the transport (bluetooth manager listeners) are
+     * processed one at a time in the order they are received, so that they do not race each other.
+     * Frequent value updates (e.g. RSSI) should be submitted as droppable tasks
+     * ({@link SerialExecutor#executeDroppable(Runnable)}), lifecycle events must never be dropped.
+     * @return handler mailbox
+     */
+    protected SerialExecutor getMailbox() {
+        return mailbox;
+    }
+
+    @Override
+    public String getThingUID() {
+        return getThing().getUID().getAsString();
+    }
+
+    @Override
+    public String getGovernorURL() {
+        return url.toString();
+    }
+
+    @Override
+    public String getThingStatus() {
+        return getThing().getStatus().name();
+    }
+
+    @Override
+    public String getMetricsScope() {
+        return metrics.getName();
+    }
+
+    @Override
+    public int getChannelHandlerCount() {
+        return channelHandlers.getHandlers().size();
+    }
+
+    @Override
+    public int getLinkedChannelCount() {
+        return (int) channelHandlers.snapshot().values().stream().flatMap(Set::stream)
+                .filter(channelUID -> isLinked(channelUID.getIdWithoutGroup())).count();
+    }
+
+    @Override
+    public int getPollingTaskCount() {
+        return (int) channelHandlers.getHandlers().stream().filter(ChannelHandler::isPolling).count();
+    }
+
+    @Override
+    public int getPollingInterval() {
+        return getBindingConfig().getUpdateRate();
+    }
+
+    @Override
+    public List<String> getChannelRegistry() {
+        return channelHandlers.snapshot().entrySet().stream()
+                .map(entry -> describe(entry.getKey()) + ": " + entry.getValue().stream()
+                        .map(ChannelUID::getIdWithoutGroup).sorted().collect(Collectors.joining(", ")))
+                .sorted().collect(Collectors.toList());
+    }
+
+    @Override
+    public int getMailboxDepth() {
+        return mailbox.getDepth();
+    }
+
+    @Override
+    public long getMailboxDropped() {
+        return mailbox.getDropped();
+    }
+
+    @Override
+    public String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public long getTimeToOnline() {
+        InitializationRamp.Admission admission = initialization;
+        return admission != null ? admission.getTimeToOnline() : -1;
+    }
+
+    @Override
+    public void poll() {
+        logger.info("Polling channels: {}", url);
+        channelHandlers.getHandlers().forEach(ChannelHandler::poll);
+    }
+
+    @Override
+    public void dropCachedLayout() {
+        // default implementation
+    }
+
     protected void updateStatus(ThingStatusDetail detail, String message) {
         updateStatus(getGovernor().isReady() ? ThingStatus.ONLINE : ThingStatus.OFFLINE, detail, message);
     }
 
     private void initChannelHandlers() {
-        channelHandlers.keySet().forEach(ChannelHandler::init);
+        channelHandlers.getHandlers().forEach(ChannelHandler::init);
     }
 
     private void disposeChannelHandlers() {
-        channelHandlers.keySet().forEach(ChannelHandler::dispose);
-        channelHandlers.clear();
+        channelHandlers.removeIf(handler -> true).keySet().forEach(ChannelHandler::dispose);
+    }
+
+    private static String describe(ChannelHandler channelHandler) {
+        Class<?> type = channelHandler.getClass();
+        while (type.isAnonymousClass()) {
+            type = type.getSuperclass();
+        }
+        return type.getSimpleName() + " " + channelHandler.getURL() + (channelHandler.isPolling() ? " (polling)" : "");
     }
 
     private void findHandler(ChannelUID channelUID, Consumer<ChannelHandler> consumer) {
-        channelHandlers.entrySet().stream().filter(entry -> entry.getValue().contains(channelUID))
-                .findAny().ifPresent(entry -> consumer.accept(entry.getKey()));
+        Optional.ofNullable(channelHandlers.find(channelUID)).ifPresent(consumer);
+    }
+
+    private static final class AdapterScope {
+
+        private final String address;
+        private final MetricsScope metrics;
+
+        private AdapterScope(String address, MetricsScope metrics) {
+            this.address = address;
+            this.metrics = metrics;
+        }
     }
 
 }
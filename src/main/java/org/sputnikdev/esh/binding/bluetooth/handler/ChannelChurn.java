@@ -0,0 +1,71 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+/**
+ * Reports what has been changed by a channel reconciliation (see {@link BluetoothDeviceHandler}):
+ * number of added, re-attached, removed and unchanged characteristic handlers and number of removed orphan channels.
+ *
+ * @author Vlad Kolotov
+ */
+public final class ChannelChurn {
+
+    private final int added;
+    private final int reattached;
+    private final int removed;
+    private final int orphans;
+    private final int unchanged;
+
+    ChannelChurn(int added, int reattached, int removed, int orphans, int unchanged) {
+        this.added = added;
+        this.reattached = reattached;
+        this.removed = removed;
+        this.orphans = orphans;
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * Returns number of handlers built for new characteristics.
+     * @return number of added handlers
+     */
+    public int getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns number of retained handlers which channels had to be rebuilt.
+     * @return number of re-attached handlers
+     */
+    public int getReattached() {
+        return reattached;
+    }
+
+    /**
+     * Returns number of handlers disposed for removed or changed characteristics.
+     * @return number of removed handlers
+     */
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns number of removed characteristic channels that did not belong to any handler.
+     * @return number of removed orphan channels
+     */
+    public int getOrphans() {
+        return orphans;
+    }
+
+    /**
+     * Returns number of handlers that have not been changed.
+     * @return number of unchanged handlers
+     */
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    @Override
+    public String toString() {
+        return "added: " + added + ", reattached: " + reattached + ", removed: " + removed
+                + ", orphans: " + orphans + ", unchanged: " + unchanged;
+    }
+
+}
@@ -45,6 +45,19 @@ public interface ChannelHandler {
      */
     default void unlinked() { }
 
+    /**
+     * Polls the governor and updates the channel straight away (e.g. requested by operators).
+     */
+    default void poll() { }
+
+    /**
+     * Checks whether the governor is polled periodically.
+     * @return true if the governor is polled periodically
+     */
+    default boolean isPolling() {
+        return false;
+    }
+
     /**
      * Thing handler calls this method when it gets disposed so that some resources can be released
      * (e.g. governor destroyed).
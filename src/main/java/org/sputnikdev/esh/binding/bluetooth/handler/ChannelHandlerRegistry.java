@@ -0,0 +1,134 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe registry of channel handlers and their channels. Channels are registered from governor callback
+ * threads while framework threads (commands, link/unlink events) look handlers up, therefore the registry does not
+ * use any coarse locks: handlers are kept in a concurrent map with concurrent sets of channels, and a reverse index
+ * (channel UID to handler) makes lookups O(1). Registration and removal of a handler are atomic.
+ *
+ * @author Vlad Kolotov
+ */
+class ChannelHandlerRegistry {
+
+    private final Map<ChannelHandler, Set<ChannelUID>> handlers = new ConcurrentHashMap<>();
+    private final Map<ChannelUID, ChannelHandler> index = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a channel handler without channels.
+     * @param channelHandler channel handler
+     * @return true if the handler has not been registered before
+     */
+    boolean add(ChannelHandler channelHandler) {
+        return handlers.putIfAbsent(channelHandler, ConcurrentHashMap.newKeySet()) == null;
+    }
+
+    /**
+     * Registers a channel of a channel handler, the channel handler gets added if it has not been registered yet.
+     * If the channel has been registered for another handler, it is moved to the given handler.
+     * @param channelUID channel UID
+     * @param channelHandler channel handler
+     * @return true if the handler has not been registered before
+     */
+    boolean register(ChannelUID channelUID, ChannelHandler channelHandler) {
+        AtomicBoolean added = new AtomicBoolean();
+        AtomicReference<ChannelHandler> previous = new AtomicReference<>();
+        handlers.compute(channelHandler, (handler, channelUIDs) -> {
+            if (channelUIDs == null) {
+                added.set(true);
+                channelUIDs = ConcurrentHashMap.newKeySet();
+            }
+            channelUIDs.add(channelUID);
+            previous.set(index.put(channelUID, handler));
+            return channelUIDs;
+        });
+        ChannelHandler owner = previous.get();
+        if (owner != null && owner != channelHandler) {
+            handlers.computeIfPresent(owner, (handler, channelUIDs) -> {
+                // unless the channel has been registered for the previous owner again in the meantime
+                if (index.get(channelUID) != handler) {
+                    channelUIDs.remove(channelUID);
+                }
+                return channelUIDs;
+            });
+        }
+        return added.get();
+    }
+
+    /**
+     * Returns a channel handler that the channel belongs to.
+     * @param channelUID channel UID
+     * @return channel handler or null if the channel is not registered
+     */
+    ChannelHandler find(ChannelUID channelUID) {
+        return index.get(channelUID);
+    }
+
+    /**
+     * Returns channels of a channel handler.
+     * @param channelHandler channel handler
+     * @return an unmodifiable view of channels of the handler
+     */
+    Set<ChannelUID> getChannels(ChannelHandler channelHandler) {
+        Set<ChannelUID> channelUIDs = handlers.get(channelHandler);
+        return channelUIDs != null ? Collections.unmodifiableSet(channelUIDs) : Collections.emptySet();
+    }
+
+    /**
+     * Returns all registered channel handlers. The returned view is weakly consistent, i.e. it can be iterated
+     * while handlers are being registered/removed.
+     * @return registered channel handlers
+     */
+    Set<ChannelHandler> getHandlers() {
+        return Collections.unmodifiableSet(handlers.keySet());
+    }
+
+    /**
+     * Returns a snapshot of registered channel handlers and their channels.
+     * @return channel handlers and their channel UIDs
+     */
+    Map<ChannelHandler, Set<ChannelUID>> snapshot() {
+        Map<ChannelHandler, Set<ChannelUID>> snapshot = new HashMap<>();
+        handlers.forEach((handler, channelUIDs) -> snapshot.put(handler, new HashSet<>(channelUIDs)));
+        return snapshot;
+    }
+
+    /**
+     * Removes channel handlers matching the provided filter.
+     * @param filter channel handler filter
+     * @return removed channel handlers and their channel UIDs
+     */
+    Map<ChannelHandler, Set<ChannelUID>> removeIf(Predicate<ChannelHandler> filter) {
+        Map<ChannelHandler, Set<ChannelUID>> removed = new HashMap<>();
+        handlers.keySet().stream().filter(filter).forEach(channelHandler -> {
+            Set<ChannelUID> channelUIDs = remove(channelHandler);
+            if (channelUIDs != null) {
+                removed.put(channelHandler, channelUIDs);
+            }
+        });
+        return removed;
+    }
+
+    private Set<ChannelUID> remove(ChannelHandler channelHandler) {
+        AtomicReference<Set<ChannelUID>> removed = new AtomicReference<>();
+        handlers.computeIfPresent(channelHandler, (handler, channelUIDs) -> {
+            // the channel might have been re-registered for another handler
+            channelUIDs.forEach(channelUID -> index.remove(channelUID, handler));
+            removed.set(channelUIDs);
+            return null;
+        });
+        return removed.get();
+    }
+
+}
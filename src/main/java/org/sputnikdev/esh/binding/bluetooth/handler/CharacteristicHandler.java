@@ -20,15 +20,21 @@ import org.sputnikdev.bluetooth.manager.CharacteristicGovernor;
 import org.sputnikdev.bluetooth.manager.ValueListener;
 import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecord;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothUtils;
+import org.sputnikdev.esh.binding.bluetooth.internal.ConflatingMailbox;
+import org.sputnikdev.esh.binding.bluetooth.internal.TimingWheel;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsScope;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Trace;
 
 import java.math.BigInteger;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A multi-channel bluetooth device handler which represents a parsable GATT characteristic
@@ -38,15 +44,34 @@ import java.util.concurrent.TimeUnit;
  */
 class CharacteristicHandler extends GattChannelHandler implements ValueListener {
 
+    private static final String NOTIFICATION = "notification";
+
     private Logger logger = LoggerFactory.getLogger(CharacteristicHandler.class);
 
     private final Set<CharacteristicAccessType> flags;
-    private ScheduledFuture<?> updateTask;
-    private CompletableFuture<byte[]> authFuture;
+    private final ConflatingMailbox<Notification> notifications;
+    private volatile TimingWheel.Job updateTask;
+    // a pending read, at most one read is pending at a time
+    private final AtomicReference<CompletableFuture<byte[]>> authFuture = new AtomicReference<>();
 
     CharacteristicHandler(BluetoothHandler handler, URL characteristicURL, Set<CharacteristicAccessType> flags) {
         super(handler, characteristicURL, !BluetoothUtils.hasWriteAccess(flags));
         this.flags = new HashSet<>(flags);
+        notifications = handler.getBindingConfig().isNotificationConflation()
+                ? new ConflatingMailbox<>(handler.getMailbox(), this::notificationReceived)
+                : null;
+    }
+
+    Set<CharacteristicAccessType> getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns number of notifications that were conflated (replaced by newer ones before they got processed).
+     * @return number of conflated notifications
+     */
+    long getConflated() {
+        return notifications != null ? notifications.getConflated() : 0;
     }
 
     @Override
@@ -57,10 +82,10 @@ class CharacteristicHandler extends GattChannelHandler implements ValueListener
         if (notifiable) {
             characteristicGovernor.addValueListener(this);
             if (readable) {
-                updateChannels();
+                submitUpdateChannels();
             }
         } else if (BluetoothUtils.hasReadAccess(flags)) {
-            updateChannels();
+            submitUpdateChannels();
             scheduleUpdateChannels();
         }
     }
@@ -68,15 +93,29 @@ class CharacteristicHandler extends GattChannelHandler implements ValueListener
     @Override
     public void detach() {
         if (updateTask != null) {
-            updateTask.cancel(true);
+            updateTask.cancel();
         }
-        if (authFuture != null) {
-            authFuture.cancel(true);
+        CompletableFuture<byte[]> pending = authFuture.get();
+        if (pending != null) {
+            pending.cancel(true);
         }
         CharacteristicGovernor characteristicGovernor = getGovernor();
         characteristicGovernor.removeValueListener(this);
     }
 
+    @Override
+    public void poll() {
+        if (BluetoothUtils.hasReadAccess(flags)) {
+            submitUpdateChannels();
+        }
+    }
+
+    @Override
+    public boolean isPolling() {
+        TimingWheel.Job task = updateTask;
+        return task != null && !task.isCancelled();
+    }
+
     @Override
     public void handleCommand(ChannelUID channelUID, Command command) {
         if (!getGovernor().isReady()) {
@@ -105,7 +144,33 @@ class CharacteristicHandler extends GattChannelHandler implements ValueListener
 
     @Override
     public void changed(byte[] value) {
-        dataChanged(value, false);
+        handler.countMetric(MetricsRegistry.NOTIFICATIONS);
+        Trace trace = handler.getTracer().start(url, NOTIFICATION);
+        handler.getCaptureRecorder().record(CaptureRecord.Type.NOTIFICATION, url, value);
+        if (notifications != null) {
+            // only the latest value is kept, it is processed off the transport thread
+            notifications.offer(new Notification(value, trace));
+        } else {
+            dataChanged(value, false, trace);
+        }
+    }
+
+    /**
+     * Processes a replayed notification (see {@link GenericBluetoothDeviceHandler#replay}), called by the mailbox.
+     * Unlike live notifications, replayed notifications are neither recorded nor conflated.
+     * @param value characteristic value
+     */
+    void replayed(byte[] value) {
+        handler.countMetric(MetricsRegistry.NOTIFICATIONS);
+        dataChanged(value, false, handler.getTracer().start(url, NOTIFICATION));
+    }
+
+    private void notificationReceived(Notification notification) {
+        try {
+            dataChanged(notification.value, false, notification.trace);
+        } catch (Exception ex) {
+            logger.warn("Could not process notification: {} : {}", url, ex.getMessage());
+        }
     }
 
     private String getFieldName(ChannelUID channelUID) {
@@ -120,25 +185,73 @@ class CharacteristicHandler extends GattChannelHandler implements ValueListener
         return null;
     }
 
+    private void submitUpdateChannels() {
+        // reading is blocking, it is run on the I/O executor of the adapter
+        handler.getIoExecutor().execute(this::updateChannels);
+    }
+
     private void updateChannels() {
-        if (authFuture == null || authFuture.isDone()) {
-            authFuture = getGovernor().whenAuthenticated(CharacteristicGovernor::read);
-            authFuture.thenAccept(newData -> {
-                logger.debug("Updating channels: {}", url);
-                dataChanged(newData, false);
-            }).exceptionally(ex -> {
-                logger.warn("Error occurred while updating channels: {} : {}", url, ex.getMessage());
-                return null;
-            });
+        CompletableFuture<byte[]> current = authFuture.get();
+        CompletableFuture<byte[]> pending = new CompletableFuture<>();
+        if (current != null && !current.isDone() || !authFuture.compareAndSet(current, pending)) {
+            // another read is pending
+            return;
+        }
+        pending.thenAccept(newData -> {
+            logger.debug("Updating channels: {}", url);
+            dataChanged(newData, false);
+        }).exceptionally(ex -> {
+            logger.warn("Error occurred while updating channels: {} : {}", url, ex.getMessage());
+            return null;
+        });
+        getGovernor().whenAuthenticated(this::read).whenComplete((data, ex) -> {
+            if (ex != null) {
+                pending.completeExceptionally(ex);
+            } else {
+                pending.complete(data);
+            }
+        });
+    }
+
+    private byte[] read(CharacteristicGovernor governor) {
+        // the same adapter is used to track operations in flight, even if the device moves to another adapter
+        MetricsScope adapterMetrics = handler.getAdapterMetrics();
+        adapterMetrics.counter(MetricsRegistry.OPERATIONS_STARTED).increment();
+        long started = System.nanoTime();
+        try {
+            byte[] data = governor.read();
+            handler.countMetric(MetricsRegistry.READS);
+            return data;
+        } catch (RuntimeException ex) {
+            handler.countMetric(MetricsRegistry.READ_ERRORS);
+            throw ex;
+        } finally {
+            handler.recordMetric(MetricsRegistry.READ_TIME, started);
+            adapterMetrics.counter(MetricsRegistry.OPERATIONS_FINISHED).increment();
+        }
+    }
+
+    private boolean write(byte[] data) {
+        MetricsScope adapterMetrics = handler.getAdapterMetrics();
+        adapterMetrics.counter(MetricsRegistry.OPERATIONS_STARTED).increment();
+        long started = System.nanoTime();
+        boolean written = false;
+        try {
+            written = getGovernor().write(data);
+            return written;
+        } finally {
+            handler.countMetric(written ? MetricsRegistry.WRITES : MetricsRegistry.WRITE_ERRORS);
+            handler.recordMetric(MetricsRegistry.WRITE_TIME, started);
+            adapterMetrics.counter(MetricsRegistry.OPERATIONS_FINISHED).increment();
         }
     }
 
     private void scheduleUpdateChannels() {
         if (updateTask != null) {
-            updateTask.cancel(false);
+            updateTask.cancel();
         }
         int updateRate = handler.getBindingConfig().getUpdateRate();
-        updateTask = handler.getScheduler().scheduleWithFixedDelay(this::updateChannels,
+        updateTask = handler.getTimingWheel().scheduleWithFixedDelay(this::submitUpdateChannels,
                 updateRate, updateRate, TimeUnit.SECONDS);
     }
 
@@ -151,7 +264,7 @@ class CharacteristicHandler extends GattChannelHandler implements ValueListener
             try {
                 updateHolder(request, fieldName, state);
                 byte[] data = gattParser.serialize(request);
-                if (!getGovernor().write(data)) {
+                if (!write(data)) {
                     handler.updateStatus(ThingStatusDetail.COMMUNICATION_ERROR,
                             "Could not write data to characteristic: " + url);
                 }
@@ -169,7 +282,7 @@ class CharacteristicHandler extends GattChannelHandler implements ValueListener
             BluetoothGattParser gattParser = handler.getParser();
 
             byte[] data = gattParser.serialize(state.toString(), 16);
-            if (!getGovernor().write(data)) {
+            if (!write(data)) {
                 handler.updateStatus(ThingStatus.ONLINE, ThingStatusDetail.COMMUNICATION_ERROR,
                         "Could not write data to characteristic: " + url);
             }
@@ -228,4 +341,15 @@ class CharacteristicHandler extends GattChannelHandler implements ValueListener
         return handler.getBluetoothContext().getManager().getCharacteristicGovernor(url);
     }
 
+    private static final class Notification {
+
+        private final byte[] value;
+        private final Trace trace;
+
+        private Notification(byte[] value, Trace trace) {
+            this.value = value;
+            this.trace = trace;
+        }
+    }
+
 }
@@ -0,0 +1,98 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import org.eclipse.smarthome.config.core.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A write-behind writer of thing configuration parameters. Each configuration update rewrites the thing
+ * in the JSON storage, therefore parameter changes are coalesced over a short period of time
+ * ({@link org.sputnikdev.esh.binding.bluetooth.internal.BluetoothBindingConfig#getConfigurationWriteDelay()})
+ * and written all at once. Parameters which values have not changed are not written.
+ *
+ * @author Vlad Kolotov
+ */
+class ConfigurationWriter {
+
+    private Logger logger = LoggerFactory.getLogger(ConfigurationWriter.class);
+
+    private final BluetoothHandler handler;
+    private final Map<String, Object> pending = new HashMap<>();
+    private ScheduledFuture<?> flushTask;
+
+    ConfigurationWriter(BluetoothHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Schedules a configuration parameter to be written. The parameter is not written if its value is the same
+     * as the current one.
+     * @param name parameter name
+     * @param value parameter value
+     */
+    synchronized void write(String name, Object value) {
+        if (isSame(handler.getConfig().get(name), value)) {
+            pending.remove(name);
+            return;
+        }
+        pending.put(name, value);
+        int delay = handler.getBindingConfig().getConfigurationWriteDelay();
+        if (delay <= 0) {
+            flush();
+        } else if (flushTask == null) {
+            flushTask = handler.getScheduler().schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Discards pending values of the given parameters (e.g. if they have been explicitly changed by user).
+     * @param names parameter names
+     */
+    synchronized void discard(Collection<String> names) {
+        pending.keySet().removeAll(names);
+    }
+
+    /**
+     * Writes all pending parameters straight away.
+     */
+    synchronized void flush() {
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        Configuration configuration = handler.editConfiguration();
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : pending.entrySet()) {
+            if (!isSame(configuration.get(entry.getKey()), entry.getValue())) {
+                configuration.put(entry.getKey(), entry.getValue());
+                changed = true;
+            }
+        }
+        logger.debug("Writing configuration: {} / {} parameters, changed: {}",
+                handler.getURL(), pending.size(), changed);
+        pending.clear();
+        if (changed) {
+            handler.updateConfiguration(configuration);
+        }
+    }
+
+    private static boolean isSame(Object stored, Object value) {
+        if (stored instanceof Number && value instanceof Number) {
+            // numbers are stored as BigDecimal
+            return new BigDecimal(stored.toString()).compareTo(new BigDecimal(value.toString())) == 0;
+        }
+        return Objects.equals(stored, value);
+    }
+
+}
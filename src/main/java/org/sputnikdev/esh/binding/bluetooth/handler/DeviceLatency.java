@@ -0,0 +1,96 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import org.sputnikdev.esh.binding.bluetooth.metrics.HistogramSnapshot;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsScope;
+
+/**
+ * Calculates latency percentiles and error rate of GATT operations (reads, writes and authentication) of a device
+ * from its metrics (see {@link MetricsRegistry}) over the period of time since the previous sample.
+ *
+ * @author Vlad Kolotov
+ */
+class DeviceLatency {
+
+    private final MetricsScope metrics;
+    private HistogramSnapshot latency;
+    private long operationErrors;
+    private long authenticationErrors;
+
+    DeviceLatency(MetricsScope metrics) {
+        this.metrics = metrics;
+        latency = getLatency();
+        operationErrors = getOperationErrors();
+        authenticationErrors = count(MetricsRegistry.AUTHENTICATION_ERRORS);
+    }
+
+    /**
+     * Takes a new sample.
+     * @return latency since the previous sample or null if there were no GATT operations
+     */
+    Sample sample() {
+        HistogramSnapshot newLatency = getLatency();
+        long newOperationErrors = getOperationErrors();
+        long newAuthenticationErrors = count(MetricsRegistry.AUTHENTICATION_ERRORS);
+
+        HistogramSnapshot window = newLatency.minus(latency);
+        long failedOperations = newOperationErrors - operationErrors;
+        long failedAuthentications = newAuthenticationErrors - authenticationErrors;
+        latency = newLatency;
+        operationErrors = newOperationErrors;
+        authenticationErrors = newAuthenticationErrors;
+
+        // failed reads and writes are timed, failed authentication is not
+        long operations = window.getCount() + failedAuthentications;
+        if (operations == 0) {
+            return null;
+        }
+        return new Sample(window, (failedOperations + failedAuthentications) * 100.0 / operations);
+    }
+
+    private HistogramSnapshot getLatency() {
+        return metrics.histogram(MetricsRegistry.READ_TIME).snapshot()
+                .merge(metrics.histogram(MetricsRegistry.WRITE_TIME).snapshot())
+                .merge(metrics.histogram(MetricsRegistry.AUTHENTICATION_TIME).snapshot());
+    }
+
+    private long getOperationErrors() {
+        return count(MetricsRegistry.READ_ERRORS) + count(MetricsRegistry.WRITE_ERRORS);
+    }
+
+    private long count(String metric) {
+        return metrics.counter(metric).getCount();
+    }
+
+    /**
+     * Latency of GATT operations over a period of time.
+     */
+    static final class Sample {
+
+        private final HistogramSnapshot latency;
+        private final double errorRate;
+
+        private Sample(HistogramSnapshot latency, double errorRate) {
+            this.latency = latency;
+            this.errorRate = errorRate;
+        }
+
+        /**
+         * Returns an approximate latency percentile in milliseconds.
+         * @param percentile percentile, e.g. 0.95
+         * @return latency percentile
+         */
+        double getPercentile(double percentile) {
+            return latency.getPercentile(percentile) / 1000.0;
+        }
+
+        /**
+         * Returns percentage of failed operations.
+         * @return error rate
+         */
+        double getErrorRate() {
+            return errorRate;
+        }
+    }
+
+}
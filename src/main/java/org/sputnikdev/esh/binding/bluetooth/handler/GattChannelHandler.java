@@ -10,6 +10,8 @@ import org.sputnikdev.bluetooth.gattparser.FieldHolder;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.bluetooth.manager.BluetoothGovernor;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothUtils;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Trace;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -101,22 +103,34 @@ abstract class GattChannelHandler implements ChannelHandler {
     }
 
     protected void dataChanged(byte[] data, boolean buildMissingChannels) {
-        if (binary || !recognised) {
-            if (buildMissingChannels) {
-                buildMissingBinaryChannel();
-            }
-            updateBinaryState(data);
-        } else {
-            Collection<FieldHolder> holders = parseData(data);
-            if (buildMissingChannels) {
-                buildMissingChannels(holders.stream().map(FieldHolder::getField).collect(Collectors.toList()));
-            }
-            holders.forEach(holder -> {
-                Channel channel = getChannel(holder.getField());
-                if (channel != null) {
-                    updateState(channel, holder);
+        dataChanged(data, buildMissingChannels, Trace.NONE);
+    }
+
+    protected void dataChanged(byte[] data, boolean buildMissingChannels, Trace trace) {
+        trace.stage(Trace.Stage.DISPATCH);
+        try {
+            if (binary || !recognised) {
+                if (buildMissingChannels) {
+                    buildMissingBinaryChannel();
                 }
-            });
+                updateBinaryState(data, trace);
+            } else {
+                Collection<FieldHolder> holders = parseData(data);
+                trace.stage(Trace.Stage.PARSE);
+                if (buildMissingChannels) {
+                    buildMissingChannels(holders.stream().map(FieldHolder::getField).collect(Collectors.toList()));
+                }
+                holders.forEach(holder -> {
+                    Channel channel = getChannel(holder.getField());
+                    trace.stage(Trace.Stage.LOOKUP);
+                    if (channel != null) {
+                        updateState(channel, holder);
+                        trace.stage(Trace.Stage.UPDATE_STATE);
+                    }
+                });
+            }
+        } finally {
+            handler.getTracer().finish(trace);
         }
     }
 
@@ -139,11 +153,15 @@ abstract class GattChannelHandler implements ChannelHandler {
             logger.warn("Attribute value is empty: {}", url);
             return Collections.emptyList();
         }
+        long started = System.nanoTime();
         try {
             return handler.getParser().parse(url.getCharacteristicUUID(), value).getFieldHolders();
         } catch (CharacteristicFormatException ex) {
+            handler.countMetric(MetricsRegistry.PARSE_ERRORS);
             logger.error("Could not parse data: {}. Ignoring it...", url, ex);
             return Collections.emptyList();
+        } finally {
+            handler.recordMetric(MetricsRegistry.PARSE_TIME, started);
         }
     }
 
@@ -182,11 +200,14 @@ abstract class GattChannelHandler implements ChannelHandler {
         handler.updateState(channel.getUID(), BluetoothUtils.convert(handler.getParser(), holder));
     }
 
-    private void updateBinaryState(byte[] data) {
+    private void updateBinaryState(byte[] data, Trace trace) {
         Channel channel = getBinaryChannel();
+        trace.stage(Trace.Stage.LOOKUP);
         if (channel != null) {
-            handler.updateState(channel.getUID().getIdWithoutGroup(),
-                    new StringType(handler.getBluetoothContext().getParser().parse(data, 16)));
+            StringType state = new StringType(handler.getBluetoothContext().getParser().parse(data, 16));
+            trace.stage(Trace.Stage.PARSE);
+            handler.updateState(channel.getUID().getIdWithoutGroup(), state);
+            trace.stage(Trace.Stage.UPDATE_STATE);
         } else {
             logger.error("Could not find binary channel: {}", url);
         }
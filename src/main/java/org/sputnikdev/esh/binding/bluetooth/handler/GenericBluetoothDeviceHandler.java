@@ -12,14 +12,21 @@ import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.GenericBluetoothDeviceListener;
 import org.sputnikdev.bluetooth.manager.GovernorListener;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecord;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContext;
 import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothUtils;
 import org.sputnikdev.esh.binding.bluetooth.internal.DeviceConfig;
+import org.sputnikdev.esh.binding.bluetooth.internal.SerialExecutor;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Trace;
 
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A bluetooth handler which represents generic bluetooth devices (prior bluetooth v4.0).
@@ -29,6 +36,9 @@ import java.util.concurrent.CompletableFuture;
 public class GenericBluetoothDeviceHandler extends BluetoothHandler<DeviceGovernor>
         implements GenericBluetoothDeviceListener, GovernorListener {
 
+    private static final String RSSI = "rssi";
+    private static final long REPLAY_TIMEOUT = 5000;
+
     private Logger logger = LoggerFactory.getLogger(GenericBluetoothDeviceHandler.class);
     private CompletableFuture<Void> setAliasFuture;
     private boolean preventLocationUpdate = true;
@@ -116,19 +126,18 @@ public class GenericBluetoothDeviceHandler extends BluetoothHandler<DeviceGovern
     }
 
     @Override
-    public void initialize() {
+    protected void initializeHandler() {
         DeviceGovernor deviceGovernor = getGovernor();
         deviceGovernor.addGenericBluetoothDeviceListener(this);
         deviceGovernor.addGovernorListener(this);
         deviceGovernor.setBlockedControl(false);
+        refreshAdapter();
 
-        Configuration conf = editConfiguration();
-        if (conf.get("onlineTimeout") == null) {
-            conf.put("onlineTimeout", getBindingConfig().getInitialOnlineTimeout());
-            updateConfiguration(conf);
+        if (getConfig().get("onlineTimeout") == null) {
+            persistConfiguration("onlineTimeout", getBindingConfig().getInitialOnlineTimeout());
         }
 
-        DeviceConfig config = conf.as(DeviceConfig.class);
+        DeviceConfig config = getConfig().as(DeviceConfig.class);
         preventLocationUpdate = config.getPreventLocationUpdate();
         if (preventLocationUpdate) {
             locationHandler.updateChannel(getThing().getLocation());
@@ -137,10 +146,10 @@ public class GenericBluetoothDeviceHandler extends BluetoothHandler<DeviceGovern
         updateDevice(getConfig());
 
         // init channel handlers
-        super.initialize();
+        super.initializeHandler();
 
         setAliasFuture = deviceGovernor.<DeviceGovernor, Void>whenReady(governor -> {
-            governor.setAlias(thing.getLabel());
+            getIoExecutor().execute(() -> governor.setAlias(thing.getLabel()));
             return null;
         });
 
@@ -148,25 +157,29 @@ public class GenericBluetoothDeviceHandler extends BluetoothHandler<DeviceGovern
     }
 
     @Override
-    public void dispose() {
+    protected void disposeHandler() {
         DeviceGovernor deviceGovernor = getGovernor();
         deviceGovernor.removeGenericBluetoothDeviceListener(this);
         deviceGovernor.removeGovernorListener(this);
         deviceGovernor.setConnectionControl(false);
         Optional.ofNullable(setAliasFuture).ifPresent(future -> future.cancel(true));
-        super.dispose();
+        super.disposeHandler();
     }
 
     @Override
     public void online() {
-        onlineHandler.updateChannel(true);
-        updateStatus(ThingStatus.ONLINE);
+        getMailbox().execute(() -> {
+            onlineHandler.updateChannel(true);
+            updateStatus(ThingStatus.ONLINE);
+        });
     }
 
     @Override
     public void offline() {
-        onlineHandler.updateChannel(false);
-        updateStatus(ThingStatus.OFFLINE);
+        getMailbox().execute(() -> {
+            onlineHandler.updateChannel(false);
+            updateStatus(ThingStatus.OFFLINE);
+        });
     }
 
     @Override
@@ -174,20 +187,99 @@ public class GenericBluetoothDeviceHandler extends BluetoothHandler<DeviceGovern
 
     @Override
     public void rssiChanged(short rssi) {
+        Trace trace = getTracer().start(getURL(), RSSI);
+        getCaptureRecorder().recordRSSI(getURL(), rssi);
+        getMailbox().executeDroppable(() -> updateRSSI(rssi, trace));
+    }
+
+    /**
+     * Feeds a captured payload (see {@link org.sputnikdev.esh.binding.bluetooth.capture.ReplayEngine}) through
+     * the handler as if it was received from the governor. Service data and notifications are routed to channel
+     * handlers of the same service/characteristic, the device address of the record is not checked.
+     *
+     * <p>Unlike live payloads, replayed payloads are not recorded again and are never dropped or conflated:
+     * the payload is processed by the mailbox (in order with live events) and the method returns once it is
+     * processed, so that a replay is paced by the handler and gives the same results on every run.
+     * @param record captured payload
+     */
+    public void replay(CaptureRecord record) {
+        SerialExecutor mailbox = getMailbox();
+        if (mailbox.isPaused()) {
+            // the handler is disposed
+            return;
+        }
+        CompletableFuture<Void> processed = new CompletableFuture<>();
+        mailbox.execute(() -> {
+            try {
+                replayed(record);
+                processed.complete(null);
+            } catch (Exception ex) {
+                processed.completeExceptionally(ex);
+            }
+        });
+        try {
+            processed.get(REPLAY_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            logger.warn("Could not replay record: {} : {}", record, ex.toString());
+        }
+    }
+
+    /**
+     * Processes replayed service data, called by the mailbox.
+     * @param serviceURL service URL of the device
+     * @param data service data
+     */
+    protected void replayServiceData(URL serviceURL, byte[] data) {
+        getChannelHandlers().keySet().stream()
+                .filter(handler -> handler instanceof ServiceHandler
+                        && Objects.equals(handler.getURL().getServiceUUID(), serviceURL.getServiceUUID()))
+                .map(ServiceHandler.class::cast)
+                .forEach(handler -> handler.replayed(data));
+    }
+
+    private void replayed(CaptureRecord record) {
+        URL recorded = record.getURL();
+        switch (record.getType()) {
+            case RSSI:
+                updateRSSI(record.getRSSI(), getTracer().start(getURL(), RSSI));
+                break;
+            case SERVICE_DATA:
+                replayServiceData(getURL().copyWithService(recorded.getServiceUUID()), record.getPayload());
+                break;
+            case NOTIFICATION:
+                getChannelHandlers().keySet().stream()
+                        .filter(handler -> handler instanceof CharacteristicHandler
+                                && Objects.equals(handler.getURL().getServiceUUID(), recorded.getServiceUUID())
+                                && Objects.equals(handler.getURL().getCharacteristicUUID(),
+                                        recorded.getCharacteristicUUID()))
+                        .map(CharacteristicHandler.class::cast)
+                        .forEach(handler -> handler.replayed(record.getPayload()));
+                break;
+            default:
+                logger.warn("Unsupported record: {}", record);
+        }
+    }
+
+    private void updateRSSI(short rssi, Trace trace) {
+        trace.stage(Trace.Stage.DISPATCH);
         rssiHandler.updateChannel((int) rssi);
+        trace.stage(Trace.Stage.UPDATE_STATE);
         updateLocationHandlers();
+        getTracer().finish(trace);
     }
 
     @Override
     public void ready(boolean ready) {
         if (!ready) {
-            updateStatus(ThingStatus.OFFLINE);
+            getMailbox().execute(() -> updateStatus(ThingStatus.OFFLINE));
         }
     }
 
     @Override
     public void lastUpdatedChanged(Instant lastActivity) {
-        lastChangedHandler.updateChannel(lastActivity);
+        getMailbox().executeDroppable(() -> lastChangedHandler.updateChannel(lastActivity));
     }
 
     @Override
@@ -223,11 +315,20 @@ public class GenericBluetoothDeviceHandler extends BluetoothHandler<DeviceGovern
         }
 
         if (deviceGovernor.isReady()) {
-            deviceGovernor.setAlias(getThing().getLabel());
+            getIoExecutor().execute(() -> deviceGovernor.setAlias(getThing().getLabel()));
         }
     }
 
+    @Override
+    protected String resolveAdapterAddress() {
+        // combined devices can be seen by any adapter, the nearest one is used
+        URL location = getGovernor().getLocation();
+        return location != null ? location.getAdapterAddress() : super.resolveAdapterAddress();
+    }
+
     protected void updateLocationHandlers() {
+        // the location might have changed
+        refreshAdapter();
         estimatedDistance.updateChannel(estimatedDistance.getValue());
         if (!preventLocationUpdate) {
             locationHandler.updateChannel(locationHandler.getValue());
@@ -0,0 +1,102 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import java.util.List;
+
+/**
+ * A management interface of bluetooth thing handlers. It is exposed via JMX (see {@code BluetoothMBeans}) so that
+ * operators can diagnose handlers in production (e.g. with jconsole).
+ *
+ * @author Vlad Kolotov
+ */
+public interface HandlerDiagnostics {
+
+    /**
+     * Returns thing UID.
+     * @return thing UID
+     */
+    String getThingUID();
+
+    /**
+     * Returns governor URL of the handler.
+     * @return governor URL
+     */
+    String getGovernorURL();
+
+    /**
+     * Returns thing status.
+     * @return thing status
+     */
+    String getThingStatus();
+
+    /**
+     * Returns name of the metrics scope of the handler (see {@code MetricsRegistry}).
+     * @return metrics scope name
+     */
+    String getMetricsScope();
+
+    /**
+     * Returns number of registered channel handlers.
+     * @return number of channel handlers
+     */
+    int getChannelHandlerCount();
+
+    /**
+     * Returns number of linked channels.
+     * @return number of linked channels
+     */
+    int getLinkedChannelCount();
+
+    /**
+     * Returns number of scheduled polling tasks (e.g. characteristics which are read periodically).
+     * @return number of polling tasks
+     */
+    int getPollingTaskCount();
+
+    /**
+     * Returns how often (in seconds) polling tasks are run.
+     * @return polling interval
+     */
+    int getPollingInterval();
+
+    /**
+     * Returns registered channel handlers and their channels, one line per channel handler.
+     * @return channel handler registry
+     */
+    List<String> getChannelRegistry();
+
+    /**
+     * Returns number of events waiting in the handler mailbox.
+     * @return mailbox depth
+     */
+    int getMailboxDepth();
+
+    /**
+     * Returns number of events dropped by the handler mailbox.
+     * @return number of dropped events
+     */
+    long getMailboxDropped();
+
+    /**
+     * Returns the last error (thing status detail and description) together with its time.
+     * @return last error or null if there were no errors
+     */
+    String getLastError();
+
+    /**
+     * Returns time (in milliseconds) since the handler was submitted for initialization until the thing went online
+     * for the first time (see {@code InitializationRamp}).
+     * @return time-to-online or -1 if the thing has not been online since the handler was initialized
+     */
+    long getTimeToOnline();
+
+    /**
+     * Polls governors and updates channels straight away.
+     */
+    void poll();
+
+    /**
+     * Drops GATT layout of the device which is persisted to restore channels before the device gets connected.
+     */
+    void dropCachedLayout();
+
+}
@@ -6,6 +6,7 @@ import org.sputnikdev.bluetooth.URL;
 import org.sputnikdev.bluetooth.manager.BluetoothSmartDeviceListener;
 import org.sputnikdev.bluetooth.manager.DeviceGovernor;
 import org.sputnikdev.bluetooth.manager.GattService;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Trace;
 
 import java.util.List;
 import java.util.Map;
@@ -20,6 +21,8 @@ import java.util.stream.Collectors;
  */
 class ServiceHandler extends GattChannelHandler implements BluetoothSmartDeviceListener {
 
+    private static final String ADVERTISEMENT = "advertisement";
+
     ServiceHandler(BluetoothHandler handler, URL serviceURL) {
         super(handler, serviceURL.copyWithCharacteristic(serviceURL.getServiceUUID()), true);
     }
@@ -42,8 +45,8 @@ class ServiceHandler extends GattChannelHandler implements BluetoothSmartDeviceL
     @Override
     public void serviceDataChanged(Map<URL, byte[]> serviceData) {
         if (serviceData.containsKey(url.getServiceURL())) {
-            byte[] data = serviceData.get(url.getServiceURL());
-            dataChanged(data, true);
+            Trace trace = handler.getTracer().start(url, ADVERTISEMENT);
+            dataChanged(serviceData.get(url.getServiceURL()), true, trace);
         }
     }
 
@@ -55,11 +58,18 @@ class ServiceHandler extends GattChannelHandler implements BluetoothSmartDeviceL
                                 String.format("%08X-0000-0000-0000-000000000000", entry.getKey() & 0xFFFF)),
                         Map.Entry::getValue));
         if (virtualServiceData.containsKey(url.getServiceURL())) {
-            byte[] data = virtualServiceData.get(url.getServiceURL());
-            dataChanged(data, true);
+            dataChanged(virtualServiceData.get(url.getServiceURL()), true);
         }
     }
 
+    /**
+     * Processes replayed service data (see {@link GenericBluetoothDeviceHandler#replay}), called by the mailbox.
+     * @param data service data
+     */
+    void replayed(byte[] data) {
+        dataChanged(data, true, handler.getTracer().start(url, ADVERTISEMENT));
+    }
+
     private DeviceGovernor getGovernor() {
         return handler.getBluetoothContext().getManager().getDeviceGovernor(url);
     }
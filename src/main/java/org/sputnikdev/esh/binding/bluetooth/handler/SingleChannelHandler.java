@@ -1,6 +1,5 @@
 package org.sputnikdev.esh.binding.bluetooth.handler;
 
-import org.eclipse.smarthome.config.core.Configuration;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
@@ -107,6 +106,15 @@ abstract class SingleChannelHandler<V, S extends State> implements ChannelHandle
         return handler.getURL();
     }
 
+    @Override
+    public void poll() {
+        try {
+            updateChannel(getValue());
+        } catch (NotReadyException ex) {
+            logger.info("Device is not ready {}. Thing channel could not be polled.", getURL());
+        }
+    }
+
     @Override
     public void init() {
         try {
@@ -159,9 +167,7 @@ abstract class SingleChannelHandler<V, S extends State> implements ChannelHandle
     }
 
     private void persist(V value) {
-        Configuration configuration = handler.editConfiguration();
-        configuration.put(this.channelID, value);
-        handler.updateConfiguration(configuration);
+        handler.persistConfiguration(channelID, value);
     }
 
     private V getInitialValue() {
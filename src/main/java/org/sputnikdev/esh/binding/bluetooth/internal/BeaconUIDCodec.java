@@ -0,0 +1,104 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.sputnikdev.bluetooth.URL;
+
+import javax.xml.bind.DatatypeConverter;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Encodes beacon identities (a random device address combined with the device name) into thing UIDs and decodes
+ * them back. Beacons with resolvable and non-resolvable addresses are discovered over and over again,
+ * so encoded and decoded values are memoized in a pair of bounded caches (one per direction).
+ *
+ * @author Vlad Kolotov
+ */
+class BeaconUIDCodec {
+
+    private final LruCache<BeaconIdentity, String> encoded;
+    private final LruCache<String, String> decoded;
+
+    /**
+     * Creates a codec which caches up to the given number of beacon identities.
+     * @param capacity cache capacity
+     */
+    BeaconUIDCodec(int capacity) {
+        encoded = new LruCache<>(capacity);
+        decoded = new LruCache<>(capacity);
+    }
+
+    /**
+     * Encodes a beacon identity into a thing UID.
+     * @param url device URL
+     * @param name device name
+     * @return encoded beacon identity
+     */
+    String encode(URL url, String name) {
+        BeaconIdentity identity = new BeaconIdentity(url.getDeviceAddress(), name);
+        String uid = encoded.get(identity);
+        if (uid == null) {
+            String compositeAddress = url.copyWithDevice(null, "name", name).getDeviceCompositeAddress();
+            uid = DatatypeConverter.printHexBinary(compositeAddress.getBytes(StandardCharsets.UTF_8));
+            encoded.put(identity, uid);
+            decoded.put(uid, compositeAddress);
+        }
+        return uid;
+    }
+
+    /**
+     * Decodes a thing UID into a composite device address (device address combined with the device name).
+     * @param uid encoded beacon identity
+     * @return composite device address
+     */
+    String decode(String uid) {
+        return decoded.computeIfAbsent(uid,
+                key -> new String(DatatypeConverter.parseHexBinary(key), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns number of encoded and decoded values served from the caches.
+     * @return number of cache hits
+     */
+    long getHits() {
+        return encoded.getHits() + decoded.getHits();
+    }
+
+    /**
+     * Returns number of encoded and decoded values missing in the caches.
+     * @return number of cache misses
+     */
+    long getMisses() {
+        return encoded.getMisses() + decoded.getMisses();
+    }
+
+    private static final class BeaconIdentity {
+
+        private final String address;
+        private final String name;
+        private final int hash;
+
+        private BeaconIdentity(String address, String name) {
+            this.address = address;
+            this.name = name;
+            hash = Objects.hash(address, name);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BeaconIdentity)) {
+                return false;
+            }
+            BeaconIdentity that = (BeaconIdentity) o;
+            return Objects.equals(address, that.address) && Objects.equals(name, that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+/**
+ * A management interface of the binding. It is exposed via JMX (see {@link BluetoothMBeans}) together with
+ * management interfaces of thing handlers.
+ *
+ * @author Vlad Kolotov
+ */
+public interface BindingDiagnostics {
+
+    /**
+     * Returns number of thing handlers created by the binding.
+     * @return number of thing handlers
+     */
+    int getHandlerCount();
+
+    /**
+     * Returns number of thing handlers waiting for initialization (see {@link InitializationRamp}).
+     * @return number of pending initializations
+     */
+    int getPendingInitializations();
+
+    /**
+     * Returns number of cached channel types.
+     * @return channel type cache size
+     */
+    int getChannelTypeCacheSize();
+
+    /**
+     * Returns percentage of channel type lookups served from the cache.
+     * @return channel type cache hit rate
+     */
+    double getChannelTypeCacheHitRate();
+
+    /**
+     * Returns percentage of beacon UID encoding/decoding served from the cache.
+     * @return beacon UID cache hit rate
+     */
+    double getBeaconUIDCacheHitRate();
+
+    /**
+     * Returns number of I/O tasks rejected by saturated adapter executors.
+     * @return number of rejected I/O tasks
+     */
+    long getRejectedIoTasks();
+
+    /**
+     * Returns number of jobs scheduled in the binding scheduler (see {@link TimingWheel}).
+     * @return scheduler queue depth
+     */
+    int getSchedulerQueueDepth();
+
+    /**
+     * Returns how late (in milliseconds) the last scheduler tick was processed.
+     * @return scheduler tick lag
+     */
+    long getSchedulerTickLag();
+
+    /**
+     * Returns maximum scheduler tick lag (in milliseconds) since the binding was started.
+     * @return maximum scheduler tick lag
+     */
+    long getSchedulerMaxTickLag();
+
+    /**
+     * Invalidates all cached channel types.
+     */
+    void invalidateChannelTypeCache();
+
+}
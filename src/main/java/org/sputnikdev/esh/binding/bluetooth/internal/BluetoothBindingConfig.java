@@ -34,6 +34,7 @@ public class BluetoothBindingConfig {
     }
 
     private String extensionFolder = BluetoothBindingConstants.DEFAULT_EXTENSION_FOLDER;
+    private boolean watchExtensionFolder = true;
     private int updateRate = BluetoothBindingConstants.DEFAULT_UPDATE_RATE;
     private int initialOnlineTimeout = BluetoothBindingConstants.DEFAULT_ONLINE_TIMEOUT;
     private boolean initialConnectionControl = BluetoothBindingConstants.DEFAULT_CONNECTION_CONTROL;
@@ -43,6 +44,25 @@ public class BluetoothBindingConfig {
     private String gattParsingStrategy = GattParsingStrategy.RECOGNISED_ONLY.name();
     private long rssiReportingRate = BluetoothBindingConstants.DEFAULT_RSS_REPORTING_RATE;
     private boolean backgroundDiscovery;
+    private boolean channelTypeWarmUp;
+    private int channelTypeCacheSize = BluetoothBindingConstants.DEFAULT_CHANNEL_TYPE_CACHE_SIZE;
+    private int initializationWaveSize = BluetoothBindingConstants.DEFAULT_INITIALIZATION_WAVE_SIZE;
+    private int initializationWaveInterval = BluetoothBindingConstants.DEFAULT_INITIALIZATION_WAVE_INTERVAL;
+    private int configurationWriteDelay = BluetoothBindingConstants.DEFAULT_CONFIGURATION_WRITE_DELAY;
+    private int mailboxCapacity = BluetoothBindingConstants.DEFAULT_MAILBOX_CAPACITY;
+    private String mailboxOverflowPolicy = SerialExecutor.OverflowPolicy.DROP_OLDEST.name();
+    private int ioThreads = BluetoothBindingConstants.DEFAULT_IO_THREADS;
+    private int ioQueueCapacity = BluetoothBindingConstants.DEFAULT_IO_QUEUE_CAPACITY;
+    private boolean ioVirtualThreads;
+    private boolean notificationConflation;
+    private int adapterMetricsInterval = BluetoothBindingConstants.DEFAULT_ADAPTER_METRICS_INTERVAL;
+    private int deviceMetricsInterval = BluetoothBindingConstants.DEFAULT_DEVICE_METRICS_INTERVAL;
+    private int tracingSampling;
+    private int tracingBufferSize = BluetoothBindingConstants.DEFAULT_TRACING_BUFFER_SIZE;
+    private String prometheusExportFile;
+    private int prometheusExportInterval = BluetoothBindingConstants.DEFAULT_PROMETHEUS_EXPORT_INTERVAL;
+    private String captureFile;
+    private int captureQueueCapacity = BluetoothBindingConstants.DEFAULT_CAPTURE_QUEUE_CAPACITY;
 
     public BluetoothBindingConfig() {
         advancedGattServices.addAll(Arrays.asList("00001800-0000-1000-8000-00805f9b34fb",
@@ -67,6 +87,24 @@ public class BluetoothBindingConfig {
         this.extensionFolder = extensionFolder;
     }
 
+    /**
+     * If enabled, the extension folder is watched for new or changed GATT definitions which are then loaded
+     * without restarting the binding.
+     * @return true if enabled
+     */
+    public boolean isWatchExtensionFolder() {
+        return watchExtensionFolder;
+    }
+
+    /**
+     * If enabled, the extension folder is watched for new or changed GATT definitions which are then loaded
+     * without restarting the binding.
+     * @param watchExtensionFolder true if enabled, false otherwise
+     */
+    public void setWatchExtensionFolder(boolean watchExtensionFolder) {
+        this.watchExtensionFolder = watchExtensionFolder;
+    }
+
     /**
      * Returns how often (in seconds) bluetooth adapters and devices are checked/updated.
      * @return bluetooth adapters and devices update rate
@@ -254,4 +292,326 @@ public class BluetoothBindingConfig {
         this.backgroundDiscovery = backgroundDiscovery;
     }
 
+    /**
+     * If enabled, channel types of all existing bluetooth things are built eagerly (in background) when the binding
+     * starts up, so that UI and REST requests are served from the cache straight away.
+     * @return true if enabled
+     */
+    public boolean isChannelTypeWarmUp() {
+        return channelTypeWarmUp;
+    }
+
+    /**
+     * If enabled, channel types of all existing bluetooth things are built eagerly (in background) when the binding
+     * starts up, so that UI and REST requests are served from the cache straight away.
+     * @param channelTypeWarmUp true if enabled, false otherwise
+     */
+    public void setChannelTypeWarmUp(boolean channelTypeWarmUp) {
+        this.channelTypeWarmUp = channelTypeWarmUp;
+    }
+
+    /**
+     * Returns maximum number of channel types (for GATT characteristic fields) to be kept in the cache.
+     * Least recently used channel types are evicted once the limit is reached.
+     * @return maximum number of cached channel types
+     */
+    public int getChannelTypeCacheSize() {
+        return channelTypeCacheSize;
+    }
+
+    /**
+     * Sets maximum number of channel types (for GATT characteristic fields) to be kept in the cache.
+     * Least recently used channel types are evicted once the limit is reached.
+     * @param channelTypeCacheSize maximum number of cached channel types
+     */
+    public void setChannelTypeCacheSize(int channelTypeCacheSize) {
+        this.channelTypeCacheSize = channelTypeCacheSize;
+    }
+
+    /**
+     * Returns maximum number of things to be initialized in a single initialization wave.
+     * Zero disables the initialization ramp, i.e. things are initialized straight away.
+     * @return initialization wave size
+     */
+    public int getInitializationWaveSize() {
+        return initializationWaveSize;
+    }
+
+    /**
+     * Sets maximum number of things to be initialized in a single initialization wave.
+     * Zero disables the initialization ramp, i.e. things are initialized straight away.
+     * @param initializationWaveSize initialization wave size
+     */
+    public void setInitializationWaveSize(int initializationWaveSize) {
+        this.initializationWaveSize = initializationWaveSize;
+    }
+
+    /**
+     * Returns delay (in milliseconds) between initialization waves.
+     * @return initialization wave interval
+     */
+    public int getInitializationWaveInterval() {
+        return initializationWaveInterval;
+    }
+
+    /**
+     * Sets delay (in milliseconds) between initialization waves.
+     * @param initializationWaveInterval initialization wave interval
+     */
+    public void setInitializationWaveInterval(int initializationWaveInterval) {
+        this.initializationWaveInterval = initializationWaveInterval;
+    }
+
+    /**
+     * Returns a period of time (in milliseconds) over which changes of thing configuration parameters
+     * are coalesced before they are written. Zero means that changes are written straight away.
+     * @return configuration write delay
+     */
+    public int getConfigurationWriteDelay() {
+        return configurationWriteDelay;
+    }
+
+    /**
+     * Sets a period of time (in milliseconds) over which changes of thing configuration parameters
+     * are coalesced before they are written. Zero means that changes are written straight away.
+     * @param configurationWriteDelay configuration write delay
+     */
+    public void setConfigurationWriteDelay(int configurationWriteDelay) {
+        this.configurationWriteDelay = configurationWriteDelay;
+    }
+
+    /**
+     * Returns maximum number of pending device events (governor callbacks) per device.
+     * @return mailbox capacity
+     */
+    public int getMailboxCapacity() {
+        return mailboxCapacity;
+    }
+
+    /**
+     * Sets maximum number of pending device events (governor callbacks) per device.
+     * @param mailboxCapacity mailbox capacity
+     */
+    public void setMailboxCapacity(int mailboxCapacity) {
+        this.mailboxCapacity = mailboxCapacity;
+    }
+
+    /**
+     * Returns what to do with device events when the device mailbox is full
+     * (see {@link SerialExecutor.OverflowPolicy}). Only value updates (e.g. RSSI, advertised data) are subject
+     * to the policy, lifecycle events (e.g. connection and authentication events) are never dropped.
+     * @return mailbox overflow policy
+     */
+    public String getMailboxOverflowPolicy() {
+        return mailboxOverflowPolicy;
+    }
+
+    /**
+     * Sets what to do with device events when the device mailbox is full
+     * (see {@link SerialExecutor.OverflowPolicy}). Only value updates (e.g. RSSI, advertised data) are subject
+     * to the policy, lifecycle events (e.g. connection and authentication events) are never dropped.
+     * @param mailboxOverflowPolicy mailbox overflow policy
+     */
+    public void setMailboxOverflowPolicy(String mailboxOverflowPolicy) {
+        this.mailboxOverflowPolicy = mailboxOverflowPolicy;
+    }
+
+    /**
+     * Returns number of threads per adapter to run blocking bluetooth I/O (e.g. reading characteristics).
+     * @return number of I/O threads per adapter
+     */
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * Sets number of threads per adapter to run blocking bluetooth I/O (e.g. reading characteristics).
+     * @param ioThreads number of I/O threads per adapter
+     */
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    /**
+     * Returns maximum number of pending I/O tasks per adapter.
+     * @return I/O queue capacity
+     */
+    public int getIoQueueCapacity() {
+        return ioQueueCapacity;
+    }
+
+    /**
+     * Sets maximum number of pending I/O tasks per adapter.
+     * @param ioQueueCapacity I/O queue capacity
+     */
+    public void setIoQueueCapacity(int ioQueueCapacity) {
+        this.ioQueueCapacity = ioQueueCapacity;
+    }
+
+    /**
+     * Checks whether blocking bluetooth I/O should run on virtual threads (if supported by JVM).
+     * @return true if virtual threads should be used
+     */
+    public boolean isIoVirtualThreads() {
+        return ioVirtualThreads;
+    }
+
+    /**
+     * Sets whether blocking bluetooth I/O should run on virtual threads (if supported by JVM).
+     * @param ioVirtualThreads true if virtual threads should be used
+     */
+    public void setIoVirtualThreads(boolean ioVirtualThreads) {
+        this.ioVirtualThreads = ioVirtualThreads;
+    }
+
+    /**
+     * Checks whether bursts of characteristic notifications should be conflated, i.e. only the latest notification
+     * is processed if notifications come in faster than they can be processed.
+     * @return true if notifications should be conflated
+     */
+    public boolean isNotificationConflation() {
+        return notificationConflation;
+    }
+
+    /**
+     * Sets whether bursts of characteristic notifications should be conflated, i.e. only the latest notification
+     * is processed if notifications come in faster than they can be processed.
+     * @param notificationConflation true if notifications should be conflated
+     */
+    public void setNotificationConflation(boolean notificationConflation) {
+        this.notificationConflation = notificationConflation;
+    }
+
+    /**
+     * Returns how often (in seconds) adapter throughput channels are updated. Zero disables updates.
+     * @return adapter metrics interval
+     */
+    public int getAdapterMetricsInterval() {
+        return adapterMetricsInterval;
+    }
+
+    /**
+     * Sets how often (in seconds) adapter throughput channels are updated. Zero disables updates.
+     * @param adapterMetricsInterval adapter metrics interval
+     */
+    public void setAdapterMetricsInterval(int adapterMetricsInterval) {
+        this.adapterMetricsInterval = adapterMetricsInterval;
+    }
+
+    /**
+     * Returns how often (in seconds) GATT latency channels of BLE devices are updated. Zero disables updates.
+     * @return device metrics interval
+     */
+    public int getDeviceMetricsInterval() {
+        return deviceMetricsInterval;
+    }
+
+    /**
+     * Sets how often (in seconds) GATT latency channels of BLE devices are updated. Zero disables updates.
+     * @param deviceMetricsInterval device metrics interval
+     */
+    public void setDeviceMetricsInterval(int deviceMetricsInterval) {
+        this.deviceMetricsInterval = deviceMetricsInterval;
+    }
+
+    /**
+     * Returns tracing sampling, i.e. 1 of N payloads (notifications, advertisements, RSSI updates) is traced
+     * from the governor callback till item states are updated. Zero disables tracing.
+     * @return tracing sampling
+     */
+    public int getTracingSampling() {
+        return tracingSampling;
+    }
+
+    /**
+     * Sets tracing sampling, i.e. 1 of N payloads (notifications, advertisements, RSSI updates) is traced
+     * from the governor callback till item states are updated. Zero disables tracing.
+     * @param tracingSampling tracing sampling
+     */
+    public void setTracingSampling(int tracingSampling) {
+        this.tracingSampling = tracingSampling;
+    }
+
+    /**
+     * Returns number of recent traces to keep.
+     * @return tracing buffer size
+     */
+    public int getTracingBufferSize() {
+        return tracingBufferSize;
+    }
+
+    /**
+     * Sets number of recent traces to keep.
+     * @param tracingBufferSize tracing buffer size
+     */
+    public void setTracingBufferSize(int tracingBufferSize) {
+        this.tracingBufferSize = tracingBufferSize;
+    }
+
+    /**
+     * Returns a file to periodically export metrics to in Prometheus text format. Null disables exporting.
+     * @return Prometheus export file
+     */
+    public String getPrometheusExportFile() {
+        return prometheusExportFile;
+    }
+
+    /**
+     * Sets a file to periodically export metrics to in Prometheus text format. Null disables exporting.
+     * @param prometheusExportFile Prometheus export file
+     */
+    public void setPrometheusExportFile(String prometheusExportFile) {
+        this.prometheusExportFile = prometheusExportFile;
+    }
+
+    /**
+     * Returns how often (in seconds) metrics are exported in Prometheus text format.
+     * @return Prometheus export interval
+     */
+    public int getPrometheusExportInterval() {
+        return prometheusExportInterval;
+    }
+
+    /**
+     * Sets how often (in seconds) metrics are exported in Prometheus text format.
+     * @param prometheusExportInterval Prometheus export interval
+     */
+    public void setPrometheusExportInterval(int prometheusExportInterval) {
+        this.prometheusExportInterval = prometheusExportInterval;
+    }
+
+    /**
+     * Returns a file to record advertisements, RSSI samples and notifications seen by the handlers to,
+     * so that they can be replayed later. Null disables recording.
+     * @return capture file
+     */
+    public String getCaptureFile() {
+        return captureFile;
+    }
+
+    /**
+     * Sets a file to record advertisements, RSSI samples and notifications seen by the handlers to,
+     * so that they can be replayed later. Null disables recording.
+     * @param captureFile capture file
+     */
+    public void setCaptureFile(String captureFile) {
+        this.captureFile = captureFile;
+    }
+
+    /**
+     * Returns max number of captured payloads waiting to be written, payloads are dropped when it is exceeded.
+     * @return capture queue capacity
+     */
+    public int getCaptureQueueCapacity() {
+        return captureQueueCapacity;
+    }
+
+    /**
+     * Sets max number of captured payloads waiting to be written, payloads are dropped when it is exceeded.
+     * @param captureQueueCapacity capture queue capacity
+     */
+    public void setCaptureQueueCapacity(int captureQueueCapacity) {
+        this.captureQueueCapacity = captureQueueCapacity;
+    }
+
 }
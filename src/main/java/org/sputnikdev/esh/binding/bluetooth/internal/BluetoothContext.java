@@ -2,6 +2,8 @@ package org.sputnikdev.esh.binding.bluetooth.internal;
 
 import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecorder;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
 
 /**
  * A helper structure which contains all necessary objects for the bluetooth thing handlers functioning.
@@ -13,12 +15,26 @@ public class BluetoothContext {
     private final BluetoothManager manager;
     private final BluetoothGattParser parser;
     private final BluetoothBindingConfig config;
+    private final InitializationRamp initializationRamp;
+    private final GattLayoutStorage gattLayoutStorage;
+    private final TimingWheel timingWheel;
+    private final IoExecutors ioExecutors;
+    private final MetricsRegistry metricsRegistry;
+    private final CaptureRecorder captureRecorder;
 
     BluetoothContext(BluetoothManager manager, BluetoothGattParser parser,
-                            BluetoothBindingConfig config) {
+                            BluetoothBindingConfig config, InitializationRamp initializationRamp,
+                            GattLayoutStorage gattLayoutStorage, TimingWheel timingWheel, IoExecutors ioExecutors,
+                            MetricsRegistry metricsRegistry, CaptureRecorder captureRecorder) {
         this.manager = manager;
         this.parser = parser;
         this.config = config;
+        this.initializationRamp = initializationRamp;
+        this.gattLayoutStorage = gattLayoutStorage;
+        this.timingWheel = timingWheel;
+        this.ioExecutors = ioExecutors;
+        this.metricsRegistry = metricsRegistry;
+        this.captureRecorder = captureRecorder;
     }
 
     /**
@@ -44,4 +60,52 @@ public class BluetoothContext {
     public BluetoothBindingConfig getConfig() {
         return config;
     }
+
+    /**
+     * Returns thing initialization ramp.
+     * @return initialization ramp
+     */
+    public InitializationRamp getInitializationRamp() {
+        return initializationRamp;
+    }
+
+    /**
+     * Returns storage for resolved GATT layouts of devices.
+     * @return GATT layout storage
+     */
+    public GattLayoutStorage getGattLayoutStorage() {
+        return gattLayoutStorage;
+    }
+
+    /**
+     * Returns timing wheel which drives periodic jobs of the binding.
+     * @return timing wheel
+     */
+    public TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+    /**
+     * Returns executors for blocking bluetooth I/O.
+     * @return I/O executors
+     */
+    public IoExecutors getIoExecutors() {
+        return ioExecutors;
+    }
+
+    /**
+     * Returns metrics registry of the binding.
+     * @return metrics registry
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Returns recorder of payloads seen by the handlers.
+     * @return capture recorder
+     */
+    public CaptureRecorder getCaptureRecorder() {
+        return captureRecorder;
+    }
 }
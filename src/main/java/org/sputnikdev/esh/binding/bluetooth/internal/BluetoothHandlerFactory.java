@@ -4,6 +4,9 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.commons.beanutils.BeanUtilsBean;
+import org.eclipse.smarthome.config.core.ConfigConstants;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.storage.StorageService;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
@@ -26,18 +29,28 @@ import org.sputnikdev.bluetooth.manager.BluetoothManager;
 import org.sputnikdev.bluetooth.manager.impl.BluetoothManagerBuilder;
 import org.sputnikdev.bluetooth.manager.transport.BluetoothObjectFactory;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecorder;
 import org.sputnikdev.esh.binding.bluetooth.discovery.BluetoothDiscoveryServiceImpl;
 import org.sputnikdev.esh.binding.bluetooth.handler.AdapterHandler;
 import org.sputnikdev.esh.binding.bluetooth.handler.BeaconBluetoothDeviceHandler;
 import org.sputnikdev.esh.binding.bluetooth.handler.BluetoothDeviceHandler;
 import org.sputnikdev.esh.binding.bluetooth.handler.GenericBluetoothDeviceHandler;
+import org.sputnikdev.esh.binding.bluetooth.handler.HandlerDiagnostics;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsScope;
+import org.sputnikdev.esh.binding.bluetooth.metrics.PrometheusExporter;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 
 /**
@@ -48,12 +61,26 @@ import java.util.Map;
 @Component(service = ThingHandlerFactory.class, immediate = true, name = "binding.bluetooth")
 public class BluetoothHandlerFactory extends BaseThingHandlerFactory {
 
+    private static final String GATT_LAYOUT_STORAGE = "org.sputnikdev.esh.binding.bluetooth.GattLayout";
+    private static final String GATT_CATALOG_FOLDER = "gatt-catalog";
+    // 250 ms * 512 = 128 seconds per revolution
+    private static final long TIMING_WHEEL_TICK = 250;
+    private static final int TIMING_WHEEL_SIZE = 512;
+
     private Logger logger = LoggerFactory.getLogger(BluetoothHandlerFactory.class);
 
     private ServiceRegistration<BluetoothManager> bluetoothManagerServiceRegistration;
     private ServiceRegistration<BluetoothGattParser> gattParserServiceRegistration;
+    private ServiceRegistration<MetricsRegistry> metricsRegistryServiceRegistration;
+    private ServiceRegistration<CaptureRecorder> captureRecorderServiceRegistration;
     private BluetoothContext bluetoothContext;
     private ConfigurationAdmin configurationAdmin;
+    private StorageService storageService;
+    private GattExtensionWatcher gattExtensionWatcher;
+    private BluetoothMBeans mbeans;
+    private PrometheusExporter prometheusExporter;
+    private final Set<GattSpecificationListener> gattSpecificationListeners = new CopyOnWriteArraySet<>();
+    private final Set<GattSpecificationListener> deviceHandlers = new CopyOnWriteArraySet<>();
 
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
@@ -65,23 +92,73 @@ public class BluetoothHandlerFactory extends BaseThingHandlerFactory {
         super.activate(componentContext);
         BluetoothBindingConfig config = getConfig(componentContext);
         updateDiscoveryServiceProperties(config);
-        bluetoothContext = new BluetoothContext(getBluetoothManager(config), getGattParser(config), config);
+        bluetoothContext = new BluetoothContext(getBluetoothManager(config), getGattParser(config), config,
+                new InitializationRamp(config.getInitializationWaveSize(), config.getInitializationWaveInterval()),
+                new GattLayoutStorage(storageService.getStorage(GATT_LAYOUT_STORAGE, getClass().getClassLoader())),
+                new TimingWheel(TIMING_WHEEL_TICK, TIMING_WHEEL_SIZE,
+                        ThreadPoolManager.getPool(BluetoothBindingConstants.BINDING_ID)),
+                new IoExecutors(config.getIoThreads(), config.getIoQueueCapacity(), config.isIoVirtualThreads()),
+                new MetricsRegistry(config.getTracingSampling(), config.getTracingBufferSize()),
+                new CaptureRecorder(config.getCaptureQueueCapacity()));
+        bluetoothContext.getTimingWheel().start();
+        registerSchedulerMetrics();
+        startCapture(config);
         registerBluetoothObjectFactories();
         publishServices();
+        startGattExtensionWatcher(config);
+        mbeans = new BluetoothMBeans(ManagementFactory.getPlatformMBeanServer());
+        mbeans.registerBinding(new Diagnostics());
+        startPrometheusExporter(config);
     }
 
     @Override
     protected void deactivate(ComponentContext componentContext) {
+        if (gattExtensionWatcher != null) {
+            gattExtensionWatcher.stop();
+            gattExtensionWatcher = null;
+        }
+        mbeans.unregisterAll();
+        mbeans = null;
+        if (prometheusExporter != null) {
+            prometheusExporter.stop();
+            prometheusExporter = null;
+        }
+        bluetoothContext.getCaptureRecorder().stop();
+        bluetoothContext.getInitializationRamp().dispose();
+        bluetoothContext.getTimingWheel().stop();
+        bluetoothContext.getIoExecutors().shutdown();
         bluetoothManagerServiceRegistration.unregister();
         bluetoothManagerServiceRegistration = null;
         gattParserServiceRegistration.unregister();
         gattParserServiceRegistration = null;
+        metricsRegistryServiceRegistration.unregister();
+        metricsRegistryServiceRegistration = null;
+        captureRecorderServiceRegistration.unregister();
+        captureRecorderServiceRegistration = null;
         bluetoothContext.getManager().dispose();
         bluetoothContext = null;
     }
 
     @Override
     protected ThingHandler createHandler(Thing thing) {
+        ThingHandler handler = buildHandler(thing);
+        if (handler instanceof HandlerDiagnostics && mbeans != null) {
+            mbeans.registerHandler(thing.getUID(), (HandlerDiagnostics) handler);
+        }
+        return handler;
+    }
+
+    @Override
+    protected void removeHandler(ThingHandler thingHandler) {
+        if (thingHandler instanceof BluetoothDeviceHandler) {
+            deviceHandlers.remove(thingHandler);
+        }
+        if (mbeans != null) {
+            mbeans.unregisterHandler(thingHandler.getThing().getUID());
+        }
+    }
+
+    private ThingHandler buildHandler(Thing thing) {
 
         ThingTypeUID thingTypeUID = thing.getThingTypeUID();
 
@@ -94,7 +171,9 @@ public class BluetoothHandlerFactory extends BaseThingHandlerFactory {
         }
 
         if (thingTypeUID.equals(BluetoothBindingConstants.THING_TYPE_BLE)) {
-            return new BluetoothDeviceHandler(thing, bluetoothContext);
+            BluetoothDeviceHandler handler = new BluetoothDeviceHandler(thing, bluetoothContext);
+            deviceHandlers.add(handler);
+            return handler;
         }
 
         if (thingTypeUID.equals(BluetoothBindingConstants.THING_TYPE_BEACON)) {
@@ -128,6 +207,25 @@ public class BluetoothHandlerFactory extends BaseThingHandlerFactory {
         this.configurationAdmin = null;
     }
 
+    @Reference(unbind = "unregisterStorageService", cardinality = ReferenceCardinality.MANDATORY)
+    protected void registerStorageService(StorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    protected void unregisterStorageService(StorageService storageService) {
+        this.storageService = null;
+    }
+
+    @Reference(unbind = "unregisterGattSpecificationListener", cardinality = ReferenceCardinality.MULTIPLE,
+            policy = ReferencePolicy.DYNAMIC)
+    protected void registerGattSpecificationListener(GattSpecificationListener listener) {
+        gattSpecificationListeners.add(listener);
+    }
+
+    protected void unregisterGattSpecificationListener(GattSpecificationListener listener) {
+        gattSpecificationListeners.remove(listener);
+    }
+
     private static BluetoothBindingConfig getConfig(ComponentContext componentContext) {
         Map<String, Object> properties = convertDictionary(componentContext.getProperties());
         return parseConfig(properties);
@@ -147,25 +245,112 @@ public class BluetoothHandlerFactory extends BaseThingHandlerFactory {
     }
 
     private BluetoothGattParser getGattParser(BluetoothBindingConfig config) {
+        long started = System.currentTimeMillis();
+        // standard GATT specifications are loaded lazily by the parser
         BluetoothGattParser gattParser = BluetoothGattParserFactory.getDefault();
         String extensionFolder = config.getExtensionFolder();
         logger.info("Loading custom GATT specification from folder: {}", extensionFolder);
         File extensionFolderFile = new File(extensionFolder);
         if (extensionFolderFile.exists() && extensionFolderFile.isDirectory()) {
             logger.info("Extension folder exists: {}", extensionFolder);
-            gattParser.loadExtensionsFromFolder(config.getExtensionFolder());
+            loadGattExtensions(gattParser, extensionFolder);
         } else {
             logger.warn("Extension folder does not exist, ignoring it: {}", extensionFolder);
         }
+        logger.info("GATT specification has been loaded: {} ms", System.currentTimeMillis() - started);
         return gattParser;
     }
 
+    private void loadGattExtensions(BluetoothGattParser gattParser, String extensionFolder) {
+        File catalogFolder = new File(ConfigConstants.getUserDataFolder() + File.separator
+                + BluetoothBindingConstants.BINDING_ID, GATT_CATALOG_FOLDER);
+        try {
+            if (GattExtensionCatalog.load(gattParser, catalogFolder,
+                    GattExtensionCatalog.computeHash(extensionFolder))) {
+                logger.info("Custom GATT specification has been registered from the compiled catalog");
+                return;
+            }
+        } catch (IOException e) {
+            logger.warn("Could not load compiled GATT catalog: {} : {}", catalogFolder, e.getMessage());
+        }
+        // no catalog for the current content of the extension folder, it gets compiled for the next start
+        gattParser.loadExtensionsFromFolder(extensionFolder);
+        ThreadPoolManager.getPool(BluetoothBindingConstants.BINDING_ID).execute(() -> {
+            try {
+                GattExtensionCatalog.compile(extensionFolder, catalogFolder);
+            } catch (IOException e) {
+                logger.warn("Could not compile GATT catalog: {} : {}", extensionFolder, e.getMessage());
+            }
+        });
+    }
+
+    private void registerSchedulerMetrics() {
+        TimingWheel timingWheel = bluetoothContext.getTimingWheel();
+        MetricsScope scheduler = bluetoothContext.getMetricsRegistry().scope(MetricsRegistry.SCHEDULER_SCOPE);
+        scheduler.gauge(MetricsRegistry.SCHEDULER_QUEUE_DEPTH, timingWheel::getQueueDepth);
+        scheduler.gauge(MetricsRegistry.SCHEDULER_TICK_LAG, timingWheel::getTickLag);
+        scheduler.gauge(MetricsRegistry.SCHEDULER_MAX_TICK_LAG, timingWheel::getMaxTickLag);
+    }
+
+    private void startGattExtensionWatcher(BluetoothBindingConfig config) {
+        String extensionFolder = config.getExtensionFolder();
+        if (config.isWatchExtensionFolder() && extensionFolder != null && new File(extensionFolder).isDirectory()) {
+            gattExtensionWatcher = new GattExtensionWatcher(extensionFolder, bluetoothContext.getParser(),
+                    this::notifyGattSpecificationChanged);
+            try {
+                gattExtensionWatcher.start();
+            } catch (IOException e) {
+                logger.warn("Could not watch GATT extension folder: {} : {}", extensionFolder, e.getMessage());
+                gattExtensionWatcher = null;
+            }
+        }
+    }
+
+    private void startPrometheusExporter(BluetoothBindingConfig config) {
+        if (config.getPrometheusExportFile() != null && !config.getPrometheusExportFile().trim().isEmpty()) {
+            prometheusExporter = new PrometheusExporter(bluetoothContext.getMetricsRegistry(),
+                    Paths.get(config.getPrometheusExportFile().trim()));
+            prometheusExporter.start(ThreadPoolManager.getScheduledPool(BluetoothBindingConstants.BINDING_ID),
+                    config.getPrometheusExportInterval());
+        }
+    }
+
+    private void startCapture(BluetoothBindingConfig config) {
+        if (config.getCaptureFile() != null && !config.getCaptureFile().trim().isEmpty()) {
+            try {
+                bluetoothContext.getCaptureRecorder().start(Paths.get(config.getCaptureFile().trim()));
+            } catch (IOException e) {
+                logger.warn("Could not capture bluetooth payloads: {} : {}", config.getCaptureFile(), e.getMessage());
+            }
+        }
+    }
+
+    private void notifyGattSpecificationChanged(Set<String> characteristicUUIDs) {
+        // channel types must be invalidated first so that handlers rebuild channels with fresh channel types
+        gattSpecificationListeners.forEach(listener -> notifyGattSpecificationChanged(listener, characteristicUUIDs));
+        deviceHandlers.forEach(listener -> notifyGattSpecificationChanged(listener, characteristicUUIDs));
+    }
+
+    private void notifyGattSpecificationChanged(GattSpecificationListener listener, Set<String> characteristicUUIDs) {
+        try {
+            listener.specificationChanged(characteristicUUIDs);
+        } catch (Exception ex) {
+            logger.error("Error occurred while notifying GATT specification listener: {}", listener, ex);
+        }
+    }
+
     private void publishServices() {
         bluetoothManagerServiceRegistration =
                 bundleContext.registerService(BluetoothManager.class, bluetoothContext.getManager(), new Hashtable<>());
         gattParserServiceRegistration =
                 bundleContext.registerService(BluetoothGattParser.class,
                         bluetoothContext.getParser(), new Hashtable<>());
+        metricsRegistryServiceRegistration =
+                bundleContext.registerService(MetricsRegistry.class,
+                        bluetoothContext.getMetricsRegistry(), new Hashtable<>());
+        captureRecorderServiceRegistration =
+                bundleContext.registerService(CaptureRecorder.class,
+                        bluetoothContext.getCaptureRecorder(), new Hashtable<>());
     }
 
     private void registerBluetoothObjectFactories() {
@@ -177,7 +362,7 @@ public class BluetoothHandlerFactory extends BaseThingHandlerFactory {
         }
     }
 
-    private static BluetoothBindingConfig parseConfig(Map<String, Object> properties) {
+    static BluetoothBindingConfig parseConfig(Map<String, Object> properties) {
         BluetoothBindingConfig config = new BluetoothBindingConfig();
         try {
             BeanUtils.copyProperties(config, properties);
@@ -212,5 +397,75 @@ public class BluetoothHandlerFactory extends BaseThingHandlerFactory {
             throw new IllegalStateException(e);
         }
     }
-}
+    private final class Diagnostics implements BindingDiagnostics {
+
+        @Override
+        public int getHandlerCount() {
+            return mbeans != null ? mbeans.getHandlerCount() : 0;
+        }
+
+        @Override
+        public int getPendingInitializations() {
+            BluetoothContext context = bluetoothContext;
+            return context != null ? context.getInitializationRamp().getPending() : 0;
+        }
+
+        @Override
+        public int getChannelTypeCacheSize() {
+            return getChannelTypeProvider().map(provider -> provider.getCache().size()).orElse(0);
+        }
+
+        @Override
+        public double getChannelTypeCacheHitRate() {
+            return getChannelTypeProvider().map(provider -> provider.getCache())
+                    .map(cache -> getHitRate(cache.getHits(), cache.getMisses())).orElse(0.0);
+        }
 
+        @Override
+        public double getBeaconUIDCacheHitRate() {
+            BeaconUIDCodec codec = BluetoothUtils.getBeaconUIDCodec();
+            return getHitRate(codec.getHits(), codec.getMisses());
+        }
+
+        @Override
+        public long getRejectedIoTasks() {
+            BluetoothContext context = bluetoothContext;
+            return context != null ? context.getIoExecutors().getRejected() : 0;
+        }
+
+        @Override
+        public int getSchedulerQueueDepth() {
+            BluetoothContext context = bluetoothContext;
+            return context != null ? context.getTimingWheel().getQueueDepth() : 0;
+        }
+
+        @Override
+        public long getSchedulerTickLag() {
+            BluetoothContext context = bluetoothContext;
+            return context != null ? context.getTimingWheel().getTickLag() : 0;
+        }
+
+        @Override
+        public long getSchedulerMaxTickLag() {
+            BluetoothContext context = bluetoothContext;
+            return context != null ? context.getTimingWheel().getMaxTickLag() : 0;
+        }
+
+        @Override
+        public void invalidateChannelTypeCache() {
+            logger.info("Invalidating channel type cache");
+            getChannelTypeProvider().ifPresent(CharacteristicChannelTypeProvider::invalidate);
+        }
+
+        private Optional<CharacteristicChannelTypeProvider> getChannelTypeProvider() {
+            return gattSpecificationListeners.stream()
+                    .filter(CharacteristicChannelTypeProvider.class::isInstance)
+                    .map(CharacteristicChannelTypeProvider.class::cast).findFirst();
+        }
+
+        private double getHitRate(long hits, long misses) {
+            return hits + misses > 0 ? hits * 100.0 / (hits + misses) : 0;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.handler.HandlerDiagnostics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registers management interfaces of the binding ({@link BindingDiagnostics}) and its thing handlers
+ * ({@link HandlerDiagnostics}) as MXBeans, so that binding internals can be inspected with JMX tools
+ * (e.g. jconsole). Handler MBeans are named after thing UIDs, e.g.
+ * {@code org.sputnikdev.esh.binding.bluetooth:type=ble,thing="bluetooth:ble:hci0:112233445566"}.
+ *
+ * <p>JMX is a diagnostic facility, therefore registration errors are logged and ignored.
+ *
+ * @author Vlad Kolotov
+ */
+class BluetoothMBeans {
+
+    static final String DOMAIN = "org.sputnikdev.esh.binding." + BluetoothBindingConstants.BINDING_ID;
+
+    private Logger logger = LoggerFactory.getLogger(BluetoothMBeans.class);
+
+    private final MBeanServer server;
+    private final Set<ObjectName> registered = ConcurrentHashMap.newKeySet();
+
+    BluetoothMBeans(MBeanServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Registers the binding management interface.
+     * @param diagnostics binding management interface
+     */
+    void registerBinding(BindingDiagnostics diagnostics) {
+        register(DOMAIN + ":type=binding", diagnostics, BindingDiagnostics.class);
+    }
+
+    /**
+     * Registers a thing handler management interface.
+     * @param thingUID thing UID
+     * @param diagnostics thing handler management interface
+     */
+    void registerHandler(ThingUID thingUID, HandlerDiagnostics diagnostics) {
+        register(getHandlerName(thingUID), diagnostics, HandlerDiagnostics.class);
+    }
+
+    /**
+     * Unregisters a thing handler management interface.
+     * @param thingUID thing UID
+     */
+    void unregisterHandler(ThingUID thingUID) {
+        unregister(getHandlerName(thingUID));
+    }
+
+    /**
+     * Returns number of registered thing handlers.
+     * @return number of registered thing handlers
+     */
+    int getHandlerCount() {
+        return (int) registered.stream().filter(name -> name.getKeyProperty("thing") != null).count();
+    }
+
+    /**
+     * Unregisters all registered management interfaces.
+     */
+    void unregisterAll() {
+        registered.forEach(name -> unregister(name.getCanonicalName()));
+    }
+
+    private <T> void register(String name, T diagnostics, Class<T> type) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                // a thing handler might have been re-created
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(new StandardMBean(diagnostics, type, true), objectName);
+            registered.add(objectName);
+        } catch (JMException ex) {
+            logger.warn("Could not register MBean: {}", name, ex);
+        }
+    }
+
+    private void unregister(String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            registered.remove(objectName);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException ex) {
+            logger.warn("Could not unregister MBean: {}", name, ex);
+        }
+    }
+
+    private static String getHandlerName(ThingUID thingUID) {
+        return DOMAIN + ":type=" + thingUID.getThingTypeId() + ",thing=" + ObjectName.quote(thingUID.getAsString());
+    }
+
+}
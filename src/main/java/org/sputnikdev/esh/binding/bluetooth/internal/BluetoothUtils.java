@@ -20,7 +20,6 @@ import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
 import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
 
-import javax.xml.bind.DatatypeConverter;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
 import java.util.Base64;
@@ -37,9 +36,15 @@ import java.util.stream.Collectors;
 public final class BluetoothUtils {
 
     private static final String MAC_PART_REGEXP = "(\\w{2}(?=(\\w{2})))";
+    private static final int BEACON_UID_CACHE_SIZE = 1024;
+    private static final BeaconUIDCodec BEACON_UID_CODEC = new BeaconUIDCodec(BEACON_UID_CACHE_SIZE);
 
     private BluetoothUtils() { }
 
+    static BeaconUIDCodec getBeaconUIDCodec() {
+        return BEACON_UID_CODEC;
+    }
+
     public static ThingUID getAdapterUID(URL url) {
         return new ThingUID(BluetoothBindingConstants.THING_TYPE_ADAPTER, getUID(url.getAdapterAddress()));
     }
@@ -53,7 +58,7 @@ public final class BluetoothUtils {
         if (addressType == AddressType.RESOLVABLE || addressType == AddressType.NON_RESOLVABLE) {
             thingTypeUID = BluetoothBindingConstants.THING_TYPE_BEACON;
             //TODO possibly add some service UUIDs as well
-            address = encodeBeaconUID(url.copyWithDevice(null, "name", device.getName()).getDeviceCompositeAddress());
+            address = BEACON_UID_CODEC.encode(url, device.getName());
         } else {
             thingTypeUID = bleEnabled
                     ? BluetoothBindingConstants.THING_TYPE_BLE :
@@ -71,7 +76,7 @@ public final class BluetoothUtils {
                     .map(BluetoothUtils::getAddressFromUID).orElse(CombinedGovernor.COMBINED_ADDRESS);
             String device;
             if (BluetoothBindingConstants.THING_TYPE_BEACON.equals(thing.getThingTypeUID())) {
-                device = decodeBeaconUID(thing.getUID().getId());
+                device = BEACON_UID_CODEC.decode(thing.getUID().getId());
             } else {
                 device = getAddressFromUID(thing.getUID().getId());
             }
@@ -165,20 +170,4 @@ public final class BluetoothUtils {
     private static String getAddressFromUID(String uid) {
         return uid.replaceAll(MAC_PART_REGEXP, "$1:");
     }
-
-    private static String decodeBeaconUID(String uid) {
-        try {
-            return new String(DatatypeConverter.parseHexBinary(uid), "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private static String encodeBeaconUID(String uid) {
-        try {
-            return DatatypeConverter.printHexBinary(uid.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalStateException(e);
-        }
-    }
 }
@@ -1,6 +1,10 @@
 package org.sputnikdev.esh.binding.bluetooth.internal;
 
+import org.eclipse.smarthome.config.core.ConfigConstants;
 import org.eclipse.smarthome.config.core.ConfigOptionProvider;
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.thing.Channel;
+import org.eclipse.smarthome.core.thing.ThingRegistry;
 import org.eclipse.smarthome.core.thing.type.ChannelGroupType;
 import org.eclipse.smarthome.core.thing.type.ChannelGroupTypeUID;
 import org.eclipse.smarthome.core.thing.type.ChannelType;
@@ -8,9 +12,12 @@ import org.eclipse.smarthome.core.thing.type.ChannelTypeProvider;
 import org.eclipse.smarthome.core.thing.type.ChannelTypeUID;
 import org.eclipse.smarthome.core.types.StateDescription;
 import org.eclipse.smarthome.core.types.StateOption;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
+import org.osgi.service.component.annotations.ReferencePolicy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sputnikdev.bluetooth.URL;
@@ -18,101 +25,333 @@ import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
 import org.sputnikdev.bluetooth.gattparser.spec.Field;
 import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * {@link ConfigOptionProvider} that provides channel types for dynamically discovered characteristics.
+ * GATT fields are indexed by their IDs ({@link BluetoothUtils#encodeFieldID(Field)}) for each characteristic
+ * so that channel types can be built without re-scanning characteristic fields.
+ * Built channel types are kept in a bounded LRU cache, unknown channel types are cached as well (negative caching).
+ * Cached entries are invalidated when GATT specifications change. Channel types and fields are built outside of
+ * any lock, a result is cached only if no invalidation has happened since the build started, so that entries built
+ * from outdated specifications never get back into the cache.
+ * Resolved GATT fields ({@link FieldSpec}) are persisted in a snapshot ({@link GattSpecificationSnapshot})
+ * so that channel types of known characteristics can be built on startup without asking the GATT parser to resolve
+ * their definitions (which it does lazily, characteristic by characteristic). Custom GATT definitions are also
+ * loaded lazily from a compiled catalog (see {@link GattExtensionCatalog}), so that neither of them is parsed
+ * on startup unless it is needed.
  *
  * @author Vlad Kolotov
  */
-@Component(immediate = true, service = ChannelTypeProvider.class)
-public class CharacteristicChannelTypeProvider implements ChannelTypeProvider {
+@Component(immediate = true, service = { ChannelTypeProvider.class, GattSpecificationListener.class },
+        configurationPid = "binding.bluetooth")
+public class CharacteristicChannelTypeProvider implements ChannelTypeProvider, GattSpecificationListener {
+
+    // characteristic-advncd-readable-00002a04-0000-1000-8000-00805f9b34fb-Battery_Level
+    private static final Pattern CHANNEL_TYPE_ID_PATTERN = Pattern.compile(
+            BluetoothBindingConstants.CHANNEL_CHARACTERISTIC + "-(advncd|simple)-(readable|writable)-"
+                    + "([0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})-(.+)");
+
+    private static final String SNAPSHOT_FILE_NAME = "gatt-specification.snapshot";
 
     private Logger logger = LoggerFactory.getLogger(CharacteristicChannelTypeProvider.class);
 
-    private final Map<ChannelTypeUID, ChannelType> cache = new ConcurrentHashMap<>();
+    private volatile LruCache<ChannelTypeUID, Optional<ChannelType>> cache =
+            new LruCache<>(BluetoothBindingConstants.DEFAULT_CHANNEL_TYPE_CACHE_SIZE);
+    private final Map<String, Map<String, FieldSpec>> fieldIndex = new ConcurrentHashMap<>();
+    // incremented on each invalidation, results are cached under the lock only if the epoch has not changed
+    private final Object invalidationLock = new Object();
+    private volatile long epoch;
+    private volatile GattSpecificationSnapshot snapshot = GattSpecificationSnapshot.EMPTY;
+    private volatile boolean snapshotDirty;
+    // guarded by "this", the snapshot is loaded, saved and dropped by different threads
+    private File snapshotFile;
+    private String snapshotHash;
+    private boolean snapshotDropped;
 
-    private BluetoothGattParser gattParser;
+    private volatile BluetoothGattParser gattParser;
+    private ThingRegistry thingRegistry;
 
-    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    @Activate
+    protected void activate(Map<String, Object> properties) {
+        BluetoothBindingConfig config = BluetoothHandlerFactory.parseConfig(properties);
+        cache = new LruCache<>(config.getChannelTypeCacheSize());
+        synchronized (this) {
+            snapshotFile = new File(ConfigConstants.getUserDataFolder() + File.separator
+                    + BluetoothBindingConstants.BINDING_ID, SNAPSHOT_FILE_NAME);
+        }
+        ThreadPoolManager.getPool(BluetoothBindingConstants.BINDING_ID).execute(() -> {
+            loadSnapshot(config.getExtensionFolder());
+            if (config.isChannelTypeWarmUp()) {
+                warmUp();
+                saveSnapshot();
+            }
+        });
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        saveSnapshot();
+    }
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY, policy = ReferencePolicy.DYNAMIC)
     public void setBluetoothGattParser(BluetoothGattParser gattParser) {
+        BluetoothGattParser previous = this.gattParser;
         this.gattParser = gattParser;
+        if (previous != null) {
+            // nothing has been resolved yet when the parser is bound for the first time
+            invalidate();
+        }
     }
 
     public void unsetBluetoothGattParser(BluetoothGattParser gattParser) {
-        this.gattParser = null;
+        if (this.gattParser == gattParser) {
+            this.gattParser = null;
+            invalidate();
+        }
+    }
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY)
+    public void setThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = thingRegistry;
+    }
+
+    public void unsetThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = null;
     }
 
     @Override
     public Collection<ChannelType> getChannelTypes(Locale locale) {
-        return Collections.emptyList();
+        return cache.values().stream().filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList());
     }
 
     @Override
     public ChannelType getChannelType(ChannelTypeUID channelTypeUID, Locale locale) {
         if (channelTypeUID.getBindingId().equals(BluetoothBindingConstants.BINDING_ID)) {
-            if (channelTypeUID.getId().startsWith(BluetoothBindingConstants.CHANNEL_CHARACTERISTIC)) {
-                return cache.computeIfAbsent(channelTypeUID, uid -> {
-                    return buildChannelType(channelTypeUID);
-                });
+            if (channelTypeUID.getId().startsWith(BluetoothBindingConstants.CHANNEL_CHARACTERISTIC)
+                    && gattParser != null) {
+                Optional<ChannelType> channelType = cache.get(channelTypeUID);
+                if (channelType == null) {
+                    long started = epoch;
+                    channelType = Optional.ofNullable(buildChannelType(channelTypeUID, started));
+                    synchronized (invalidationLock) {
+                        if (started == epoch) {
+                            cache.put(channelTypeUID, channelType);
+                        }
+                    }
+                }
+                return channelType.orElse(null);
             }
         }
         return null;
     }
 
+    @Override
+    public void specificationChanged(Set<String> characteristicUUIDs) {
+        logger.info("Invalidating channel types for characteristics: {}", characteristicUUIDs);
+        synchronized (invalidationLock) {
+            dropSnapshot();
+            epoch++;
+            fieldIndex.keySet().removeAll(characteristicUUIDs);
+            // unknown channel types might have become known, so all negative entries are invalidated too
+            cache.removeIf((channelTypeUID, channelType) -> !channelType.isPresent()
+                    || characteristicUUIDs.contains(getCharacteristicUUID(channelTypeUID)));
+        }
+    }
+
+    /**
+     * Returns the channel type cache.
+     * @return channel type cache
+     */
+    LruCache<ChannelTypeUID, Optional<ChannelType>> getCache() {
+        return cache;
+    }
+
+    /**
+     * Invalidates all cached channel types and indexed fields.
+     */
+    public void invalidate() {
+        synchronized (invalidationLock) {
+            dropSnapshot();
+            epoch++;
+            fieldIndex.clear();
+            cache.clear();
+        }
+    }
+
+    private synchronized void loadSnapshot(String extensionFolder) {
+        if (snapshotDropped) {
+            // specifications have changed while the snapshot was being loaded, the snapshot is stale
+            return;
+        }
+        long started = System.currentTimeMillis();
+        snapshotHash = GattSpecificationSnapshot.computeHash(extensionFolder);
+        snapshot = GattSpecificationSnapshot.open(snapshotFile, snapshotHash);
+        logger.info("GATT specification snapshot has been loaded: {} characteristics, {} ms",
+                snapshot.getCharacteristics().size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Writes resolved GATT fields (both from the current snapshot and indexed since then) into the snapshot file
+     * if anything has been indexed since the snapshot was loaded.
+     */
+    private synchronized void saveSnapshot() {
+        if (!snapshotDirty || snapshotHash == null) {
+            return;
+        }
+        GattSpecificationSnapshot snapshot = this.snapshot;
+        Map<String, Map<String, FieldSpec>> characteristics = new HashMap<>();
+        for (String characteristicUUID : snapshot.getCharacteristics()) {
+            characteristics.put(characteristicUUID, snapshot.get(characteristicUUID));
+        }
+        characteristics.putAll(fieldIndex);
+        try {
+            GattSpecificationSnapshot.write(snapshotFile, snapshotHash, characteristics);
+            snapshotDirty = false;
+            logger.info("GATT specification snapshot has been saved: {} characteristics", characteristics.size());
+        } catch (IOException e) {
+            logger.warn("Could not save GATT specification snapshot: {} : {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private synchronized void dropSnapshot() {
+        // the snapshot hash is recomputed only on binding restart, so changed specifications are never
+        // persisted under the old hash
+        snapshot = GattSpecificationSnapshot.EMPTY;
+        snapshotHash = null;
+        snapshotDropped = true;
+    }
+
+    /**
+     * Builds channel types for all characteristic channels of existing bluetooth things,
+     * so that channel types are served from the cache straight away.
+     */
+    private void warmUp() {
+        long started = System.currentTimeMillis();
+        thingRegistry.getAll().stream()
+                .filter(thing -> BluetoothBindingConstants.BINDING_ID.equals(thing.getThingTypeUID().getBindingId()))
+                .flatMap(thing -> thing.getChannels().stream())
+                .map(Channel::getChannelTypeUID)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(channelTypeUID -> getChannelType(channelTypeUID, null));
+        logger.info("Channel types have been warmed up: {} channel types, {} characteristics, {} ms",
+                cache.size(), fieldIndex.size(), System.currentTimeMillis() - started);
+    }
+
     /**
      * Builds a new channel type for a channel type UID.
      * See {@link org.sputnikdev.esh.binding.bluetooth.handler.BluetoothChannelBuilder#buildChannels(URL, List, boolean, boolean)}
      * @param channelTypeUID channel type UID
+     * @param started epoch when the build has started
      * @return new channel type
      */
-    private ChannelType buildChannelType(ChannelTypeUID channelTypeUID) {
-        // characteristic-advncd-readable-00002a04-0000-1000-8000-00805f9b34fb-Battery_Level
-        String channelID = channelTypeUID.getId();
-        boolean advanced = "advncd".equals(channelID.substring(15, 21));
-        boolean readOnly = "readable".equals(channelID.substring(22, 30));
-        String characteristicUUID = channelID.substring(31, 67);
-        String fieldName = channelID.substring(68, channelID.length()).replace("_", " ");
-
-        if (gattParser.isKnownCharacteristic(characteristicUUID)) {
-            Map<String, List<Field>> fieldsMapping = gattParser.getFields(characteristicUUID).stream()
-                    .collect(Collectors.groupingBy(BluetoothUtils::encodeFieldID));
-
-            List<Field> fields = fieldsMapping.get(fieldName);
-            if (fields.size() > 1) {
-                logger.warn("Multiple fields with the same name found: {} / {}. Skipping them.",
-                        characteristicUUID, fieldName);
-                return null;
-            }
+    private ChannelType buildChannelType(ChannelTypeUID channelTypeUID, long started) {
+        Matcher matcher = CHANNEL_TYPE_ID_PATTERN.matcher(channelTypeUID.getId());
+        if (!matcher.matches()) {
+            return null;
+        }
+        boolean advanced = "advncd".equals(matcher.group(1));
+        boolean readOnly = "readable".equals(matcher.group(2));
+        String characteristicUUID = matcher.group(3);
+        String fieldName = matcher.group(4).replace("_", " ");
 
-            Field field = fields.get(0);
+        Map<String, FieldSpec> fields = getFieldIndex(characteristicUUID, started);
+        if (fields == null) {
+            return null;
+        }
+        FieldSpec field = fields.get(fieldName);
+        if (field == null) {
+            logger.warn("Field is not found: {} / {}", characteristicUUID, fieldName);
+            return null;
+        }
 
-            List<StateOption> options = getStateOptions(field);
+        return new ChannelType(
+                new ChannelTypeUID(channelTypeUID.getAsString()), advanced, field.getItemType(), field.getName(),
+                field.getDescription(), null, null,
+                new StateDescription(field.getMinimum(), field.getMaximum(),
+                        null, field.getPattern(), readOnly, field.getOptions()), null);
+    }
 
-            String itemType = getItemType(field);
+    private Map<String, FieldSpec> getFieldIndex(String characteristicUUID, long started) {
+        String uuid = characteristicUUID.toLowerCase();
+        Map<String, FieldSpec> fields = fieldIndex.get(uuid);
+        if (fields == null) {
+            fields = snapshot.get(uuid);
+            boolean resolved = fields == null;
+            if (resolved) {
+                BluetoothGattParser gattParser = this.gattParser;
+                if (gattParser == null || !gattParser.isKnownCharacteristic(characteristicUUID)) {
+                    return null;
+                }
+                fields = indexFields(characteristicUUID, gattParser.getFields(characteristicUUID));
+            }
+            synchronized (invalidationLock) {
+                if (started == epoch) {
+                    fieldIndex.put(uuid, fields);
+                    if (resolved) {
+                        snapshotDirty = true;
+                    }
+                }
+            }
+        }
+        return fields;
+    }
 
-            if (itemType.equals("Switch") || itemType.equals("Binary")) {
-                options = Collections.emptyList();
+    private Map<String, FieldSpec> indexFields(String characteristicUUID, List<Field> fields) {
+        Map<String, List<Field>> byID = fields.stream().collect(Collectors.groupingBy(BluetoothUtils::encodeFieldID));
+        Map<String, FieldSpec> index = new HashMap<>();
+        byID.forEach((fieldID, sameID) -> {
+            if (sameID.size() > 1) {
+                logger.warn("Multiple fields with the same name found: {} / {}. Skipping them.",
+                        characteristicUUID, fieldID);
+            } else {
+                index.put(fieldID, toFieldSpec(sameID.get(0)));
             }
+        });
+        return Collections.unmodifiableMap(index);
+    }
 
-            String format = getFormat(field);
-            String unit = getUnit(field);
-            String pattern = format + " " + (unit != null ? unit : "");
+    /**
+     * Resolves a GATT field into a channel type ready definition.
+     * @param field GATT field
+     * @return resolved field
+     */
+    static FieldSpec toFieldSpec(Field field) {
+        List<StateOption> options = getStateOptions(field);
 
-            return new ChannelType(
-                    new ChannelTypeUID(channelTypeUID.getAsString()), advanced, itemType, field.getName(),
-                    field.getInformativeText(), null, null,
-                    new StateDescription(getMinimum(field), getMaximum(field),
-                            null, pattern, readOnly, options), null);
+        String itemType = getItemType(field);
+
+        if (itemType.equals("Switch") || itemType.equals("Binary")) {
+            options = Collections.emptyList();
         }
-        return null;
+
+        String format = getFormat(field);
+        String unit = getUnit(field);
+        String pattern = format + " " + (unit != null ? unit : "");
+
+        return new FieldSpec(field.getName(), field.getInformativeText(), itemType,
+                getMinimum(field), getMaximum(field), pattern, options);
+    }
+
+    private static String getCharacteristicUUID(ChannelTypeUID channelTypeUID) {
+        Matcher matcher = CHANNEL_TYPE_ID_PATTERN.matcher(channelTypeUID.getId());
+        return matcher.matches() ? matcher.group(3).toLowerCase() : null;
     }
 
     @Override
@@ -145,7 +384,7 @@ public class CharacteristicChannelTypeProvider implements ChannelTypeProvider {
         return field.getEnumerations() != null && field.getEnumerations().getEnumerations() != null;
     }
 
-    private String getItemType(Field field) {
+    private static String getItemType(Field field) {
         switch (field.getFormat().getType()) {
             case BOOLEAN: return "Switch";
             case UINT:
@@ -0,0 +1,103 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A single slot "latest value wins" mailbox. Producers (e.g. transport callback threads) only store the newest value
+ * and return straight away, the value is consumed later on the executor. Values that are replaced before they
+ * get consumed are conflated (dropped), so that a burst of values (e.g. notifications of an accelerometer)
+ * is processed at the rate the consumer can handle. Values are consumed one at a time in order.
+ *
+ * <p>Values can be consumed on a handler mailbox ({@link SerialExecutor}), in this case values are drained by
+ * droppable tasks, so that they are processed in order with other events of the handler and do not hold the mailbox
+ * back when it is overflowing. If a drain task gets dropped, the latest value stays in the slot and
+ * it is drained on the next offer.
+ *
+ * @param <T> value type
+ * @author Vlad Kolotov
+ */
+public class ConflatingMailbox<T> {
+
+    private final Consumer<Runnable> scheduler;
+    private final Consumer<T> consumer;
+    private final AtomicReference<T> latest = new AtomicReference<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder conflated = new LongAdder();
+
+    /**
+     * Creates a mailbox.
+     * @param executor an executor to consume values
+     * @param consumer value consumer
+     */
+    public ConflatingMailbox(Executor executor, Consumer<T> consumer) {
+        scheduler = executor::execute;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Creates a mailbox which consumes values on a handler mailbox (as droppable tasks).
+     * @param mailbox a handler mailbox to consume values
+     * @param consumer value consumer
+     */
+    public ConflatingMailbox(SerialExecutor mailbox, Consumer<T> consumer) {
+        // the slot is not drained again straight away when the drain is dropped, the mailbox is overflowing
+        // (or paused), the next offer schedules a new drain
+        scheduler = drain -> mailbox.executeDroppable(drain, () -> draining.set(false));
+        this.consumer = consumer;
+    }
+
+    /**
+     * Stores a new value, the previous value is conflated if it has not been consumed yet.
+     * @param value a new value
+     */
+    public void offer(T value) {
+        received.increment();
+        if (latest.getAndSet(value) != null) {
+            conflated.increment();
+        }
+        schedule();
+    }
+
+    /**
+     * Returns number of received values.
+     * @return number of received values
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Returns number of values that were replaced by newer ones before they got consumed.
+     * @return number of conflated values
+     */
+    public long getConflated() {
+        return conflated.sum();
+    }
+
+    private void schedule() {
+        if (draining.compareAndSet(false, true)) {
+            scheduler.accept(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            T value;
+            while ((value = latest.getAndSet(null)) != null) {
+                consumer.accept(value);
+            }
+        } finally {
+            draining.set(false);
+            // a value might have been stored after the last check
+            if (latest.get() != null) {
+                schedule();
+            }
+        }
+    }
+
+}
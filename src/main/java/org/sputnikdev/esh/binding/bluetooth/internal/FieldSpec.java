@@ -0,0 +1,63 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.types.StateOption;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A resolved (channel type ready) definition of a GATT field. It contains everything that is required to build
+ * a channel type for the field without consulting GATT specifications.
+ *
+ * @author Vlad Kolotov
+ */
+class FieldSpec {
+
+    private final String name;
+    private final String description;
+    private final String itemType;
+    private final BigDecimal minimum;
+    private final BigDecimal maximum;
+    private final String pattern;
+    private final List<StateOption> options;
+
+    FieldSpec(String name, String description, String itemType, BigDecimal minimum, BigDecimal maximum,
+              String pattern, List<StateOption> options) {
+        this.name = name;
+        this.description = description;
+        this.itemType = itemType;
+        this.minimum = minimum;
+        this.maximum = maximum;
+        this.pattern = pattern;
+        this.options = options;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    String getItemType() {
+        return itemType;
+    }
+
+    BigDecimal getMinimum() {
+        return minimum;
+    }
+
+    BigDecimal getMaximum() {
+        return maximum;
+    }
+
+    String getPattern() {
+        return pattern;
+    }
+
+    List<StateOption> getOptions() {
+        return options;
+    }
+
+}
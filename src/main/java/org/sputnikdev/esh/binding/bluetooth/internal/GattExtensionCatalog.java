@@ -0,0 +1,200 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A compiled form of custom GATT definitions (extension folder) that the GATT parser can load lazily.
+ * Loading the extension folder makes the parser to parse every definition eagerly, whereas a catalog
+ * (a registry file mapping UUIDs to definition types and the definitions named by their types,
+ * the same layout as the parser uses for the standard GATT specification) is only registered on startup,
+ * definitions are parsed on first use.
+ *
+ * <p>Catalogs are stored in a folder named by a content hash of the extension folder,
+ * so that a catalog is never used if the extension folder has changed since the catalog was compiled.
+ *
+ * @author Vlad Kolotov
+ */
+class GattExtensionCatalog {
+
+    static final String[] SUBFOLDERS = {"service", "characteristic"};
+    static final String REGISTRY_FILE_NAME = "gatt_spec_registry.json";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GattExtensionCatalog.class);
+
+    private GattExtensionCatalog() { }
+
+    /**
+     * Registers a compiled catalog of the extension folder in the parser.
+     * @param parser GATT parser
+     * @param catalogFolder folder where catalogs are stored
+     * @param hash content hash of the extension folder (see {@link #computeHash(String)})
+     * @return true if the catalog exists and has been registered, false otherwise
+     */
+    static boolean load(BluetoothGattParser parser, File catalogFolder, String hash) throws IOException {
+        File catalog = new File(catalogFolder, hash);
+        File services = new File(new File(catalog, SUBFOLDERS[0]), REGISTRY_FILE_NAME);
+        File characteristics = new File(new File(catalog, SUBFOLDERS[1]), REGISTRY_FILE_NAME);
+        if (!services.isFile() || !characteristics.isFile()) {
+            return false;
+        }
+        parser.loadExtensionsFromCatalogResources(services.toURI().toURL(), characteristics.toURI().toURL());
+        return true;
+    }
+
+    /**
+     * Compiles a catalog of the extension folder, outdated catalogs are deleted.
+     * @param extensionFolder extension folder
+     * @param catalogFolder folder where catalogs are stored
+     * @return content hash of the compiled extension folder
+     * @throws IOException if the extension folder cannot be read, a definition is malformed
+     * or the catalog cannot be written
+     */
+    static String compile(String extensionFolder, File catalogFolder) throws IOException {
+        Map<String, byte[]> files = readFiles(extensionFolder);
+        String hash = toHex(digest(files));
+        Path target = new File(catalogFolder, hash).toPath();
+        if (Files.isDirectory(target)) {
+            return hash;
+        }
+        Path temp = new File(catalogFolder, hash + TEMP_SUFFIX).toPath();
+        deleteFolder(temp);
+        try {
+            for (String subfolder : SUBFOLDERS) {
+                Path folder = Files.createDirectories(temp.resolve(subfolder));
+                Map<String, String> registry = new LinkedHashMap<>();
+                for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                    if (!file.getKey().startsWith(subfolder + "/")) {
+                        continue;
+                    }
+                    Element definition = parse(file.getKey(), file.getValue());
+                    String uuid = definition.getAttribute("uuid");
+                    String type = definition.getAttribute("type");
+                    if (uuid.isEmpty() || type.isEmpty() || type.contains("/") || type.contains("\\")
+                            || registry.containsValue(type)) {
+                        throw new IOException("Definition cannot be compiled (missing or duplicate uuid/type): "
+                                + file.getKey());
+                    }
+                    registry.put(uuid, type);
+                    Files.write(folder.resolve(type + ".xml"), file.getValue());
+                }
+                Files.write(folder.resolve(REGISTRY_FILE_NAME), toJson(registry).getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(temp, target);
+        } finally {
+            deleteFolder(temp);
+        }
+        File[] outdated = catalogFolder.listFiles(file -> !file.getName().equals(hash));
+        if (outdated != null) {
+            for (File file : outdated) {
+                deleteFolder(file.toPath());
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Computes a content hash of the extension folder (definitions that the parser loads from it).
+     * @param extensionFolder extension folder
+     * @return content hash
+     * @throws IOException if the extension folder cannot be read
+     */
+    static String computeHash(String extensionFolder) throws IOException {
+        return toHex(digest(readFiles(extensionFolder)));
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] digest(Map<String, byte[]> files) {
+        MessageDigest digest = newDigest();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            digest.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update(file.getValue());
+        }
+        return digest.digest();
+    }
+
+    private static Map<String, byte[]> readFiles(String extensionFolder) throws IOException {
+        // the same files that the parser reads from the extension folder, sorted by their relative paths
+        Map<String, byte[]> files = new TreeMap<>();
+        for (String subfolder : SUBFOLDERS) {
+            Path folder = new File(extensionFolder, subfolder).toPath();
+            if (!Files.isDirectory(folder)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.list(folder)) {
+                for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    files.put(subfolder + "/" + path.getFileName(), Files.readAllBytes(path));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static Element parse(String name, byte[] content) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(content)).getDocumentElement();
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Malformed definition: " + name + " : " + e.getMessage(), e);
+        }
+    }
+
+    private static String toJson(Map<String, String> registry) {
+        return registry.entrySet().stream()
+                .map(entry -> quote(entry.getKey()) + ": " + quote(entry.getValue()))
+                .collect(Collectors.joining(",\n  ", "{\n  ", "\n}\n"));
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void deleteFolder(Path folder) {
+        if (!Files.exists(folder)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted((first, second) -> second.compareTo(first)).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete folder: {} : {}", folder, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,284 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Watches the GATT extension folder ({@link BluetoothBindingConfig#getExtensionFolder()}) and loads new or changed
+ * GATT definitions (XML files) in background. Only changed files are read: they are staged in a temporary folder
+ * which is loaded into the GATT parser with {@link BluetoothGattParser#loadExtensionsFromFolder(String)},
+ * so that newly loaded definitions replace the previous ones. UUIDs of the new, changed or deleted services
+ * and characteristics are handed over to the consumer.
+ *
+ * <p>The gatt parser library does not provide a public way of creating a separate parser, therefore definitions
+ * are loaded into the parser which is in use, the same way the parser itself loads definitions lazily.
+ * The parser cannot unload definitions either, deleted definitions stay loaded until the binding is restarted.
+ *
+ * @author Vlad Kolotov
+ */
+class GattExtensionWatcher {
+
+    private static final String[] SUB_FOLDERS = {"characteristic", "service"};
+    private static final long DEBOUNCE_MS = 1000;
+    private static final long STOP_TIMEOUT_MS = 5000;
+
+    private Logger logger = LoggerFactory.getLogger(GattExtensionWatcher.class);
+
+    private final Path extensionFolder;
+    private final BluetoothGattParser parser;
+    private final Consumer<Set<String>> changeConsumer;
+    // only accessed by the watcher thread once it is started
+    private final Map<Path, Long> fingerprints = new HashMap<>();
+    private final Map<Path, String> uuids = new HashMap<>();
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    /**
+     * Creates a watcher.
+     * @param extensionFolder extension folder
+     * @param parser GATT parser to load definitions into
+     * @param changeConsumer consumer of UUIDs of the changed services and characteristics
+     */
+    GattExtensionWatcher(String extensionFolder, BluetoothGattParser parser, Consumer<Set<String>> changeConsumer) {
+        this.extensionFolder = new File(extensionFolder).toPath();
+        this.parser = parser;
+        this.changeConsumer = changeConsumer;
+    }
+
+    /**
+     * Starts watching the extension folder. Files that already exist are considered to be loaded.
+     * @throws IOException if the folder cannot be watched
+     */
+    synchronized void start() throws IOException {
+        if (watcherThread != null) {
+            return;
+        }
+        init();
+        watchService = FileSystems.getDefault().newWatchService();
+        register(extensionFolder);
+        for (String subFolder : SUB_FOLDERS) {
+            register(extensionFolder.resolve(subFolder));
+        }
+        watcherThread = new Thread(this::watch, "bluetooth-gatt-extension-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        logger.info("Watching GATT extension folder: {}", extensionFolder);
+    }
+
+    /**
+     * Stops watching the extension folder. Waits for the watcher thread to finish
+     * so that no definitions are loaded after this method returns.
+     */
+    synchronized void stop() {
+        Thread thread = watcherThread;
+        watcherThread = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.warn("Could not close watch service: {}", e.getMessage());
+            }
+            watchService = null;
+        }
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Remembers existing definitions as loaded.
+     * @throws IOException if the extension folder cannot be read
+     */
+    void init() throws IOException {
+        Map<Path, Long> current = scan();
+        fingerprints.putAll(current);
+        for (Path file : current.keySet()) {
+            try {
+                uuids.put(file, readUUID(file));
+            } catch (IOException e) {
+                logger.warn("Could not read GATT definition: {} : {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Loads definitions which have been added or changed since the last successful load.
+     * The state is committed only if all changed definitions are well-formed and loaded successfully,
+     * so that a failed load (e.g. a half written file) is retried on the next change.
+     * @throws IOException if the extension folder or a changed definition cannot be read
+     */
+    void reload() throws IOException {
+        Map<Path, Long> current = scan();
+        Set<Path> changed = current.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(fingerprints.get(entry.getKey())))
+                .map(Map.Entry::getKey).collect(Collectors.toSet());
+        Set<Path> deleted = fingerprints.keySet().stream()
+                .filter(path -> !current.containsKey(path)).collect(Collectors.toSet());
+        if (changed.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+
+        logger.info("Reloading GATT definitions, changed: {}, deleted: {}", changed, deleted);
+        Map<Path, String> changedUUIDs = new HashMap<>();
+        for (Path file : changed) {
+            changedUUIDs.put(file, readUUID(file));
+        }
+        if (!changed.isEmpty()) {
+            load(changed);
+        }
+        if (!deleted.isEmpty()) {
+            logger.info("Deleted GATT definitions stay loaded until the binding is restarted: {}", deleted);
+        }
+
+        Set<String> affected = new HashSet<>();
+        deleted.stream().map(uuids::get).forEach(affected::add);
+        changed.stream().map(uuids::get).forEach(affected::add);
+        changedUUIDs.values().forEach(affected::add);
+        affected.remove(null);
+
+        fingerprints.clear();
+        fingerprints.putAll(current);
+        uuids.keySet().removeAll(deleted);
+        uuids.putAll(changedUUIDs);
+        changeConsumer.accept(affected);
+    }
+
+    /**
+     * Loads the given definitions into the parser. The files are copied into a temporary folder
+     * which has the same layout as the extension folder, so that the rest of the folder is not read again.
+     * @param files definitions to load
+     * @throws IOException if the definitions cannot be copied
+     */
+    private void load(Set<Path> files) throws IOException {
+        Path staging = Files.createTempDirectory("bluetooth-gatt");
+        try {
+            for (String subFolder : SUB_FOLDERS) {
+                Files.createDirectories(staging.resolve(subFolder));
+            }
+            for (Path file : files) {
+                Files.copy(file, staging.resolve(extensionFolder.relativize(file)),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            parser.loadExtensionsFromFolder(staging.toString());
+        } finally {
+            deleteFolder(staging);
+        }
+    }
+
+    private void deleteFolder(Path folder) {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete temporary folder: {} : {}", folder, e.getMessage());
+        }
+    }
+
+    private void watch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                WatchKey key = watchService.take();
+                // a file is normally written in several steps, waiting until things settle down
+                do {
+                    key.pollEvents();
+                    key.reset();
+                    key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                for (String subFolder : SUB_FOLDERS) {
+                    register(extensionFolder.resolve(subFolder));
+                }
+                reload();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                logger.debug("GATT extension folder watcher has been stopped: {}", extensionFolder);
+                return;
+            } catch (Exception e) {
+                logger.error("Could not reload GATT extension folder, it will be retried on next change: {}",
+                        extensionFolder, e);
+            }
+        }
+    }
+
+    private Map<Path, Long> scan() throws IOException {
+        Map<Path, Long> result = new HashMap<>();
+        for (String subFolder : SUB_FOLDERS) {
+            Path folder = extensionFolder.resolve(subFolder);
+            if (Files.isDirectory(folder)) {
+                try (Stream<Path> files = Files.list(folder)) {
+                    for (Path file : files.filter(path -> path.toString().endsWith(".xml"))
+                            .collect(Collectors.toList())) {
+                        result.put(file, Files.getLastModifiedTime(file).toMillis() * 31 + Files.size(file));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void register(Path folder) throws IOException {
+        if (Files.isDirectory(folder)) {
+            folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+    }
+
+    private static String readUUID(Path file) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            // errors are reported via exceptions, the default handler prints them to stderr
+            builder.setErrorHandler(null);
+            Document document = builder.parse(file.toFile());
+            String uuid = document.getDocumentElement().getAttribute("uuid");
+            return uuid.isEmpty() ? null : toLongUUID(uuid);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Malformed GATT definition: " + file, e);
+        }
+    }
+
+    private static String toLongUUID(String uuid) {
+        String normalized = uuid.trim().toLowerCase();
+        if (normalized.length() == 4) {
+            return "0000" + normalized + "-0000-1000-8000-00805f9b34fb";
+        } else if (normalized.length() == 8) {
+            return normalized + "-0000-1000-8000-00805f9b34fb";
+        }
+        return normalized;
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.storage.Storage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Persists resolved GATT layout (characteristic URLs and their access flags) of bluetooth devices,
+ * so that characteristic channels can be restored before devices get connected.
+ * Layouts are keyed by device address (adapter address / device address).
+ *
+ * <p>A layout is stored as a string where each line represents a characteristic: "characteristic URL;flags",
+ * flags are comma separated {@link CharacteristicAccessType} names.
+ *
+ * @author Vlad Kolotov
+ */
+public class GattLayoutStorage {
+
+    private static final String LINE_SEPARATOR = "\n";
+    private static final String FLAGS_SEPARATOR = ";";
+
+    private Logger logger = LoggerFactory.getLogger(GattLayoutStorage.class);
+
+    private final Storage<String> storage;
+
+    GattLayoutStorage(Storage<String> storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Loads persisted GATT layout of a device.
+     * @param deviceURL device URL
+     * @return characteristic URLs and their flags or null if the layout has never been persisted
+     */
+    public Map<URL, Set<CharacteristicAccessType>> load(URL deviceURL) {
+        String value = storage.get(getKey(deviceURL));
+        if (value == null) {
+            return null;
+        }
+        Map<URL, Set<CharacteristicAccessType>> layout = new LinkedHashMap<>();
+        try {
+            for (String line : value.split(LINE_SEPARATOR)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.split(FLAGS_SEPARATOR, -1);
+                Set<CharacteristicAccessType> flags = EnumSet.noneOf(CharacteristicAccessType.class);
+                Arrays.stream(parts[1].split(",")).filter(flag -> !flag.isEmpty())
+                        .map(CharacteristicAccessType::valueOf).forEach(flags::add);
+                layout.put(new URL(parts[0]), flags);
+            }
+        } catch (RuntimeException ex) {
+            logger.warn("Could not read GATT layout, ignoring it: {} : {}", deviceURL, ex.getMessage());
+            storage.remove(getKey(deviceURL));
+            return null;
+        }
+        return Collections.unmodifiableMap(layout);
+    }
+
+    /**
+     * Persists GATT layout of a device.
+     * @param deviceURL device URL
+     * @param layout characteristic URLs and their flags
+     */
+    public void save(URL deviceURL, Map<URL, Set<CharacteristicAccessType>> layout) {
+        storage.put(getKey(deviceURL), layout.entrySet().stream()
+                .map(entry -> entry.getKey() + FLAGS_SEPARATOR
+                        + entry.getValue().stream().map(Enum::name).collect(Collectors.joining(",")))
+                .collect(Collectors.joining(LINE_SEPARATOR)));
+    }
+
+    /**
+     * Removes persisted GATT layout of a device.
+     * @param deviceURL device URL
+     */
+    public void remove(URL deviceURL) {
+        storage.remove(getKey(deviceURL));
+    }
+
+    private static String getKey(URL deviceURL) {
+        return deviceURL.getAdapterAddress() + "/" + deviceURL.getDeviceAddress();
+    }
+
+}
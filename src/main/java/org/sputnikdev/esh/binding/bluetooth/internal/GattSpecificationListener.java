@@ -0,0 +1,20 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import java.util.Set;
+
+/**
+ * A listener which is notified when GATT specifications (services and characteristics definitions) change,
+ * e.g. when custom GATT definitions are reloaded from the extension folder.
+ * Components caching anything derived from GATT specifications should invalidate corresponding entries.
+ *
+ * @author Vlad Kolotov
+ */
+public interface GattSpecificationListener {
+
+    /**
+     * Invoked when GATT specifications for some characteristics get added or changed.
+     * @param characteristicUUIDs UUIDs of added or changed characteristics (lower case)
+     */
+    void specificationChanged(Set<String> characteristicUUIDs);
+
+}
@@ -0,0 +1,276 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.types.StateOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compact binary snapshot of resolved GATT specifications (see {@link FieldSpec}) indexed by characteristic UUID.
+ * The snapshot is keyed on a content hash of the GATT specification sources (standard GATT specifications
+ * bundled with the GATT parser and custom GATT definitions from the extension folder),
+ * a snapshot with a different hash is ignored.
+ * The snapshot file is read into memory (the file is not kept open) and characteristics are decoded lazily on demand.
+ * The snapshot only covers what the binding derives from GATT specifications (channel type definitions),
+ * it cannot be used to prime the GATT parser which does not support loading pre-resolved specifications.
+ *
+ * <p>File layout: magic, version, hash, number of characteristics, index (characteristic UUID, data offset),
+ * data (fields of each characteristic).
+ *
+ * @author Vlad Kolotov
+ */
+class GattSpecificationSnapshot {
+
+    static final GattSpecificationSnapshot EMPTY = new GattSpecificationSnapshot(null, Collections.emptyMap());
+
+    private static final int MAGIC = 0x47415454;
+    private static final int VERSION = 1;
+
+    private static final String SPECIFICATION_ROOT = "gatt/";
+    private static final Pattern REGISTRY_TYPE = Pattern.compile("\"[^\"]*\"\\s*:\\s*\"([^\"]+)\"");
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GattSpecificationSnapshot.class);
+
+    private final ByteBuffer data;
+    private final Map<String, Integer> index;
+
+    private GattSpecificationSnapshot(ByteBuffer data, Map<String, Integer> index) {
+        this.data = data;
+        this.index = index;
+    }
+
+    /**
+     * Opens a snapshot file. An empty snapshot is returned if the file does not exist, cannot be read
+     * or its hash does not match the provided one.
+     * @param file snapshot file
+     * @param hash expected hash
+     * @return snapshot
+     */
+    static GattSpecificationSnapshot open(File file, String hash) {
+        if (!file.isFile()) {
+            return EMPTY;
+        }
+        try {
+            // not memory-mapped, a mapped file cannot be replaced or deleted on some platforms (Windows)
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !hash.equals(readString(buffer))) {
+                LOGGER.info("GATT specification snapshot is outdated: {}", file);
+                return EMPTY;
+            }
+            int size = buffer.getInt();
+            Map<String, Integer> index = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                index.put(readString(buffer), buffer.getInt());
+            }
+            return new GattSpecificationSnapshot(buffer.slice(), Collections.unmodifiableMap(index));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read GATT specification snapshot: {} : {}", file, e.getMessage());
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Writes a snapshot file. The file is replaced atomically where the file system supports it.
+     * @param file snapshot file
+     * @param hash content hash of the GATT specification sources
+     * @param characteristics resolved fields (field ID to field spec) of characteristics (characteristic UUID)
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(File file, String hash, Map<String, Map<String, FieldSpec>> characteristics)
+            throws IOException {
+        ByteArrayOutputStream dataBytes = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(dataBytes);
+        Map<String, Integer> offsets = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, FieldSpec>> characteristic : characteristics.entrySet()) {
+            offsets.put(characteristic.getKey(), dataOut.size());
+            dataOut.writeInt(characteristic.getValue().size());
+            for (Map.Entry<String, FieldSpec> field : characteristic.getValue().entrySet()) {
+                writeString(dataOut, field.getKey());
+                writeFieldSpec(dataOut, field.getValue());
+            }
+        }
+        dataOut.flush();
+
+        File folder = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(folder.toPath());
+        Path temp = Files.createTempFile(folder.toPath(), file.getName(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp.toFile()))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, hash);
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, Integer> offset : offsets.entrySet()) {
+                writeString(out, offset.getKey());
+                out.writeInt(offset.getValue());
+            }
+            dataBytes.writeTo(out);
+        }
+        try {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Computes a content hash of the GATT specification sources: standard GATT specifications bundled with
+     * the GATT parser (registries and definitions they refer to) and custom GATT definitions in the extension folder.
+     * @param extensionFolder extension folder
+     * @return content hash
+     */
+    static String computeHash(String extensionFolder) {
+        try {
+            MessageDigest digest = GattExtensionCatalog.newDigest();
+            ClassLoader classLoader = BluetoothGattParser.class.getClassLoader();
+            for (String subfolder : GattExtensionCatalog.SUBFOLDERS) {
+                String folder = SPECIFICATION_ROOT + subfolder + "/";
+                byte[] registry = readResource(classLoader, folder + GattExtensionCatalog.REGISTRY_FILE_NAME);
+                digest.update(registry);
+                Set<String> types = new TreeSet<>();
+                Matcher matcher = REGISTRY_TYPE.matcher(new String(registry, StandardCharsets.UTF_8));
+                while (matcher.find()) {
+                    types.add(matcher.group(1));
+                }
+                for (String type : types) {
+                    digest.update(readResource(classLoader, folder + type + ".xml"));
+                }
+            }
+            if (extensionFolder != null && new File(extensionFolder).isDirectory()) {
+                digest.update(GattExtensionCatalog.computeHash(extensionFolder).getBytes(StandardCharsets.UTF_8));
+            }
+            return GattExtensionCatalog.toHex(digest.digest());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns UUIDs of the characteristics in the snapshot.
+     * @return characteristic UUIDs
+     */
+    Set<String> getCharacteristics() {
+        return index.keySet();
+    }
+
+    /**
+     * Reads resolved fields of a characteristic.
+     * @param characteristicUUID characteristic UUID
+     * @return resolved fields (field ID to field spec) or null if the characteristic is not in the snapshot
+     */
+    Map<String, FieldSpec> get(String characteristicUUID) {
+        Integer offset = index.get(characteristicUUID);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(offset);
+        int size = buffer.getInt();
+        Map<String, FieldSpec> fields = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            fields.put(readString(buffer), readFieldSpec(buffer));
+        }
+        return Collections.unmodifiableMap(fields);
+    }
+
+    private static byte[] readResource(ClassLoader classLoader, String name) throws IOException {
+        URL resource = classLoader.getResource(name);
+        if (resource == null) {
+            // a missing definition is still a part of the content
+            return new byte[0];
+        }
+        try (InputStream in = resource.openStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static void writeFieldSpec(DataOutputStream out, FieldSpec spec) throws IOException {
+        writeString(out, spec.getName());
+        writeString(out, spec.getDescription());
+        writeString(out, spec.getItemType());
+        writeString(out, spec.getMinimum() != null ? spec.getMinimum().toString() : null);
+        writeString(out, spec.getMaximum() != null ? spec.getMaximum().toString() : null);
+        writeString(out, spec.getPattern());
+        if (spec.getOptions() == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(spec.getOptions().size());
+            for (StateOption option : spec.getOptions()) {
+                writeString(out, option.getValue());
+                writeString(out, option.getLabel());
+            }
+        }
+    }
+
+    private static FieldSpec readFieldSpec(ByteBuffer buffer) {
+        String name = readString(buffer);
+        String description = readString(buffer);
+        String itemType = readString(buffer);
+        String minimum = readString(buffer);
+        String maximum = readString(buffer);
+        String pattern = readString(buffer);
+        int optionsSize = buffer.getInt();
+        List<StateOption> options = null;
+        if (optionsSize >= 0) {
+            options = new ArrayList<>(optionsSize);
+            for (int i = 0; i < optionsSize; i++) {
+                options.add(new StateOption(readString(buffer), readString(buffer)));
+            }
+        }
+        return new FieldSpec(name, description, itemType,
+                minimum != null ? new BigDecimal(minimum) : null, maximum != null ? new BigDecimal(maximum) : null,
+                pattern, options);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
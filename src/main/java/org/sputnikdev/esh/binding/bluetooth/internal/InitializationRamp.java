@@ -0,0 +1,180 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits initialization of thing handlers in waves so that the adapters and the storage are not saturated
+ * when lots of things get initialized at once (e.g. on startup). Adapters are always admitted before devices.
+ * Each wave admits up to {@link BluetoothBindingConfig#getInitializationWaveSize()} things, waves are separated
+ * by {@link BluetoothBindingConfig#getInitializationWaveInterval()} milliseconds. The ramp is disabled by default
+ * (things are initialized straight away), it is enabled by a positive wave size. Waves are run by a dedicated thread,
+ * as initialization of thing handlers might block, it must not hold up the shared ESH thread pools.
+ *
+ * <p>Time-to-online (the time since a thing was submitted for initialization until it went online for the first
+ * time) is kept by the admission of each thing (see {@link Admission#getTimeToOnline()}).
+ *
+ * @author Vlad Kolotov
+ */
+public class InitializationRamp {
+
+    private Logger logger = LoggerFactory.getLogger(InitializationRamp.class);
+
+    private final ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "bluetooth-initialization-ramp");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int waveSize;
+    private final long waveInterval;
+    private final Queue<Admission> adapters = new ConcurrentLinkedQueue<>();
+    private final Queue<Admission> devices = new ConcurrentLinkedQueue<>();
+    private ScheduledFuture<?> waveTask;
+
+    InitializationRamp(int waveSize, long waveInterval) {
+        this.waveSize = waveSize;
+        this.waveInterval = waveInterval;
+    }
+
+    /**
+     * Submits initialization of a thing handler.
+     * @param thingUID thing UID
+     * @param adapter true if the thing is an adapter
+     * @param initialization initialization routine
+     * @return admission which can be used to cancel initialization and report that the thing is online
+     */
+    public Admission admit(ThingUID thingUID, boolean adapter, Runnable initialization) {
+        Admission admission = new Admission(thingUID, initialization);
+        if (waveSize <= 0) {
+            admission.run();
+        } else {
+            (adapter ? adapters : devices).add(admission);
+            scheduleWaves();
+        }
+        return admission;
+    }
+
+    /**
+     * Returns number of things waiting for initialization.
+     * @return number of pending things
+     */
+    public int getPending() {
+        return adapters.size() + devices.size();
+    }
+
+    /**
+     * Cancels all pending initializations and stops the wave thread.
+     */
+    public synchronized void dispose() {
+        if (waveTask != null) {
+            waveTask.cancel(false);
+            waveTask = null;
+        }
+        scheduler.shutdown();
+        adapters.clear();
+        devices.clear();
+    }
+
+    private synchronized void scheduleWaves() {
+        if (scheduler.isShutdown()) {
+            // the binding is being deactivated
+            adapters.clear();
+            devices.clear();
+        } else if (waveTask == null) {
+            waveTask = scheduler.scheduleWithFixedDelay(this::nextWave, 0, waveInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void nextWave() {
+        int admitted = 0;
+        while (admitted < waveSize) {
+            Admission admission = adapters.poll();
+            if (admission == null) {
+                admission = devices.poll();
+            }
+            if (admission == null) {
+                break;
+            }
+            if (admission.run()) {
+                admitted++;
+            }
+        }
+        logger.debug("Initialization wave: {} things admitted, {} things pending", admitted, getPending());
+        synchronized (this) {
+            if (adapters.isEmpty() && devices.isEmpty() && waveTask != null) {
+                waveTask.cancel(false);
+                waveTask = null;
+            }
+        }
+    }
+
+    /**
+     * A thing submitted for initialization.
+     */
+    public final class Admission {
+
+        private final ThingUID thingUID;
+        private final Runnable initialization;
+        private final long submitted = System.currentTimeMillis();
+        private volatile boolean cancelled;
+        private boolean started;
+        private volatile long timeToOnline = -1;
+
+        private Admission(ThingUID thingUID, Runnable initialization) {
+            this.thingUID = thingUID;
+            this.initialization = initialization;
+        }
+
+        /**
+         * Cancels initialization if it has not been started yet. If initialization is running,
+         * this method waits until it is finished.
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+            adapters.remove(this);
+            devices.remove(this);
+        }
+
+        /**
+         * Reports that the thing has gone online. Only the first report is taken into account.
+         */
+        public void online() {
+            if (timeToOnline < 0 && !cancelled) {
+                timeToOnline = System.currentTimeMillis() - submitted;
+                logger.info("Thing is online: {}, time-to-online: {} ms", thingUID, timeToOnline);
+            }
+        }
+
+        /**
+         * Returns time (in milliseconds) since the thing was submitted for initialization until it went online
+         * for the first time.
+         * @return time-to-online or -1 if the thing has not been online yet
+         */
+        public long getTimeToOnline() {
+            return timeToOnline;
+        }
+
+        private synchronized boolean run() {
+            if (cancelled || started) {
+                return false;
+            }
+            started = true;
+            logger.debug("Initializing thing: {}, waited: {} ms", thingUID, System.currentTimeMillis() - submitted);
+            try {
+                initialization.run();
+            } catch (Exception ex) {
+                logger.error("Could not initialize thing: {}", thingUID, ex);
+            }
+            return true;
+        }
+    }
+
+}
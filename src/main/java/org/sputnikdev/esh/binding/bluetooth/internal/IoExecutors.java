@@ -0,0 +1,256 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executors for blocking bluetooth I/O (e.g. reading characteristics, setting aliases). Each adapter gets its own
+ * bounded executor so that a stalled adapter does not starve other adapters, neither the shared ESH thread pools.
+ * Executors are bounded by the number of threads and the queue capacity, tasks that do not fit are rejected
+ * (and counted), they are normally retried on the next polling cycle.
+ *
+ * <p>If enabled and supported by JVM, virtual threads are used instead of a thread pool, in this case the number
+ * of threads and the queue capacity limit the number of concurrently submitted tasks.
+ *
+ * @author Vlad Kolotov
+ */
+public class IoExecutors {
+
+    private static final long KEEP_ALIVE = 60;
+    // available since Java 21, invoked reflectively so that the binding runs on older JVMs
+    private static final String NEW_VIRTUAL_THREAD_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+
+    private Logger logger = LoggerFactory.getLogger(IoExecutors.class);
+
+    private final int threads;
+    private final int queueCapacity;
+    private final boolean virtualThreads;
+    private final Map<String, AdapterExecutor> executors = new ConcurrentHashMap<>();
+    // rejects all tasks, used once the executors are shut down
+    private final AdapterExecutor closed;
+    private volatile boolean shutdown;
+
+    /**
+     * Creates I/O executors.
+     * @param threads number of threads per adapter
+     * @param queueCapacity maximum number of pending tasks per adapter
+     * @param virtualThreads use virtual threads if supported by JVM
+     */
+    public IoExecutors(int threads, int queueCapacity, boolean virtualThreads) {
+        this.threads = Math.max(threads, 1);
+        this.queueCapacity = Math.max(queueCapacity, 0);
+        this.virtualThreads = virtualThreads && isVirtualThreadsSupported();
+        if (virtualThreads && !this.virtualThreads) {
+            logger.info("Virtual threads are not supported by JVM, falling back to thread pools");
+        }
+        ExecutorService closedService = Executors.newSingleThreadExecutor();
+        closedService.shutdown();
+        closed = new AdapterExecutor("closed", closedService, 0);
+    }
+
+    /**
+     * Returns an executor for the given adapter, the executor is created if it does not exist.
+     * Once the executors are shut down, an executor that rejects all tasks is returned.
+     * @param adapterAddress adapter address
+     * @return I/O executor
+     */
+    public AdapterExecutor getExecutor(String adapterAddress) {
+        if (shutdown) {
+            // late callbacks of disposed handlers, all their tasks are rejected
+            return closed;
+        }
+        AdapterExecutor executor = executors.computeIfAbsent(adapterAddress, this::createExecutor);
+        if (shutdown) {
+            // shut down concurrently, the executor might have been created after all executors were shut down
+            executors.remove(adapterAddress, executor);
+            executor.shutdown();
+            return closed;
+        }
+        return executor;
+    }
+
+    /**
+     * Returns all created executors.
+     * @return executors by adapter address
+     */
+    public Map<String, AdapterExecutor> getExecutors() {
+        return Collections.unmodifiableMap(executors);
+    }
+
+    /**
+     * Returns total number of rejected tasks.
+     * @return number of rejected tasks
+     */
+    public long getRejected() {
+        return executors.values().stream().mapToLong(AdapterExecutor::getRejected).sum();
+    }
+
+    /**
+     * Returns true if virtual threads are used.
+     * @return true if virtual threads are used
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Shuts down all executors, running tasks get interrupted.
+     */
+    public void shutdown() {
+        shutdown = true;
+        executors.values().forEach(AdapterExecutor::shutdown);
+        executors.clear();
+    }
+
+    private AdapterExecutor createExecutor(String adapterAddress) {
+        ExecutorService executorService = virtualThreads ? newVirtualThreadExecutor() : null;
+        boolean virtual = executorService != null;
+        if (!virtual) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)), new IoThreadFactory(adapterAddress),
+                    new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            executorService = pool;
+        }
+        logger.debug("Creating I/O executor: {} / {}", adapterAddress, virtual ? "virtual" : threads);
+        return new AdapterExecutor(adapterAddress, executorService, virtual ? threads + queueCapacity : 0);
+    }
+
+    private static boolean isVirtualThreadsSupported() {
+        // Java 19 and 20 have the method, but it fails unless preview features are enabled
+        ExecutorService executorService = newVirtualThreadExecutor();
+        if (executorService != null) {
+            executorService.shutdown();
+            return true;
+        }
+        return false;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod(NEW_VIRTUAL_THREAD_EXECUTOR);
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LoggerFactory.getLogger(IoExecutors.class).debug("Could not create virtual thread executor: {}",
+                    ex.toString());
+            return null;
+        }
+    }
+
+    /**
+     * A bounded executor of an adapter.
+     */
+    public final class AdapterExecutor implements Executor {
+
+        private final String adapterAddress;
+        private final ExecutorService executorService;
+        // limits number of concurrent tasks for virtual threads, null for thread pools
+        private final Semaphore permits;
+        private final LongAdder rejected = new LongAdder();
+
+        private AdapterExecutor(String adapterAddress, ExecutorService executorService, int permits) {
+            this.adapterAddress = adapterAddress;
+            this.executorService = executorService;
+            this.permits = permits > 0 ? new Semaphore(permits) : null;
+        }
+
+        /**
+         * Submits a task. If the executor is saturated, the task is rejected and counted.
+         * @param task a task
+         */
+        @Override
+        public void execute(Runnable task) {
+            try {
+                if (permits == null) {
+                    executorService.execute(task);
+                } else if (permits.tryAcquire()) {
+                    try {
+                        executorService.execute(() -> {
+                            try {
+                                task.run();
+                            } finally {
+                                permits.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException ex) {
+                        permits.release();
+                        throw ex;
+                    }
+                } else {
+                    throw new RejectedExecutionException();
+                }
+            } catch (RejectedExecutionException ex) {
+                rejected.increment();
+                logger.debug("I/O executor is saturated, a task has been rejected: {}", adapterAddress);
+            }
+        }
+
+        /**
+         * Returns number of pending (queued) tasks.
+         * @return queue depth
+         */
+        public int getQueueDepth() {
+            if (executorService instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executorService).getQueue().size();
+            }
+            return 0;
+        }
+
+        /**
+         * Returns number of tasks being executed.
+         * @return number of active tasks
+         */
+        public int getActive() {
+            if (executorService instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executorService).getActiveCount();
+            }
+            return permits != null ? threads + queueCapacity - permits.availablePermits() : 0;
+        }
+
+        /**
+         * Returns number of rejected tasks.
+         * @return number of rejected tasks
+         */
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        private void shutdown() {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static final class IoThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private IoThreadFactory(String adapterAddress) {
+            name = "bluetooth-io-" + adapterAddress + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
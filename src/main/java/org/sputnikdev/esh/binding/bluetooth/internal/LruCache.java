@@ -0,0 +1,162 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * A thread-safe bounded cache which evicts the least recently used entries once its capacity is exceeded.
+ * Cache hits and misses are counted so that efficiency of the cache can be monitored.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ *
+ * @author Vlad Kolotov
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final Map<K, V> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new cache that holds up to the given number of entries.
+     * @param capacity maximum number of entries
+     */
+    public LruCache(int capacity) {
+        this.capacity = capacity;
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached value or null if there is no value cached for the key.
+     * @param key a key
+     * @return cached value or null
+     */
+    public V get(K key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Returns a cached value or computes a new one if it is missing. The mapping function is invoked
+     * outside of the cache lock, therefore it can be invoked more than once for the same key under contention.
+     * Null values returned by the mapping function are not cached.
+     * @param key a key
+     * @param mappingFunction a function to compute a missing value
+     * @return cached or computed value
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V value = get(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Puts a value into the cache.
+     * @param key a key
+     * @param value a value
+     */
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    /**
+     * Removes a value from the cache.
+     * @param key a key
+     */
+    public void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes all entries that satisfy the given predicate.
+     * @param filter a predicate which returns true for entries to be removed
+     */
+    public void removeIf(BiPredicate<? super K, ? super V> filter) {
+        synchronized (entries) {
+            entries.entrySet().removeIf(entry -> filter.test(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns a snapshot of cached values.
+     * @return cached values
+     */
+    public List<V> values() {
+        synchronized (entries) {
+            return new ArrayList<>(entries.values());
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns number of cached entries.
+     * @return number of cached entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns maximum number of entries.
+     * @return cache capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns number of cache hits.
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns number of cache misses.
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+}
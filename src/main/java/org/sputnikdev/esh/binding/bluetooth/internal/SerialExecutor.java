@@ -0,0 +1,293 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lightweight serial executor (actor mailbox) on top of a shared executor. Tasks are processed one at a time
+ * in submission order, callers (e.g. transport threads) are never blocked by task processing. The mailbox is bounded,
+ * once its capacity is reached, droppable tasks (value updates that are superseded by the next update, see
+ * {@link #executeDroppable(Runnable)}) are handled according to the {@link OverflowPolicy}. Other tasks
+ * (e.g. lifecycle events) are never dropped, they are always accepted even if the mailbox is full.
+ *
+ * <p>The mailbox can be paused (pending tasks are discarded and new tasks are rejected) and resumed,
+ * so that a thing handler can be disposed and initialized again.
+ *
+ * <p>Metrics: current and maximum mailbox depth, number of processed and dropped tasks.
+ *
+ * @author Vlad Kolotov
+ */
+public class SerialExecutor implements Executor {
+
+    public enum OverflowPolicy {
+        /**
+         * The oldest pending droppable task is dropped to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * The new task is dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * The new task is run by the calling thread, ordering of tasks is not guaranteed in this case.
+         */
+        CALLER_RUNS
+    }
+
+    // number of tasks processed in a row before the mailbox yields its thread to other mailboxes
+    private static final int BATCH_SIZE = 32;
+
+    private Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private final String name;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    // guarded by "mailbox", the capacity check and the insertion must be atomic
+    private final Deque<Task> mailbox = new ArrayDeque<>();
+    private boolean paused;
+    // updated under the lock, but read without it
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a serial executor.
+     * @param name name of the mailbox (for logging)
+     * @param executor a shared executor to process tasks
+     * @param capacity mailbox capacity
+     * @param overflowPolicy overflow policy
+     */
+    public SerialExecutor(String name, Executor executor, int capacity, OverflowPolicy overflowPolicy) {
+        this.name = name;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Submits a task which must not be dropped (e.g. a lifecycle event). The task is accepted even if
+     * the mailbox is full.
+     * @param task a task
+     */
+    @Override
+    public void execute(Runnable task) {
+        submit(new Task(task, false, null));
+    }
+
+    /**
+     * Submits a task which can be dropped if the mailbox is full (see {@link OverflowPolicy}), e.g. a value update
+     * which is superseded by the next update.
+     * @param task a task
+     */
+    public void executeDroppable(Runnable task) {
+        executeDroppable(task, null);
+    }
+
+    /**
+     * Submits a task which can be dropped (see {@link #executeDroppable(Runnable)}), the callback is notified
+     * if the task gets dropped or discarded instead of being run.
+     * @param task a task
+     * @param onDropped a callback which is run by the thread that drops the task
+     */
+    public void executeDroppable(Runnable task, Runnable onDropped) {
+        submit(new Task(task, true, onDropped));
+    }
+
+    /**
+     * Discards all pending tasks and rejects new ones until the mailbox is resumed.
+     */
+    public void pause() {
+        List<Task> discarded;
+        synchronized (mailbox) {
+            paused = true;
+            discarded = new ArrayList<>(mailbox);
+            mailbox.clear();
+            depth.set(0);
+        }
+        discarded.forEach(Task::dropped);
+    }
+
+    /**
+     * Starts accepting new tasks again.
+     */
+    public void resume() {
+        synchronized (mailbox) {
+            paused = false;
+        }
+    }
+
+    /**
+     * Checks whether the mailbox is paused (tasks are rejected).
+     * @return true if the mailbox is paused
+     */
+    public boolean isPaused() {
+        synchronized (mailbox) {
+            return paused;
+        }
+    }
+
+    /**
+     * Returns number of pending tasks.
+     * @return mailbox depth
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Returns maximum number of pending tasks observed.
+     * @return maximum mailbox depth
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * Returns number of processed tasks.
+     * @return number of processed tasks
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * Returns number of tasks dropped due to mailbox overflow.
+     * @return number of dropped tasks
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void submit(Task task) {
+        boolean callerRuns = false;
+        // callbacks of dropped tasks are run outside of the lock
+        Task dropped = null;
+        synchronized (mailbox) {
+            if (paused) {
+                dropped = task;
+            } else if (task.droppable && mailbox.size() >= capacity) {
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        drop();
+                        dropped = task;
+                        break;
+                    case CALLER_RUNS:
+                        callerRuns = true;
+                        break;
+                    case DROP_OLDEST:
+                    default:
+                        dropped = dropOldest();
+                        if (dropped == null) {
+                            // only tasks that must not be dropped are pending
+                            drop();
+                            dropped = task;
+                        }
+                }
+            }
+            if (!callerRuns && dropped != task) {
+                mailbox.add(task);
+                depth.set(mailbox.size());
+                maxDepth.accumulateAndGet(mailbox.size(), Math::max);
+            }
+        }
+        if (dropped != null) {
+            dropped.dropped();
+        }
+        if (callerRuns) {
+            run(task.task);
+        } else if (dropped != task) {
+            schedule();
+        }
+    }
+
+    private Task dropOldest() {
+        for (Iterator<Task> iterator = mailbox.iterator(); iterator.hasNext();) {
+            Task task = iterator.next();
+            if (task.droppable) {
+                iterator.remove();
+                drop();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Task task;
+                synchronized (mailbox) {
+                    task = mailbox.poll();
+                    depth.set(mailbox.size());
+                }
+                if (task == null) {
+                    break;
+                }
+                run(task.task);
+            }
+        } finally {
+            scheduled.set(false);
+            // tasks might have been added after the last poll
+            boolean pending;
+            synchronized (mailbox) {
+                pending = !mailbox.isEmpty();
+            }
+            if (pending) {
+                schedule();
+            }
+        }
+    }
+
+    private void run(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception ex) {
+            logger.error("Task has failed: {}", name, ex);
+        }
+        processed.increment();
+    }
+
+    private void drop() {
+        dropped.increment();
+        logger.debug("Mailbox is full, a task has been dropped: {} / {}", name, overflowPolicy);
+    }
+
+    private static final class Task {
+
+        private final Runnable task;
+        private final boolean droppable;
+        private final Runnable onDropped;
+
+        private Task(Runnable task, boolean droppable, Runnable onDropped) {
+            this.task = task;
+            this.droppable = droppable;
+            this.onDropped = onDropped;
+        }
+
+        private void dropped() {
+            if (onDropped != null) {
+                onDropped.run();
+            }
+        }
+    }
+
+}
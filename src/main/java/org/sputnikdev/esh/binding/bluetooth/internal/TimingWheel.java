@@ -0,0 +1,305 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A hashed timing wheel which drives periodic jobs of the binding (e.g. channel sync tasks) from a single thread.
+ * Scheduling and cancellation of a job are O(1). Jobs that are due are dispatched to the executor one by one,
+ * so that a slow job neither holds up the wheel thread nor other jobs. The wheel resolution is one tick
+ * ({@link #getTickDuration()}), jobs never run earlier than scheduled, but can run up to one tick later.
+ * Time is measured with a monotonic clock ({@link System#nanoTime()}), wall clock adjustments do not affect the wheel.
+ *
+ * <p>Metrics: number of scheduled jobs (queue depth) and lag of the last tick (how late the wheel thread woke up).
+ *
+ * @author Vlad Kolotov
+ */
+public class TimingWheel {
+
+    private Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickDuration;
+    private final long tickNanos;
+    private final LongSupplier clock;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+    private final Queue<Job> newJobs = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong tickLag = new AtomicLong();
+    private final AtomicLong maxTickLag = new AtomicLong();
+    private volatile Thread worker;
+    private long startTime;
+    private long tick;
+
+    /**
+     * Creates a timing wheel.
+     * @param tickDuration duration of a tick in milliseconds
+     * @param ticksPerWheel number of buckets (rounded up to the nearest power of two)
+     * @param executor executor to run jobs
+     */
+    TimingWheel(long tickDuration, int ticksPerWheel, Executor executor) {
+        this(tickDuration, ticksPerWheel, executor, System::nanoTime);
+    }
+
+    /**
+     * Creates a timing wheel driven by the given clock.
+     * @param tickDuration duration of a tick in milliseconds
+     * @param ticksPerWheel number of buckets (rounded up to the nearest power of two)
+     * @param executor executor to run jobs
+     * @param clock monotonic clock in nanoseconds
+     */
+    TimingWheel(long tickDuration, int ticksPerWheel, Executor executor, LongSupplier clock) {
+        this.tickDuration = tickDuration;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.clock = clock;
+        this.startTime = clock.getAsLong();
+        int size = Integer.highestOneBit(Math.max(ticksPerWheel, 2) - 1) << 1;
+        wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        mask = size - 1;
+        this.executor = executor;
+    }
+
+    /**
+     * Schedules a job to be run periodically with a fixed delay.
+     * @param task a task
+     * @param initialDelay initial delay
+     * @param period period between runs
+     * @param unit time unit of the delay and period
+     * @return a handle which can be used to cancel the job
+     */
+    public Job scheduleWithFixedDelay(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        Job job = new Job(task, unit.toNanos(period));
+        job.deadline = clock.getAsLong() + unit.toNanos(initialDelay);
+        newJobs.add(job);
+        depth.incrementAndGet();
+        return job;
+    }
+
+    /**
+     * Returns number of scheduled (not cancelled) jobs.
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Returns how late (in milliseconds) the last tick was processed.
+     * @return last tick lag
+     */
+    public long getTickLag() {
+        return tickLag.get();
+    }
+
+    /**
+     * Returns maximum tick lag (in milliseconds) since the wheel was started.
+     * @return maximum tick lag
+     */
+    public long getMaxTickLag() {
+        return maxTickLag.get();
+    }
+
+    /**
+     * Returns duration of a tick in milliseconds.
+     * @return tick duration
+     */
+    public long getTickDuration() {
+        return tickDuration;
+    }
+
+    synchronized void start() {
+        if (worker == null) {
+            startTime = clock.getAsLong();
+            tick = 0;
+            worker = new Thread(this::run, "bluetooth-timing-wheel");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Processes the next tick if it is due. Only the wheel thread (or a test driving the wheel manually
+     * when the wheel is not started) may call this method.
+     * @return true if the tick has been processed, false if it is not due yet
+     */
+    boolean tick() {
+        long deadline = startTime + (tick + 1) * tickNanos;
+        long lag = clock.getAsLong() - deadline;
+        if (lag < 0) {
+            return false;
+        }
+        tickLag.set(TimeUnit.NANOSECONDS.toMillis(lag));
+        maxTickLag.accumulateAndGet(TimeUnit.NANOSECONDS.toMillis(lag), Math::max);
+
+        transferNewJobs();
+        Bucket bucket = wheel[(int) (tick & mask)];
+        for (Job job : bucket.expire(deadline)) {
+            try {
+                executor.execute(job::execute);
+            } catch (RejectedExecutionException ex) {
+                logger.warn("Periodic job has been rejected, it will be retried in next tick");
+                newJobs.add(job);
+            }
+        }
+        tick++;
+        return true;
+    }
+
+    private void run() {
+        Thread current = Thread.currentThread();
+        while (worker == current) {
+            long sleep = startTime + (tick + 1) * tickNanos - clock.getAsLong();
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            tick();
+        }
+    }
+
+    private void transferNewJobs() {
+        Job job;
+        while ((job = newJobs.poll()) != null) {
+            if (!job.cancelled) {
+                schedule(job);
+            }
+        }
+    }
+
+    private void schedule(Job job) {
+        long ticks = Math.max((job.deadline - startTime + tickNanos - 1) / tickNanos - 1, tick);
+        job.rounds = (ticks - tick) / wheel.length;
+        wheel[(int) (ticks & mask)].add(job);
+    }
+
+    /**
+     * A doubly linked list of jobs, only accessed by the wheel thread.
+     */
+    private final class Bucket {
+
+        private Job head;
+        private Job tail;
+
+        private void add(Job job) {
+            if (head == null) {
+                head = job;
+                tail = job;
+            } else {
+                tail.next = job;
+                job.prev = tail;
+                tail = job;
+            }
+        }
+
+        private void remove(Job job) {
+            if (job.prev != null) {
+                job.prev.next = job.next;
+            } else {
+                head = job.next;
+            }
+            if (job.next != null) {
+                job.next.prev = job.prev;
+            } else {
+                tail = job.prev;
+            }
+            job.prev = null;
+            job.next = null;
+        }
+
+        private List<Job> expire(long deadline) {
+            List<Job> due = new ArrayList<>();
+            Job job = head;
+            while (job != null) {
+                Job next = job.next;
+                if (job.cancelled) {
+                    remove(job);
+                } else if (job.rounds <= 0 && job.deadline <= deadline) {
+                    remove(job);
+                    due.add(job);
+                } else {
+                    job.rounds--;
+                }
+                job = next;
+            }
+            return due;
+        }
+    }
+
+    /**
+     * A periodic job scheduled in the wheel.
+     */
+    public final class Job {
+
+        private final Runnable task;
+        private final long period;
+        private volatile boolean cancelled;
+        private long deadline;
+        private long rounds;
+        private Job prev;
+        private Job next;
+
+        private Job(Runnable task, long period) {
+            this.task = task;
+            this.period = period;
+        }
+
+        /**
+         * Cancels the job. The job is lazily removed from the wheel on the next visit of its bucket.
+         */
+        public synchronized void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                depth.decrementAndGet();
+            }
+        }
+
+        /**
+         * Checks whether the job is cancelled.
+         * @return true if the job is cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void execute() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Exception ex) {
+                logger.warn("Periodic job has failed: {}", ex.getMessage(), ex);
+            }
+            if (!cancelled) {
+                deadline = clock.getAsLong() + period;
+                newJobs.add(this);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonic counter. Counters are striped ({@link LongAdder}), so that they can be updated
+ * from many threads at once without contention.
+ *
+ * @author Vlad Kolotov
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() { }
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Increments the counter by the given value.
+     * @param value a value to add
+     */
+    public void add(long value) {
+        count.add(value);
+    }
+
+    /**
+     * Returns current value of the counter.
+     * @return current value
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+}
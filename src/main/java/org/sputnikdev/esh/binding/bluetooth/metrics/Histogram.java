@@ -0,0 +1,64 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations (in microseconds) with fixed exponential buckets: bucket N holds values
+ * which are less than 2^N microseconds (the last bucket holds all larger values). Recording a value is
+ * a couple of atomic increments, no allocations.
+ *
+ * @author Vlad Kolotov
+ */
+public final class Histogram {
+
+    static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    Histogram() { }
+
+    /**
+     * Records a duration.
+     * @param micros duration in microseconds
+     */
+    public void record(long micros) {
+        long value = Math.max(micros, 0);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Records time elapsed since the given moment.
+     * @param startNanos a moment obtained from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Returns a snapshot of the histogram.
+     * @return histogram snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        long[] values = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            values[i] = buckets.get(i);
+        }
+        return new HistogramSnapshot(values, count.sum(), sum.sum(), max.get());
+    }
+
+    static int bucket(long value) {
+        return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKETS - 1);
+    }
+
+}
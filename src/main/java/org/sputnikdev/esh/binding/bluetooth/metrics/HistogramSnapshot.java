@@ -0,0 +1,124 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a {@link Histogram}. Percentiles are approximated by upper bounds of the buckets.
+ *
+ * @author Vlad Kolotov
+ */
+public final class HistogramSnapshot {
+
+    static final HistogramSnapshot EMPTY = new HistogramSnapshot(new long[Histogram.BUCKETS], 0, 0, 0);
+
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+        this.buckets = buckets;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Returns number of recorded values.
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns sum of recorded values (in microseconds).
+     * @return sum of recorded values
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns maximum recorded value (in microseconds).
+     * @return maximum value
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns mean of recorded values (in microseconds).
+     * @return mean value
+     */
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * Returns an approximate percentile (in microseconds), i.e. upper bound of the bucket where the percentile falls
+     * (but never more than the maximum recorded value).
+     * @param percentile percentile, e.g. 0.95
+     * @return approximate percentile
+     */
+    public long getPercentile(double percentile) {
+        long total = Arrays.stream(buckets).sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(getUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns number of values in each bucket.
+     * @return bucket counts
+     */
+    public long[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * Returns upper bound (exclusive, in microseconds) of the given bucket.
+     * @param bucket bucket index
+     * @return upper bound of the bucket, {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getUpperBound(int bucket) {
+        return bucket < Histogram.BUCKETS - 1 ? 1L << bucket : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns a snapshot which contains values recorded since the previous snapshot of the same histogram.
+     * Maximum value is not known for the difference, therefore the maximum of this snapshot is used.
+     * @param previous a previous snapshot of the same histogram
+     * @return difference between snapshots
+     */
+    public HistogramSnapshot minus(HistogramSnapshot previous) {
+        long[] difference = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            difference[i] = buckets[i] - previous.buckets[i];
+        }
+        return new HistogramSnapshot(difference, count - previous.count, sum - previous.sum, max);
+    }
+
+    /**
+     * Returns a snapshot which contains values of both snapshots.
+     * @param other another snapshot
+     * @return merged snapshot
+     */
+    public HistogramSnapshot merge(HistogramSnapshot other) {
+        long[] merged = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            merged[i] = buckets[i] + other.buckets[i];
+        }
+        return new HistogramSnapshot(merged, count + other.count, sum + other.sum, Math.max(max, other.max));
+    }
+
+}
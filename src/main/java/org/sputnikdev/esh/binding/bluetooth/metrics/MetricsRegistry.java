@@ -0,0 +1,158 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of the binding metrics (counters, histograms and gauges) grouped by scopes (adapters and devices).
+ * Metrics are updated on hot paths (notifications, advertisements, state updates), therefore updating is
+ * lock-free and allocation-free, all the aggregation work is done when a snapshot is taken.
+ *
+ * <p>The registry is published as an OSGi service so that other components can consume snapshots.
+ *
+ * @author Vlad Kolotov
+ */
+public class MetricsRegistry {
+
+    public static final String NOTIFICATIONS = "notifications";
+    public static final String ADVERTISEMENTS = "advertisements";
+    public static final String STATE_UPDATES = "state-updates";
+    public static final String PARSE_TIME = "parse-time";
+    public static final String PARSE_ERRORS = "parse-errors";
+    public static final String READS = "reads";
+    public static final String READ_TIME = "read-time";
+    public static final String READ_ERRORS = "read-errors";
+    public static final String WRITES = "writes";
+    public static final String WRITE_TIME = "write-time";
+    public static final String WRITE_ERRORS = "write-errors";
+    public static final String AUTHENTICATION_TIME = "authentication-time";
+    public static final String AUTHENTICATION_ERRORS = "authentication-errors";
+    public static final String OPERATIONS_STARTED = "operations-started";
+    public static final String OPERATIONS_FINISHED = "operations-finished";
+    public static final String CONNECTIONS = "connections";
+    public static final String DISCONNECTIONS = "disconnections";
+    public static final String DISCOVERED_ADAPTERS = "discovered-adapters";
+    public static final String DISCOVERED_DEVICES = "discovered-devices";
+    public static final String LOST_DEVICES = "lost-devices";
+    public static final String SCHEDULER_QUEUE_DEPTH = "scheduler-queue-depth";
+    public static final String SCHEDULER_TICK_LAG = "scheduler-tick-lag-ms";
+    public static final String SCHEDULER_MAX_TICK_LAG = "scheduler-max-tick-lag-ms";
+
+    public static final String ADAPTER_SCOPE = "adapter:";
+    public static final String DEVICE_SCOPE = "device:";
+    public static final String SCHEDULER_SCOPE = "scheduler";
+
+    private final Map<String, MetricsScope> scopes = new ConcurrentHashMap<>();
+    private final Tracer tracer;
+
+    /**
+     * Creates a registry with tracing disabled.
+     */
+    public MetricsRegistry() {
+        this(0, 1);
+    }
+
+    /**
+     * Creates a registry.
+     * @param tracingSampling 1 of N payloads are traced, zero disables tracing (see {@link Tracer})
+     * @param tracingBufferSize number of recent traces to keep
+     */
+    public MetricsRegistry(int tracingSampling, int tracingBufferSize) {
+        // the tracing scope is created by the first sampled trace, so that it is not reported if tracing is disabled
+        tracer = new Tracer(() -> scope(Tracer.SCOPE), tracingSampling, tracingBufferSize);
+    }
+
+    /**
+     * Returns a scope, the scope is created if it does not exist.
+     * @param name scope name
+     * @return metrics scope
+     */
+    public MetricsScope scope(String name) {
+        MetricsScope scope = scopes.get(name);
+        return scope != null ? scope : scopes.computeIfAbsent(name, MetricsScope::new);
+    }
+
+    /**
+     * Returns metrics scope of an adapter.
+     * @param adapterAddress adapter address
+     * @return adapter metrics
+     */
+    public MetricsScope adapter(String adapterAddress) {
+        return scope(getAdapterScope(adapterAddress));
+    }
+
+    /**
+     * Returns metrics scope of a device. Devices are identified by their URL (adapter and device address),
+     * so that the same device seen by different adapters is accounted separately.
+     * @param deviceURL device URL
+     * @return device metrics
+     */
+    public MetricsScope device(URL deviceURL) {
+        return scope(getDeviceScope(deviceURL));
+    }
+
+    /**
+     * Returns payload tracer.
+     * @return tracer
+     */
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Removes a scope and all its metrics. The scope is marked as removed (see {@link MetricsScope#isRemoved()}),
+     * so that its holders can resolve the scope again.
+     * @param name scope name
+     */
+    public void remove(String name) {
+        MetricsScope scope = scopes.remove(name);
+        if (scope != null) {
+            scope.markRemoved();
+        }
+    }
+
+    /**
+     * Takes a snapshot of all metrics.
+     * @return metrics snapshot
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, Map<String, Long>> counters = new HashMap<>();
+        Map<String, Map<String, HistogramSnapshot>> histograms = new HashMap<>();
+        Map<String, Map<String, Long>> gauges = new HashMap<>();
+        scopes.forEach((name, scope) -> {
+            Map<String, Long> scopeCounters = new HashMap<>();
+            scope.getCounters().forEach((metric, counter) -> scopeCounters.put(metric, counter.getCount()));
+            counters.put(name, Collections.unmodifiableMap(scopeCounters));
+            Map<String, HistogramSnapshot> scopeHistograms = new HashMap<>();
+            scope.getHistograms().forEach((metric, histogram) -> scopeHistograms.put(metric, histogram.snapshot()));
+            histograms.put(name, Collections.unmodifiableMap(scopeHistograms));
+            Map<String, Long> scopeGauges = new HashMap<>();
+            scope.getGauges().forEach((metric, gauge) -> scopeGauges.put(metric, gauge.getAsLong()));
+            gauges.put(name, Collections.unmodifiableMap(scopeGauges));
+        });
+        return new MetricsSnapshot(System.currentTimeMillis(), counters, histograms, gauges);
+    }
+
+    /**
+     * Returns scope name of an adapter.
+     * @param adapterAddress adapter address
+     * @return scope name
+     */
+    public static String getAdapterScope(String adapterAddress) {
+        return ADAPTER_SCOPE + adapterAddress;
+    }
+
+    /**
+     * Returns scope name of a device.
+     * @param deviceURL device URL
+     * @return scope name
+     */
+    public static String getDeviceScope(URL deviceURL) {
+        return DEVICE_SCOPE + deviceURL.getDeviceURL().copyWithProtocol(null);
+    }
+
+}
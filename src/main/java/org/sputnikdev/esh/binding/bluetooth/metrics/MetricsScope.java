@@ -0,0 +1,90 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A named group of metrics, e.g. metrics of a device or an adapter. Metrics are created on first use,
+ * except gauges which are registered by components that own the measured values.
+ * A scope that has been removed from the registry is marked as removed, so that its holders can resolve
+ * the scope again instead of counting into a scope that is no longer reported.
+ *
+ * @author Vlad Kolotov
+ */
+public final class MetricsScope {
+
+    private final String name;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private volatile boolean removed;
+
+    MetricsScope(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns name of the scope.
+     * @return scope name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a counter, the counter is created if it does not exist.
+     * @param metric metric name
+     * @return counter
+     */
+    public Counter counter(String metric) {
+        Counter counter = counters.get(metric);
+        return counter != null ? counter : counters.computeIfAbsent(metric, key -> new Counter());
+    }
+
+    /**
+     * Returns a histogram, the histogram is created if it does not exist.
+     * @param metric metric name
+     * @return histogram
+     */
+    public Histogram histogram(String metric) {
+        Histogram histogram = histograms.get(metric);
+        return histogram != null ? histogram : histograms.computeIfAbsent(metric, key -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge, a value that is read when a snapshot is taken (e.g. a queue depth).
+     * A gauge with the same name is replaced.
+     * @param metric metric name
+     * @param value value supplier, it must be cheap and thread-safe
+     */
+    public void gauge(String metric, LongSupplier value) {
+        gauges.put(metric, value);
+    }
+
+    /**
+     * Checks whether the scope has been removed from the registry.
+     * @return true if the scope has been removed
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    void markRemoved() {
+        removed = true;
+    }
+
+    Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    Map<String, LongSupplier> getGauges() {
+        return Collections.unmodifiableMap(gauges);
+    }
+
+}
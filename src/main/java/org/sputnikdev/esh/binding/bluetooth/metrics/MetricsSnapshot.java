@@ -0,0 +1,100 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of all metrics of the binding grouped by scopes.
+ *
+ * @author Vlad Kolotov
+ */
+public final class MetricsSnapshot {
+
+    private final long timestamp;
+    private final Map<String, Map<String, Long>> counters;
+    private final Map<String, Map<String, HistogramSnapshot>> histograms;
+    private final Map<String, Map<String, Long>> gauges;
+
+    MetricsSnapshot(long timestamp, Map<String, Map<String, Long>> counters,
+                    Map<String, Map<String, HistogramSnapshot>> histograms, Map<String, Map<String, Long>> gauges) {
+        this.timestamp = timestamp;
+        this.counters = counters;
+        this.histograms = histograms;
+        this.gauges = gauges;
+    }
+
+    /**
+     * Returns time when the snapshot was taken (milliseconds since epoch).
+     * @return snapshot timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns names of scopes.
+     * @return scope names
+     */
+    public Set<String> getScopes() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    /**
+     * Returns counters of a scope.
+     * @param scope scope name
+     * @return counter values by metric names
+     */
+    public Map<String, Long> getCounters(String scope) {
+        return counters.getOrDefault(scope, Collections.emptyMap());
+    }
+
+    /**
+     * Returns histograms of a scope.
+     * @param scope scope name
+     * @return histogram snapshots by metric names
+     */
+    public Map<String, HistogramSnapshot> getHistograms(String scope) {
+        return histograms.getOrDefault(scope, Collections.emptyMap());
+    }
+
+    /**
+     * Returns gauges of a scope.
+     * @param scope scope name
+     * @return gauge values by metric names
+     */
+    public Map<String, Long> getGauges(String scope) {
+        return gauges.getOrDefault(scope, Collections.emptyMap());
+    }
+
+    /**
+     * Returns value of a counter.
+     * @param scope scope name
+     * @param metric metric name
+     * @return counter value or zero if the counter does not exist
+     */
+    public long getCounter(String scope, String metric) {
+        return getCounters(scope).getOrDefault(metric, 0L);
+    }
+
+    /**
+     * Returns value of a gauge.
+     * @param scope scope name
+     * @param metric metric name
+     * @return gauge value or zero if the gauge does not exist
+     */
+    public long getGauge(String scope, String metric) {
+        return getGauges(scope).getOrDefault(metric, 0L);
+    }
+
+    /**
+     * Returns snapshot of a histogram.
+     * @param scope scope name
+     * @param metric metric name
+     * @return histogram snapshot, an empty snapshot if the histogram does not exist
+     */
+    public HistogramSnapshot getHistogram(String scope, String metric) {
+        return getHistograms(scope).getOrDefault(metric, HistogramSnapshot.EMPTY);
+    }
+
+}
@@ -0,0 +1,199 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sputnikdev.bluetooth.URL;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically exports metrics of the {@link MetricsRegistry} in Prometheus text format into a file, so that
+ * they can be scraped (e.g. by node exporter textfile collector or served by a web server).
+ *
+ * <p>Metrics are rendered from registry snapshots on a scheduler thread, the bluetooth hot path only updates
+ * counters and histograms as usual. The file is replaced atomically, so that scrapers never see partial content.
+ *
+ * <p>Counters are exported as {@code bluetooth_<metric>_total}, gauges as {@code bluetooth_<metric>},
+ * histograms (microseconds) as Prometheus histograms {@code bluetooth_<metric>_microseconds}.
+ * Scopes are exported as labels: {@code adapter} for adapter scopes, {@code device} and {@code adapter}
+ * for device scopes, {@code scope} for any other scopes. Adapter scopes aggregate metrics of their
+ * devices, therefore they are exported under a distinct name ({@code bluetooth_adapter_<metric>...}), so that
+ * summing a device metric across all series does not count each event twice.
+ *
+ * @author Vlad Kolotov
+ */
+public class PrometheusExporter {
+
+    private static final String PREFIX = "bluetooth_";
+    private static final String ADAPTER_PREFIX = PREFIX + "adapter_";
+
+    private Logger logger = LoggerFactory.getLogger(PrometheusExporter.class);
+
+    private final MetricsRegistry registry;
+    private final Path file;
+    // reused between exports, exports never overlap
+    private final StringBuilder buffer = new StringBuilder();
+    private ScheduledFuture<?> exportTask;
+
+    /**
+     * Creates an exporter.
+     * @param registry metrics registry
+     * @param file a file to export metrics to
+     */
+    public PrometheusExporter(MetricsRegistry registry, Path file) {
+        this.registry = registry;
+        this.file = file;
+    }
+
+    /**
+     * Starts exporting metrics periodically.
+     * @param scheduler scheduler
+     * @param interval export interval in seconds
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, int interval) {
+        stop();
+        logger.info("Exporting metrics to: {} every {}s", file, interval);
+        exportTask = scheduler.scheduleWithFixedDelay(this::export, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops exporting metrics.
+     */
+    public synchronized void stop() {
+        if (exportTask != null) {
+            exportTask.cancel(false);
+            exportTask = null;
+        }
+    }
+
+    /**
+     * Exports metrics into the file.
+     */
+    public void export() {
+        Path temp = null;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                buffer.setLength(0);
+                render(registry.snapshot(), buffer);
+                writer.append(buffer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            logger.warn("Could not export metrics: {} : {}", file, ex.getMessage());
+        } catch (RuntimeException ex) {
+            // an exception would cancel the scheduled export silently
+            logger.warn("Could not export metrics: {}", file, ex);
+        } finally {
+            deleteTempFile(temp);
+        }
+    }
+
+    /**
+     * Renders a metrics snapshot in Prometheus text format.
+     * @param snapshot metrics snapshot
+     * @param output output
+     */
+    static void render(MetricsSnapshot snapshot, StringBuilder output) {
+        Map<String, List<String>> counters = new TreeMap<>();
+        Map<String, List<String>> histograms = new TreeMap<>();
+        Map<String, List<String>> gauges = new TreeMap<>();
+        snapshot.getScopes().stream().sorted().forEach(scope -> {
+            String labels = getLabels(scope);
+            String prefix = scope.startsWith(MetricsRegistry.ADAPTER_SCOPE) ? ADAPTER_PREFIX : PREFIX;
+            snapshot.getCounters(scope).forEach((metric, value) ->
+                    counters.computeIfAbsent(prefix + sanitize(metric) + "_total", key -> new ArrayList<>())
+                            .add("{" + labels + "} " + value));
+            snapshot.getGauges(scope).forEach((metric, value) ->
+                    gauges.computeIfAbsent(prefix + sanitize(metric), key -> new ArrayList<>())
+                            .add("{" + labels + "} " + value));
+            snapshot.getHistograms(scope).forEach((metric, histogram) -> {
+                String name = prefix + sanitize(metric) + "_microseconds";
+                histograms.computeIfAbsent(name, key -> new ArrayList<>())
+                        .add(renderHistogram(name, labels, histogram));
+            });
+        });
+        counters.forEach((name, samples) -> {
+            output.append("# TYPE ").append(name).append(" counter\n");
+            samples.forEach(sample -> output.append(name).append(sample).append('\n'));
+        });
+        gauges.forEach((name, samples) -> {
+            output.append("# TYPE ").append(name).append(" gauge\n");
+            samples.forEach(sample -> output.append(name).append(sample).append('\n'));
+        });
+        histograms.forEach((name, samples) -> {
+            output.append("# TYPE ").append(name).append(" histogram\n");
+            samples.forEach(output::append);
+        });
+    }
+
+    private void deleteTempFile(Path temp) {
+        if (temp != null) {
+            try {
+                // nothing to delete if the file has been moved
+                Files.deleteIfExists(temp);
+            } catch (IOException ex) {
+                logger.warn("Could not delete temporary file: {} : {}", temp, ex.getMessage());
+            }
+        }
+    }
+
+    private static String renderHistogram(String name, String labels, HistogramSnapshot histogram) {
+        StringBuilder output = new StringBuilder();
+        long[] buckets = histogram.getBuckets();
+        // the last bucket is unbounded, it is only rendered as "+Inf"
+        int last = buckets.length - 2;
+        while (last > 0 && buckets[last] == 0) {
+            last--;
+        }
+        long cumulative = 0;
+        for (int i = 0; i <= last; i++) {
+            cumulative += buckets[i];
+            // bucket upper bounds are exclusive, Prometheus "le" is inclusive (values are whole microseconds)
+            output.append(name).append("_bucket{").append(labels).append(",le=\"")
+                    .append(HistogramSnapshot.getUpperBound(i) - 1).append("\"} ").append(cumulative).append('\n');
+        }
+        // the total is derived from the buckets rather than the histogram count, which is updated separately
+        // and can be behind the buckets under concurrent recording, so that "+Inf" is never less than other buckets
+        long total = Arrays.stream(buckets).sum();
+        output.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(total).append('\n');
+        output.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSum()).append('\n');
+        output.append(name).append("_count{").append(labels).append("} ").append(total).append('\n');
+        return output.toString();
+    }
+
+    private static String getLabels(String scope) {
+        if (scope.startsWith(MetricsRegistry.ADAPTER_SCOPE)) {
+            return "adapter=\"" + escape(scope.substring(MetricsRegistry.ADAPTER_SCOPE.length())) + "\"";
+        } else if (scope.startsWith(MetricsRegistry.DEVICE_SCOPE)) {
+            URL url = new URL(scope.substring(MetricsRegistry.DEVICE_SCOPE.length()));
+            return "device=\"" + escape(url.getDeviceAddress()) + "\",adapter=\"" + escape(url.getAdapterAddress())
+                    + "\"";
+        }
+        return "scope=\"" + escape(scope) + "\"";
+    }
+
+    private static String sanitize(String metric) {
+        return metric.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
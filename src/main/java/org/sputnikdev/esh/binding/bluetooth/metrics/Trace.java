@@ -0,0 +1,138 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A trace of a single payload (e.g. a notification) on its way from the governor callback to item states.
+ * Time spent in each processing {@link Stage} is accumulated, stages can be entered multiple times
+ * (e.g. channel lookup for each field of a characteristic).
+ *
+ * <p>Payloads that are not sampled get {@link #NONE}, all its methods do nothing.
+ *
+ * @author Vlad Kolotov
+ */
+public final class Trace {
+
+    /**
+     * Processing stages.
+     */
+    public enum Stage {
+        /**
+         * From the governor callback till the payload gets processed (e.g. waiting in a mailbox).
+         */
+        DISPATCH,
+        /**
+         * Parsing of the payload.
+         */
+        PARSE,
+        /**
+         * Looking up channels.
+         */
+        LOOKUP,
+        /**
+         * Publishing states.
+         */
+        UPDATE_STATE
+    }
+
+    /**
+     * A trace of payloads that are not sampled.
+     */
+    public static final Trace NONE = new Trace(null, null, false);
+
+    private final String source;
+    private final String event;
+    private final boolean sampled;
+    private final long timestamp;
+    private final long received;
+    private final long[] stages = new long[Stage.values().length];
+    private long last;
+    private long total;
+
+    Trace(String source, String event, boolean sampled) {
+        this.source = source;
+        this.event = event;
+        this.sampled = sampled;
+        timestamp = sampled ? System.currentTimeMillis() : 0;
+        received = sampled ? System.nanoTime() : 0;
+        last = received;
+    }
+
+    /**
+     * Adds time elapsed since the end of the previous stage to the given stage.
+     * @param stage processing stage
+     */
+    public void stage(Stage stage) {
+        if (sampled) {
+            long now = System.nanoTime();
+            stages[stage.ordinal()] += now - last;
+            last = now;
+        }
+    }
+
+    /**
+     * Checks whether the payload is sampled.
+     * @return true if the payload is sampled
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Returns the traced object, e.g. characteristic URL.
+     * @return trace source
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns traced event, e.g. notification.
+     * @return traced event
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns time when the payload was received.
+     * @return timestamp (milliseconds since epoch)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns time spent in the given stage.
+     * @param stage processing stage
+     * @return time in microseconds
+     */
+    public long getTime(Stage stage) {
+        return TimeUnit.NANOSECONDS.toMicros(stages[stage.ordinal()]);
+    }
+
+    /**
+     * Returns total time from the governor callback till the end of processing.
+     * @return time in microseconds
+     */
+    public long getTotalTime() {
+        return TimeUnit.NANOSECONDS.toMicros(total);
+    }
+
+    void finish() {
+        total = System.nanoTime() - received;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(Instant.ofEpochMilli(timestamp)).append(' ').append(event).append(' ').append(source)
+                .append(" total=").append(getTotalTime()).append("us");
+        Arrays.stream(Stage.values()).forEach(stage ->
+                builder.append(' ').append(stage.name().toLowerCase()).append('=').append(getTime(stage)).append("us"));
+        return builder.toString();
+    }
+
+}
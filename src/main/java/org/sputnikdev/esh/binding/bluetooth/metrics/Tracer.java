@@ -0,0 +1,106 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * An opt-in tracer of payloads (notifications, advertisements, RSSI updates) on their way from governor callbacks
+ * to item states. Payloads are sampled (1 of N), time spent in each processing stage of sampled payloads
+ * is aggregated in histograms (the "tracing" scope of the {@link MetricsRegistry}), and the most recent traces
+ * are kept in a ring buffer.
+ *
+ * <p>When tracing is disabled, or a payload is not sampled, {@link Trace#NONE} is returned, i.e. there are
+ * no allocations and no shared state is touched.
+ *
+ * @author Vlad Kolotov
+ */
+public class Tracer {
+
+    public static final String SCOPE = "tracing";
+    public static final String TOTAL_TIME = "total-time";
+
+    private final Supplier<MetricsScope> metrics;
+    private final int sampling;
+    private final AtomicReferenceArray<Trace> buffer;
+    private final AtomicLong position = new AtomicLong();
+
+    /**
+     * Creates a tracer.
+     * @param metrics metrics scope to aggregate stage latencies, resolved once a sampled trace is finished
+     * @param sampling 1 of N payloads are traced, zero disables tracing
+     * @param bufferSize number of recent traces to keep
+     */
+    Tracer(Supplier<MetricsScope> metrics, int sampling, int bufferSize) {
+        this.metrics = metrics;
+        this.sampling = Math.max(sampling, 0);
+        buffer = new AtomicReferenceArray<>(Math.max(bufferSize, 1));
+    }
+
+    /**
+     * Starts a trace of a payload. Must be called when the payload is received (from the governor callback).
+     * @param source traced object, e.g. characteristic URL
+     * @param event traced event, e.g. notification
+     * @return a new trace if the payload is sampled, otherwise {@link Trace#NONE}
+     */
+    public Trace start(Object source, String event) {
+        if (sampling == 0 || sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) != 0) {
+            return Trace.NONE;
+        }
+        return new Trace(String.valueOf(source), event, true);
+    }
+
+    /**
+     * Finishes a trace, the trace gets aggregated and stored in the ring buffer.
+     * @param trace a trace
+     */
+    public void finish(Trace trace) {
+        if (!trace.isSampled()) {
+            return;
+        }
+        trace.finish();
+        MetricsScope scope = metrics.get();
+        for (Trace.Stage stage : Trace.Stage.values()) {
+            scope.histogram(getMetric(stage)).record(trace.getTime(stage));
+        }
+        scope.histogram(TOTAL_TIME).record(trace.getTotalTime());
+        buffer.set((int) (position.getAndIncrement() % buffer.length()), trace);
+    }
+
+    /**
+     * Checks whether tracing is enabled.
+     * @return true if tracing is enabled
+     */
+    public boolean isEnabled() {
+        return sampling > 0;
+    }
+
+    /**
+     * Returns the most recent traces, the oldest first.
+     * @return recent traces
+     */
+    public List<Trace> getTraces() {
+        List<Trace> traces = new ArrayList<>(buffer.length());
+        long end = position.get();
+        for (long i = Math.max(end - buffer.length(), 0); i < end; i++) {
+            Trace trace = buffer.get((int) (i % buffer.length()));
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        return traces;
+    }
+
+    /**
+     * Returns name of the histogram (in the "tracing" scope) that aggregates the given stage.
+     * @param stage processing stage
+     * @return metric name
+     */
+    public static String getMetric(Trace.Stage stage) {
+        return stage.name().toLowerCase().replace('_', '-') + "-time";
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.sputnikdev.esh.binding.bluetooth.capture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureRecorderTest {
+
+    private static final URL DEVICE = new URL("/11:22:33:44:55:66/12:34:56:78:90:12");
+    private static final URL SERVICE = DEVICE.copyWithService("0000180f-0000-1000-8000-00805f9b34fb");
+    private static final URL CHARACTERISTIC = DEVICE.copyWith("0000180f-0000-1000-8000-00805f9b34fb",
+            "00002a19-0000-1000-8000-00805f9b34fb");
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("bluetooth", ".capture");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testNotRecording() {
+        CaptureRecorder recorder = new CaptureRecorder(10);
+        recorder.record(CaptureRecord.Type.NOTIFICATION, CHARACTERISTIC, new byte[] {1});
+        recorder.recordRSSI(DEVICE, (short) -60);
+
+        assertFalse(recorder.isRecording());
+        assertNull(recorder.getFile());
+        assertEquals(0, recorder.getRecorded());
+        assertEquals(0, recorder.getDropped());
+    }
+
+    @Test
+    public void testRecording() throws IOException {
+        CaptureRecorder recorder = new CaptureRecorder(10);
+        recorder.start(file);
+        assertTrue(recorder.isRecording());
+        assertEquals(file, recorder.getFile());
+
+        byte[] notification = {1, 2, 3};
+        recorder.record(CaptureRecord.Type.SERVICE_DATA, SERVICE, new byte[] {100});
+        recorder.recordRSSI(DEVICE, (short) -75);
+        recorder.record(CaptureRecord.Type.NOTIFICATION, CHARACTERISTIC, notification);
+        // payloads are copied
+        notification[0] = 0;
+        recorder.stop();
+
+        assertFalse(recorder.isRecording());
+        assertEquals(3, recorder.getRecorded());
+        assertEquals(0, recorder.getDropped());
+
+        try (CaptureReader reader = new CaptureReader(new BufferedInputStream(Files.newInputStream(file)))) {
+            CaptureRecord record = reader.read();
+            assertEquals(CaptureRecord.Type.SERVICE_DATA, record.getType());
+            assertEquals(SERVICE, record.getURL());
+            assertArrayEquals(new byte[] {100}, record.getPayload());
+            long timestamp = record.getTimestamp();
+
+            record = reader.read();
+            assertEquals(CaptureRecord.Type.RSSI, record.getType());
+            assertEquals(DEVICE, record.getURL());
+            assertEquals(-75, record.getRSSI());
+            assertTrue(record.getTimestamp() >= timestamp);
+
+            record = reader.read();
+            assertEquals(CaptureRecord.Type.NOTIFICATION, record.getType());
+            assertEquals(CHARACTERISTIC, record.getURL());
+            assertArrayEquals(new byte[] {1, 2, 3}, record.getPayload());
+
+            assertNull(reader.read());
+        }
+    }
+
+    @Test
+    public void testWriteFailure() throws InterruptedException {
+        CaptureRecorder recorder = new CaptureRecorder(10);
+        recorder.start(file, new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("No space left on device");
+            }
+        });
+        assertTrue(recorder.isRecording());
+
+        recorder.record(CaptureRecord.Type.NOTIFICATION, CHARACTERISTIC, new byte[] {1});
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (recorder.isRecording() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+
+        // a failed recording does not pretend to be recording
+        assertFalse(recorder.isRecording());
+        assertNull(recorder.getFile());
+        assertEquals(0, recorder.getRecorded());
+
+        // and does not prevent a new recording from starting
+        recorder.start(file, new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        });
+        assertTrue(recorder.isRecording());
+        recorder.stop();
+        assertFalse(recorder.isRecording());
+    }
+
+}
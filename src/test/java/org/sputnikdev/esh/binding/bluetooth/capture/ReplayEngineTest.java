@@ -0,0 +1,138 @@
+package org.sputnikdev.esh.binding.bluetooth.capture;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplayEngineTest {
+
+    private static final URL DEVICE_1 = new URL("/11:22:33:44:55:66/12:34:56:78:90:12");
+    private static final URL DEVICE_2 = new URL("/11:22:33:44:55:66/12:34:56:78:90:13");
+    private static final long TIMESTAMP = 1500000000000000L;
+
+    // the engine is driven by a manual clock, sleeping advances the clock
+    private final AtomicLong clock = new AtomicLong();
+    private final List<Long> sleeps = new ArrayList<>();
+
+    @Test
+    public void testReplayMaxSpeed() throws Exception {
+        List<CaptureRecord> records = Arrays.asList(
+                CaptureRecord.rssi(TIMESTAMP, DEVICE_1, (short) -50),
+                CaptureRecord.rssi(TIMESTAMP + 10, DEVICE_2, (short) -60),
+                // out of order timestamps are preserved
+                new CaptureRecord(CaptureRecord.Type.NOTIFICATION, TIMESTAMP + 5, DEVICE_1, new byte[] {1, 2}),
+                CaptureRecord.rssi(TIMESTAMP + 3600_000_000L, DEVICE_1, (short) -70));
+
+        List<CaptureRecord> replayed = new ArrayList<>();
+        assertEquals(4, new ReplayEngine(ReplayEngine.MAX_SPEED, clock::get, sleeps::add)
+                .replay(reader(records), replayed::add));
+        assertTrue(sleeps.isEmpty());
+
+        assertEquals(records.size(), replayed.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).getType(), replayed.get(i).getType());
+            assertEquals(records.get(i).getTimestamp(), replayed.get(i).getTimestamp());
+            assertEquals(records.get(i).getURL(), replayed.get(i).getURL());
+            assertArrayEquals(records.get(i).getPayload(), replayed.get(i).getPayload());
+        }
+    }
+
+    @Test
+    public void testReplayAccelerated() throws Exception {
+        List<CaptureRecord> records = Arrays.asList(
+                CaptureRecord.rssi(TIMESTAMP, DEVICE_1, (short) -50),
+                CaptureRecord.rssi(TIMESTAMP + 1000_000L, DEVICE_1, (short) -60),
+                CaptureRecord.rssi(TIMESTAMP + 2000_000L, DEVICE_1, (short) -70));
+
+        List<Long> replayed = new ArrayList<>();
+        assertEquals(3, new ReplayEngine(5, clock::get, this::sleep)
+                .replay(reader(records), record -> replayed.add(clock.get())));
+        // one second of the recorded traffic replayed five times faster
+        assertEquals(Arrays.asList(0L, TimeUnit.MILLISECONDS.toNanos(200), TimeUnit.MILLISECONDS.toNanos(400)),
+                replayed);
+        assertEquals(2, sleeps.size());
+    }
+
+    @Test
+    public void testReplayRealTimeCatchesUp() throws Exception {
+        List<CaptureRecord> records = Arrays.asList(
+                CaptureRecord.rssi(TIMESTAMP, DEVICE_1, (short) -50),
+                CaptureRecord.rssi(TIMESTAMP + 1000L, DEVICE_1, (short) -60),
+                CaptureRecord.rssi(TIMESTAMP + 2000L, DEVICE_1, (short) -70));
+
+        // the consumer is slower than the recorded traffic, records which are already due are not delayed
+        assertEquals(3, new ReplayEngine(ReplayEngine.REAL_TIME, clock::get, this::sleep)
+                .replay(reader(records), record -> clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(5))));
+        assertTrue(sleeps.isEmpty());
+    }
+
+    @Test
+    public void testInterrupted() throws Exception {
+        List<CaptureRecord> records = Arrays.asList(
+                CaptureRecord.rssi(TIMESTAMP, DEVICE_1, (short) -50),
+                CaptureRecord.rssi(TIMESTAMP, DEVICE_1, (short) -60));
+
+        List<CaptureRecord> replayed = new ArrayList<>();
+        Thread.currentThread().interrupt();
+        try {
+            new ReplayEngine(ReplayEngine.REAL_TIME, clock::get, this::sleep).replay(reader(records), replayed::add);
+            fail();
+        } catch (InterruptedException ignore) {
+            // records which are already due are not delayed, but the replay is stopped anyway
+        }
+        assertTrue(replayed.isEmpty());
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testTruncatedLog() throws Exception {
+        byte[] log = write(Arrays.asList(
+                CaptureRecord.rssi(TIMESTAMP, DEVICE_1, (short) -50),
+                CaptureRecord.rssi(TIMESTAMP + 10, DEVICE_1, (short) -60)));
+        byte[] truncated = Arrays.copyOf(log, log.length - 1);
+
+        assertEquals(1, new ReplayEngine(ReplayEngine.MAX_SPEED).replay(
+                new CaptureReader(new ByteArrayInputStream(truncated)), record -> { }));
+        assertEquals(0, new ReplayEngine(ReplayEngine.MAX_SPEED).replay(
+                new CaptureReader(new ByteArrayInputStream(new byte[0])), record -> { }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSpeed() {
+        new ReplayEngine(-1);
+    }
+
+    private void sleep(long nanos) {
+        sleeps.add(nanos);
+        clock.addAndGet(nanos);
+    }
+
+    private static CaptureReader reader(List<CaptureRecord> records) throws IOException {
+        return new CaptureReader(new ByteArrayInputStream(write(records)));
+    }
+
+    private static byte[] write(List<CaptureRecord> records) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (CaptureWriter writer = new CaptureWriter(output)) {
+            for (CaptureRecord record : records) {
+                writer.write(record);
+            }
+        }
+        return output.toByteArray();
+    }
+
+}
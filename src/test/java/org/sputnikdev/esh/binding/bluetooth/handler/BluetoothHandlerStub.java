@@ -0,0 +1,73 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import org.eclipse.smarthome.core.thing.Channel;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.eclipse.smarthome.core.types.State;
+import org.sputnikdev.bluetooth.manager.DeviceGovernor;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContext;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A thing handler which runs outside of the framework (no thing handler callback), so that channel handlers
+ * can be driven directly by benchmarks and test harnesses. States are counted and the last one is kept
+ * instead of being published.
+ *
+ * @author Vlad Kolotov
+ */
+class BluetoothHandlerStub extends BluetoothHandler<DeviceGovernor> {
+
+    private long updates;
+    private State lastState;
+
+    BluetoothHandlerStub(Thing thing, BluetoothContext bluetoothContext) {
+        super(thing, bluetoothContext);
+    }
+
+    /**
+     * Adds channels to the thing.
+     * @param channels channels
+     */
+    void addChannels(Collection<Channel> channels) {
+        List<Channel> merged = new ArrayList<>(thing.getChannels());
+        channels.stream().filter(Objects::nonNull).forEach(merged::add);
+        thing = ThingBuilder.create(thing.getThingTypeUID(), thing.getUID())
+                .withBridge(thing.getBridgeUID()).withChannels(merged).build();
+    }
+
+    long getUpdates() {
+        return updates;
+    }
+
+    State getLastState() {
+        return lastState;
+    }
+
+    @Override
+    protected void updateState(String channelID, State state) {
+        updated(state);
+    }
+
+    @Override
+    protected void updateState(ChannelUID channelUID, State state) {
+        updated(state);
+    }
+
+    @Override
+    protected void updateThing(Thing thing) {
+        this.thing = thing;
+    }
+
+    private void updated(State state) {
+        updates++;
+        lastState = state;
+        countMetric(MetricsRegistry.STATE_UPDATES);
+    }
+
+}
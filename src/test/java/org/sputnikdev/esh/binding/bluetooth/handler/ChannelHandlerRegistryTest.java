@@ -0,0 +1,94 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ChannelHandlerRegistryTest {
+
+    private static final ChannelUID RSSI = new ChannelUID("bluetooth:ble:device1:rssi");
+    private static final ChannelUID ONLINE = new ChannelUID("bluetooth:ble:device1:online");
+    private static final ChannelUID BATTERY = new ChannelUID("bluetooth:ble:device1:battery-level");
+
+    private final ChannelHandlerRegistry registry = new ChannelHandlerRegistry();
+    private final ChannelHandler first = mock(ChannelHandler.class);
+    private final ChannelHandler second = mock(ChannelHandler.class);
+
+    @Test
+    public void testRegister() {
+        assertTrue(registry.register(RSSI, first));
+        assertFalse(registry.register(ONLINE, first));
+        assertTrue(registry.register(BATTERY, second));
+
+        assertEquals(first, registry.find(RSSI));
+        assertEquals(first, registry.find(ONLINE));
+        assertEquals(second, registry.find(BATTERY));
+        assertEquals(new HashSet<>(Arrays.asList(RSSI, ONLINE)), registry.getChannels(first));
+        assertEquals(2, registry.getHandlers().size());
+    }
+
+    @Test
+    public void testAdd() {
+        assertTrue(registry.add(first));
+        assertFalse(registry.add(first));
+        assertFalse(registry.register(RSSI, first));
+        assertEquals(Collections.singleton(RSSI), registry.getChannels(first));
+        assertTrue(registry.getChannels(second).isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        registry.register(RSSI, first);
+        registry.register(BATTERY, second);
+
+        Map<ChannelHandler, Set<ChannelUID>> removed = registry.removeIf(handler -> handler == first);
+        assertEquals(Collections.singletonMap(first, Collections.singleton(RSSI)), removed);
+        assertNull(registry.find(RSSI));
+        assertEquals(second, registry.find(BATTERY));
+        assertEquals(1, registry.getHandlers().size());
+    }
+
+    @Test
+    public void testReRegisteredChannelIsNotRemoved() {
+        registry.register(RSSI, first);
+        registry.register(RSSI, second);
+
+        registry.removeIf(handler -> handler == first);
+        assertEquals(second, registry.find(RSSI));
+    }
+
+    @Test
+    public void testReRegisteredChannelIsMoved() {
+        registry.register(RSSI, first);
+        registry.register(ONLINE, first);
+        registry.register(RSSI, second);
+
+        assertEquals(Collections.singleton(ONLINE), registry.getChannels(first));
+        assertEquals(Collections.singleton(RSSI), registry.getChannels(second));
+        assertEquals(Collections.singleton(ONLINE), registry.snapshot().get(first));
+        assertEquals(Collections.singletonMap(first, Collections.singleton(ONLINE)),
+                registry.removeIf(handler -> handler == first));
+    }
+
+    @Test
+    public void testSnapshot() {
+        registry.register(RSSI, first);
+        Map<ChannelHandler, Set<ChannelUID>> snapshot = registry.snapshot();
+        registry.register(ONLINE, first);
+
+        assertEquals(Collections.singleton(RSSI), snapshot.get(first));
+        assertEquals(2, registry.getChannels(first).size());
+    }
+
+}
@@ -0,0 +1,122 @@
+package org.sputnikdev.esh.binding.bluetooth.handler;
+
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothBindingConfig;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContext;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContextStub;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the GATT-to-State hot path: a notification payload is parsed, channels are looked up and states are
+ * updated (against a stub thing handler, so that the framework is not involved). Payloads are recorded from common
+ * characteristics. Run with {@code -prof gc} to see allocation rate, e.g.:
+ * {@code mvn verify -P benchmark -Dbenchmark.include="GattChannelHandlerBenchmark -prof gc"}.
+ *
+ * @author Vlad Kolotov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GattChannelHandlerBenchmark {
+
+    private static final URL DEVICE_URL = new URL("/12:34:56:78:90:AB/11:22:33:44:55:66");
+
+    @Param({"battery", "temperature", "heart-rate", "xiaomi-miflora"})
+    private String characteristic;
+
+    private BluetoothContext context;
+    private BluetoothHandlerStub handler;
+    private CharacteristicHandler characteristicHandler;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        Payload recorded = Payload.valueOf(characteristic.toUpperCase().replace('-', '_'));
+        payload = recorded.payload;
+
+        BluetoothBindingConfig config = new BluetoothBindingConfig();
+        context = BluetoothContextStub.create(config);
+        ThingUID bridgeUID = new ThingUID(BluetoothBindingConstants.THING_TYPE_ADAPTER, "1234567890AB");
+        Thing thing = ThingBuilder.create(BluetoothBindingConstants.THING_TYPE_BLE,
+                new ThingUID(BluetoothBindingConstants.THING_TYPE_BLE, bridgeUID, "112233445566"))
+                .withBridge(bridgeUID).build();
+        handler = new BluetoothHandlerStub(thing, context);
+        characteristicHandler = new CharacteristicHandler(handler,
+                DEVICE_URL.copyWith(recorded.service, recorded.characteristic),
+                EnumSet.of(CharacteristicAccessType.READ, CharacteristicAccessType.NOTIFY));
+        handler.addChannels(characteristicHandler.buildChannels());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.getIoExecutors().shutdown();
+    }
+
+    /**
+     * The whole notification path including metrics and tracing.
+     * @return number of updated states
+     */
+    @Benchmark
+    public long changed() {
+        characteristicHandler.changed(payload);
+        return handler.getUpdates();
+    }
+
+    /**
+     * Parsing, channel lookup and state updates only.
+     * @return number of updated states
+     */
+    @Benchmark
+    public long dataChanged() {
+        characteristicHandler.dataChanged(payload, false);
+        return handler.getUpdates();
+    }
+
+    private enum Payload {
+        BATTERY("0000180f-0000-1000-8000-00805f9b34fb", "00002a19-0000-1000-8000-00805f9b34fb",
+                new byte[] {0x5A}),
+        // flags (celsius, no timestamp, no type), IEEE-11073 FLOAT 36.6
+        TEMPERATURE("00001809-0000-1000-8000-00805f9b34fb", "00002a1c-0000-1000-8000-00805f9b34fb",
+                new byte[] {0x00, 0x6E, 0x01, 0x00, (byte) 0xFF}),
+        // flags (uint8 heart rate, RR intervals present), 72 bpm, RR interval
+        HEART_RATE("0000180d-0000-1000-8000-00805f9b34fb", "00002a37-0000-1000-8000-00805f9b34fb",
+                new byte[] {0x10, 0x48, 0x00, 0x04}),
+        // temperature 24.2, light 348 lux, moisture 26%, fertility 94
+        XIAOMI_MIFLORA("00001204-0000-1000-8000-00805f9b34fb", "00001a01-0000-1000-8000-00805f9b34fb",
+                new byte[] {(byte) 0xF2, 0x00, 0x00, 0x5C, 0x01, 0x00, 0x00, 0x1A, 0x5E, 0x00,
+                    0x00, 0x00, 0x00, 0x00, 0x00, 0x00});
+
+        private final String service;
+        private final String characteristic;
+        private final byte[] payload;
+
+        Payload(String service, String characteristic, byte[] payload) {
+            this.service = service;
+            this.characteristic = characteristic;
+            this.payload = payload;
+        }
+    }
+
+}
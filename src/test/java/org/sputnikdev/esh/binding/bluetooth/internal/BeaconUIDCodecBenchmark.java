@@ -0,0 +1,90 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares memoized beacon UID encoding/decoding against the plain conversion (a codec with no cache capacity).
+ * Simulates a discovery burst of devices with random resolvable addresses.
+ *
+ * @author Vlad Kolotov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeaconUIDCodecBenchmark {
+
+    @Param({"64", "512"})
+    private int devices;
+
+    private URL[] urls;
+    private String[] names;
+    private String[] uids;
+    private BeaconUIDCodec cached;
+    private BeaconUIDCodec uncached;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        urls = new URL[devices];
+        names = new String[devices];
+        uids = new String[devices];
+        cached = new BeaconUIDCodec(1024);
+        uncached = new BeaconUIDCodec(0);
+        for (int i = 0; i < devices; i++) {
+            // resolvable private address: two most significant bits are 01
+            StringBuilder address = new StringBuilder(String.format("%02X", 0x40 | random.nextInt(0x40)));
+            for (int j = 0; j < 5; j++) {
+                address.append(':').append(String.format("%02X", random.nextInt(0x100)));
+            }
+            urls[i] = new URL("/12:34:56:78:90:AB/" + address);
+            names[i] = "Beacon " + i;
+            uids[i] = cached.encode(urls[i], names[i]);
+        }
+    }
+
+    @Benchmark
+    public String encodeCached() {
+        int i = next();
+        return cached.encode(urls[i], names[i]);
+    }
+
+    @Benchmark
+    public String encodeUncached() {
+        int i = next();
+        return uncached.encode(urls[i], names[i]);
+    }
+
+    @Benchmark
+    public String decodeCached() {
+        return cached.decode(uids[next()]);
+    }
+
+    @Benchmark
+    public String decodeUncached() {
+        return uncached.decode(uids[next()]);
+    }
+
+    private int next() {
+        index = (index + 1) % devices;
+        return index;
+    }
+
+}
@@ -0,0 +1,42 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class BeaconUIDCodecTest {
+
+    private static final URL BEACON_URL = new URL("/12:34:56:78:90:AB/4C:11:22:33:44:55");
+
+    private final BeaconUIDCodec codec = new BeaconUIDCodec(2);
+
+    @Test
+    public void testEncodeDecode() {
+        String uid = codec.encode(BEACON_URL, "iTag");
+
+        assertEquals(BEACON_URL.copyWithDevice(null, "name", "iTag").getDeviceCompositeAddress(), codec.decode(uid));
+        // the same identity is encoded into the same UID regardless of adapter
+        assertEquals(uid, codec.encode(new URL("/AB:90:78:56:34:12/4C:11:22:33:44:55"), "iTag"));
+        assertFalse(uid.equals(codec.encode(BEACON_URL, "another name")));
+    }
+
+    @Test
+    public void testDecodeNotCached() {
+        String uid = new BeaconUIDCodec(0).encode(BEACON_URL, "iTag");
+
+        assertEquals(BEACON_URL.copyWithDevice(null, "name", "iTag").getDeviceCompositeAddress(), codec.decode(uid));
+    }
+
+    @Test
+    public void testEviction() {
+        String uid = codec.encode(BEACON_URL, "name1");
+        codec.encode(BEACON_URL, "name2");
+        codec.encode(BEACON_URL, "name3");
+
+        // evicted entries are still decoded correctly
+        assertEquals(BEACON_URL.copyWithDevice(null, "name", "name1").getDeviceCompositeAddress(), codec.decode(uid));
+    }
+
+}
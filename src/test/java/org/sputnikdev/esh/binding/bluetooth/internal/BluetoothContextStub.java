@@ -0,0 +1,87 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.common.ThreadPoolManager;
+import org.eclipse.smarthome.core.storage.Storage;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.capture.CaptureRecorder;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Creates bluetooth contexts for benchmarks and test harnesses which run handlers outside of OSGi.
+ * Services which are not needed to process events (initialization ramp, GATT layout storage, timing wheel)
+ * are not created unless handlers need to be initialized (see {@link #createInitializable}).
+ *
+ * @author Vlad Kolotov
+ */
+public final class BluetoothContextStub {
+
+    private static final long TIMING_WHEEL_TICK = 250;
+    private static final int TIMING_WHEEL_SIZE = 512;
+
+    private BluetoothContextStub() { }
+
+    /**
+     * Creates a context with the default GATT parser and no bluetooth manager.
+     * @param config binding config
+     * @return bluetooth context
+     */
+    public static BluetoothContext create(BluetoothBindingConfig config) {
+        return create(null, BluetoothGattParserFactory.getDefault(), config);
+    }
+
+    /**
+     * Creates a context.
+     * @param manager bluetooth manager
+     * @param parser GATT parser
+     * @param config binding config
+     * @return bluetooth context
+     */
+    public static BluetoothContext create(BluetoothManager manager, BluetoothGattParser parser,
+                                          BluetoothBindingConfig config) {
+        return new BluetoothContext(manager, parser, config, null, null, null,
+                new IoExecutors(config.getIoThreads(), config.getIoQueueCapacity(), false),
+                new MetricsRegistry(config.getTracingSampling(), config.getTracingBufferSize()),
+                new CaptureRecorder(config.getCaptureQueueCapacity()));
+    }
+
+    /**
+     * Creates a context with all the services which are needed to initialize handlers: the initialization ramp,
+     * a started timing wheel and GATT layout storage (layouts are not stored). The context must be released by
+     * {@link #dispose(BluetoothContext)}.
+     * @param manager bluetooth manager
+     * @param parser GATT parser
+     * @param config binding config
+     * @return bluetooth context
+     */
+    @SuppressWarnings("unchecked")
+    public static BluetoothContext createInitializable(BluetoothManager manager, BluetoothGattParser parser,
+                                                       BluetoothBindingConfig config) {
+        BluetoothContext context = new BluetoothContext(manager, parser, config,
+                new InitializationRamp(config.getInitializationWaveSize(), config.getInitializationWaveInterval()),
+                new GattLayoutStorage(mock(Storage.class)),
+                new TimingWheel(TIMING_WHEEL_TICK, TIMING_WHEEL_SIZE,
+                        ThreadPoolManager.getPool(BluetoothBindingConstants.BINDING_ID)),
+                new IoExecutors(config.getIoThreads(), config.getIoQueueCapacity(), false),
+                new MetricsRegistry(config.getTracingSampling(), config.getTracingBufferSize()),
+                new CaptureRecorder(config.getCaptureQueueCapacity()));
+        context.getTimingWheel().start();
+        return context;
+    }
+
+    /**
+     * Stops services of a context created by {@link #createInitializable}.
+     * @param context bluetooth context
+     */
+    public static void dispose(BluetoothContext context) {
+        context.getCaptureRecorder().stop();
+        context.getInitializationRamp().dispose();
+        context.getTimingWheel().stop();
+        context.getIoExecutors().shutdown();
+    }
+
+}
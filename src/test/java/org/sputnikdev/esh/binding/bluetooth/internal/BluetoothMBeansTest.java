@@ -0,0 +1,75 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.esh.binding.bluetooth.BluetoothBindingConstants;
+import org.sputnikdev.esh.binding.bluetooth.handler.HandlerDiagnostics;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BluetoothMBeansTest {
+
+    private static final ThingUID THING_UID =
+            new ThingUID(BluetoothBindingConstants.THING_TYPE_BLE, "112233445566");
+
+    private MBeanServer server = MBeanServerFactory.newMBeanServer();
+    private BluetoothMBeans mbeans = new BluetoothMBeans(server);
+    private HandlerDiagnostics diagnostics = mock(HandlerDiagnostics.class);
+    private ObjectName name;
+
+    @Before
+    public void setUp() throws Exception {
+        name = new ObjectName(BluetoothMBeans.DOMAIN + ":type=ble,thing=" + ObjectName.quote(THING_UID.getAsString()));
+    }
+
+    @Test
+    public void testRegisterHandler() throws Exception {
+        when(diagnostics.getChannelHandlerCount()).thenReturn(5);
+
+        mbeans.registerHandler(THING_UID, diagnostics);
+
+        assertTrue(server.isRegistered(name));
+        assertEquals(1, mbeans.getHandlerCount());
+        assertEquals(5, server.getAttribute(name, "ChannelHandlerCount"));
+        server.invoke(name, "poll", new Object[0], new String[0]);
+        verify(diagnostics).poll();
+
+        mbeans.unregisterHandler(THING_UID);
+
+        assertFalse(server.isRegistered(name));
+        assertEquals(0, mbeans.getHandlerCount());
+    }
+
+    @Test
+    public void testReregisterHandler() throws Exception {
+        HandlerDiagnostics recreated = mock(HandlerDiagnostics.class);
+        when(recreated.getChannelHandlerCount()).thenReturn(7);
+
+        mbeans.registerHandler(THING_UID, diagnostics);
+        mbeans.registerHandler(THING_UID, recreated);
+
+        assertEquals(7, server.getAttribute(name, "ChannelHandlerCount"));
+    }
+
+    @Test
+    public void testUnregisterAll() throws Exception {
+        mbeans.registerBinding(mock(BindingDiagnostics.class));
+        mbeans.registerHandler(THING_UID, diagnostics);
+
+        mbeans.unregisterAll();
+
+        assertFalse(server.isRegistered(name));
+        assertFalse(server.isRegistered(new ObjectName(BluetoothMBeans.DOMAIN + ":type=binding")));
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.eclipse.smarthome.core.types.State;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.FieldHolder;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures conversion and addressing functions of {@link BluetoothUtils} which run on every event and discovery
+ * callback. Inputs are realistic: public MAC addresses, random (resolvable) beacon addresses, long GATT UUIDs,
+ * numeric and enumeration fields. This is a baseline for optimisation of the utility class.
+ * Beacon UIDs are cached by {@link BluetoothUtils}, beacon benchmarks cycle through more beacons than the cache
+ * can hold, so that they measure encoding and decoding rather than cache hits; {@code getCachedBeaconUID} and
+ * {@code getCachedBeaconURL} measure the cache hit path.
+ * Run with {@code -prof gc} to see bytes allocated per operation, e.g.:
+ * {@code mvn verify -P benchmark -Dbenchmark.include="BluetoothUtilsBenchmark -prof gc"}.
+ *
+ * @author Vlad Kolotov
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BluetoothUtilsBenchmark {
+
+    private static final int DEVICES = 64;
+    // 4 times more than the beacon UID cache of BluetoothUtils, a least recently used entry is always evicted
+    private static final int BEACONS = 4096;
+    private static final String ADAPTER_ADDRESS = "12:34:56:78:90:AB";
+    private static final String HEART_RATE_SERVICE = "0000180d-0000-1000-8000-00805f9b34fb";
+    private static final String HEART_RATE_MEASUREMENT = "00002a37-0000-1000-8000-00805f9b34fb";
+    private static final String BODY_SENSOR_LOCATION = "00002a38-0000-1000-8000-00805f9b34fb";
+
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+
+    private URL[] deviceURLs;
+    private URL[] fieldURLs;
+    private DiscoveredDevice[] devices;
+    private DiscoveredDevice[] beacons;
+    private Thing[] deviceThings;
+    private Thing[] beaconThings;
+    private Field[] fields;
+    private FieldHolder number;
+    private FieldHolder enumeration;
+    private int index;
+    private int beaconIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        deviceURLs = new URL[DEVICES];
+        fieldURLs = new URL[DEVICES];
+        devices = new DiscoveredDevice[DEVICES];
+        beacons = new DiscoveredDevice[BEACONS];
+        deviceThings = new Thing[DEVICES];
+        beaconThings = new Thing[BEACONS];
+        fields = parser.getFields(HEART_RATE_MEASUREMENT).toArray(new Field[0]);
+        ThingUID bridgeUID = BluetoothUtils.getAdapterUID(new URL(ADAPTER_ADDRESS, null));
+        for (int i = 0; i < DEVICES; i++) {
+            deviceURLs[i] = new URL("/" + ADAPTER_ADDRESS + "/" + randomAddress(random, 0x00));
+            fieldURLs[i] = deviceURLs[i].copyWith(HEART_RATE_SERVICE, HEART_RATE_MEASUREMENT,
+                    fields[i % fields.length].getName());
+            devices[i] = new DiscoveredDevice(deviceURLs[i], "Sensor " + i, null, (short) -70, 0, true);
+            deviceThings[i] = buildThing(BluetoothUtils.getDeviceUID(devices[i]), bridgeUID);
+        }
+        for (int i = 0; i < BEACONS; i++) {
+            // resolvable private address: two most significant bits are 01
+            URL beaconURL = new URL("/" + ADAPTER_ADDRESS + "/" + randomAddress(random, 0x40));
+            beacons[i] = new DiscoveredDevice(beaconURL, "Beacon " + i, null, (short) -80, 0, true);
+            beaconThings[i] = buildThing(BluetoothUtils.getDeviceUID(beacons[i]), bridgeUID);
+        }
+        number = parser.parse(HEART_RATE_MEASUREMENT, new byte[] {0x00, 0x48}).getFieldHolders().stream()
+                .filter(holder -> holder.getField().getFormat().isNumber() && !holder.getField().isFlagField())
+                .findFirst().orElseThrow(IllegalStateException::new);
+        // body sensor location: chest
+        enumeration = parser.parse(BODY_SENSOR_LOCATION, new byte[] {0x01}).getFieldHolders().get(0);
+    }
+
+    @Benchmark
+    public ThingUID getAdapterUID() {
+        return BluetoothUtils.getAdapterUID(deviceURLs[next()]);
+    }
+
+    @Benchmark
+    public ThingUID getDeviceUID() {
+        return BluetoothUtils.getDeviceUID(devices[next()]);
+    }
+
+    @Benchmark
+    public ThingUID getBeaconUID() {
+        return BluetoothUtils.getDeviceUID(beacons[nextBeacon()]);
+    }
+
+    @Benchmark
+    public ThingUID getCachedBeaconUID() {
+        return BluetoothUtils.getDeviceUID(beacons[next()]);
+    }
+
+    @Benchmark
+    public URL getDeviceURL() {
+        return BluetoothUtils.getURL(deviceThings[next()]);
+    }
+
+    @Benchmark
+    public URL getBeaconURL() {
+        return BluetoothUtils.getURL(beaconThings[nextBeacon()]);
+    }
+
+    @Benchmark
+    public URL getCachedBeaconURL() {
+        return BluetoothUtils.getURL(beaconThings[next()]);
+    }
+
+    @Benchmark
+    public String getChannelUID() {
+        return BluetoothUtils.getChannelUID(fieldURLs[next()]);
+    }
+
+    @Benchmark
+    public String encodeFieldID() {
+        return BluetoothUtils.encodeFieldID(fields[next() % fields.length]);
+    }
+
+    @Benchmark
+    public State convertNumber() {
+        return BluetoothUtils.convert(parser, number);
+    }
+
+    @Benchmark
+    public State convertEnumeration() {
+        return BluetoothUtils.convert(parser, enumeration);
+    }
+
+    private int next() {
+        index = (index + 1) % DEVICES;
+        return index;
+    }
+
+    private int nextBeacon() {
+        beaconIndex = (beaconIndex + 1) % BEACONS;
+        return beaconIndex;
+    }
+
+    private static Thing buildThing(ThingUID thingUID, ThingUID bridgeUID) {
+        return ThingBuilder.create(thingUID.getThingTypeUID(), thingUID).withBridge(bridgeUID).build();
+    }
+
+    private static String randomAddress(Random random, int type) {
+        StringBuilder address = new StringBuilder(String.format("%02X", type | random.nextInt(0x40)));
+        for (int i = 0; i < 5; i++) {
+            address.append(':').append(String.format("%02X", random.nextInt(0x100)));
+        }
+        return address.toString();
+    }
+
+}
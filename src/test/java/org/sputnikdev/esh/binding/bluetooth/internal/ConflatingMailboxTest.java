@@ -0,0 +1,91 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConflatingMailboxTest {
+
+    // drain tasks are held until the test runs them
+    private final Queue<Runnable> pool = new LinkedList<>();
+    private final List<Integer> consumed = new ArrayList<>();
+    private final ConflatingMailbox<Integer> mailbox = new ConflatingMailbox<>(pool::add, consumed::add);
+
+    @Test
+    public void testLatestValueWins() {
+        mailbox.offer(1);
+        mailbox.offer(2);
+        mailbox.offer(3);
+        assertEquals(1, pool.size());
+
+        runPool();
+        assertEquals(Arrays.asList(3), consumed);
+        assertEquals(3, mailbox.getReceived());
+        assertEquals(2, mailbox.getConflated());
+    }
+
+    @Test
+    public void testNoConflation() {
+        mailbox.offer(1);
+        runPool();
+        mailbox.offer(2);
+        runPool();
+        assertEquals(Arrays.asList(1, 2), consumed);
+        assertEquals(0, mailbox.getConflated());
+    }
+
+    @Test
+    public void testValueOfferedWhileConsuming() {
+        AtomicReference<ConflatingMailbox<Integer>> holder = new AtomicReference<>();
+        holder.set(new ConflatingMailbox<>(pool::add, value -> {
+            consumed.add(value);
+            if (value == 1) {
+                holder.get().offer(2);
+            }
+        }));
+        holder.get().offer(1);
+        runPool();
+        assertEquals(Arrays.asList(1, 2), consumed);
+    }
+
+    @Test
+    public void testHandlerMailbox() {
+        SerialExecutor handlerMailbox =
+                new SerialExecutor("test", pool::add, 1, SerialExecutor.OverflowPolicy.DROP_NEWEST);
+        ConflatingMailbox<Integer> notifications = new ConflatingMailbox<>(handlerMailbox, consumed::add);
+        // the handler mailbox is full, the drain gets dropped
+        handlerMailbox.executeDroppable(() -> consumed.add(0));
+        notifications.offer(1);
+        runPool();
+        assertEquals(Arrays.asList(0), consumed);
+
+        // the value is not lost, the slot is drained on the next offer
+        notifications.offer(2);
+        runPool();
+        assertEquals(Arrays.asList(0, 2), consumed);
+        assertEquals(1, notifications.getConflated());
+
+        // a paused mailbox (disposed handler) rejects the drain, the slot is drained once the mailbox is resumed
+        handlerMailbox.pause();
+        notifications.offer(3);
+        handlerMailbox.resume();
+        notifications.offer(4);
+        runPool();
+        assertEquals(Arrays.asList(0, 2, 4), consumed);
+    }
+
+    private void runPool() {
+        Runnable drain;
+        while ((drain = pool.poll()) != null) {
+            drain.run();
+        }
+    }
+
+}
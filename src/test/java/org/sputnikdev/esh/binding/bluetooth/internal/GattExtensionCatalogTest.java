@@ -0,0 +1,105 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GattExtensionCatalogTest {
+
+    // the default parser is shared by all tests, so each test uses its own definitions
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+    private Path folder;
+    private File catalogFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("gatt");
+        Files.createDirectories(folder.resolve("characteristic"));
+        Files.createDirectories(folder.resolve("service"));
+        catalogFolder = Files.createTempDirectory("gatt-catalog").toFile();
+    }
+
+    @Test
+    public void testCompileAndLoad() throws Exception {
+        writeCharacteristic("custom.xml", "FFE1", "Level");
+        write("service/custom.xml", "<Service name=\"Custom\" type=\"org.example.custom_service_ffe0\" uuid=\"FFE0\">"
+                + "<Characteristics/></Service>");
+        String hash = GattExtensionCatalog.compile(folder.toString(), catalogFolder);
+        assertEquals(GattExtensionCatalog.computeHash(folder.toString()), hash);
+
+        assertTrue(GattExtensionCatalog.load(parser, catalogFolder, hash));
+        assertTrue(parser.isKnownCharacteristic(toLongUUID("FFE1")));
+        assertEquals("Level", parser.getFields(toLongUUID("FFE1")).get(0).getName());
+        assertTrue(parser.isKnownService(toLongUUID("FFE0")));
+        // standard definitions are still available
+        assertTrue(parser.isKnownCharacteristic("2A19"));
+    }
+
+    @Test
+    public void testOutdatedCatalog() throws Exception {
+        writeCharacteristic("custom.xml", "FFE2", "Level");
+        String hash = GattExtensionCatalog.compile(folder.toString(), catalogFolder);
+
+        writeCharacteristic("custom.xml", "FFE2", "Value");
+        String changed = GattExtensionCatalog.computeHash(folder.toString());
+        assertFalse(hash.equals(changed));
+        assertFalse(GattExtensionCatalog.load(parser, catalogFolder, changed));
+        assertFalse(parser.isKnownCharacteristic(toLongUUID("FFE2")));
+
+        // outdated catalogs are deleted
+        assertEquals(changed, GattExtensionCatalog.compile(folder.toString(), catalogFolder));
+        assertArrayEquals(new String[] {changed}, catalogFolder.list());
+    }
+
+    @Test
+    public void testMalformedDefinition() throws Exception {
+        write("characteristic/custom.xml", "<Characteristic name=\"Custom\" uuid=\"FFE3\"><Value>");
+        try {
+            GattExtensionCatalog.compile(folder.toString(), catalogFolder);
+            fail();
+        } catch (IOException ignore) {
+            // malformed definitions are not compiled
+        }
+        assertEquals(0, catalogFolder.list().length);
+    }
+
+    @Test
+    public void testDefinitionWithoutType() throws Exception {
+        write("characteristic/custom.xml", "<Characteristic name=\"Custom\" uuid=\"FFE4\"/>");
+        try {
+            GattExtensionCatalog.compile(folder.toString(), catalogFolder);
+            fail();
+        } catch (IOException ignore) {
+            // a definition cannot be registered in a catalog without its type
+        }
+        assertEquals(0, catalogFolder.list().length);
+    }
+
+    private void writeCharacteristic(String fileName, String uuid, String field) throws IOException {
+        write("characteristic/" + fileName, "<Characteristic name=\"Custom\" type=\"org.example.custom_"
+                + uuid.toLowerCase() + "\" uuid=\"" + uuid + "\"><Value><Field name=\"" + field + "\">"
+                + "<Requirement>Mandatory</Requirement><Format>uint8</Format></Field></Value></Characteristic>");
+    }
+
+    private void write(String file, String content) throws IOException {
+        Files.write(folder.resolve(file), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String toLongUUID(String uuid) {
+        return "0000" + uuid.toLowerCase() + "-0000-1000-8000-00805f9b34fb";
+    }
+
+}
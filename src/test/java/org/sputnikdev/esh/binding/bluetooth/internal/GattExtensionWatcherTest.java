@@ -0,0 +1,149 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GattExtensionWatcherTest {
+
+    // the default parser is shared by all tests, so each test uses its own definitions
+    private final BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+    private final List<Set<String>> changes = new ArrayList<>();
+    private Path folder;
+    private GattExtensionWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("gatt");
+        Files.createDirectories(folder.resolve("characteristic"));
+        Files.createDirectories(folder.resolve("service"));
+        watcher = new GattExtensionWatcher(folder.toString(), parser, changes::add);
+        watcher.init();
+    }
+
+    @Test
+    public void testReloadLoadsChangedDefinitions() throws Exception {
+        watcher.reload();
+        assertTrue(changes.isEmpty());
+
+        writeCharacteristic("custom.xml", "FFF1", "Level");
+        watcher.reload();
+
+        assertEquals(1, changes.size());
+        assertEquals(Collections.singleton(toLongUUID("FFF1")), changes.get(0));
+        assertTrue(parser.isKnownCharacteristic(toLongUUID("FFF1")));
+        // standard definitions are still available
+        assertTrue(parser.isKnownCharacteristic("2A19"));
+
+        // nothing has changed
+        watcher.reload();
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void testOnlyChangedDefinitionsAreRead() throws Exception {
+        writeCharacteristic("custom.xml", "FFF2", "Level");
+        watcher.reload();
+        // a change which is not visible to the watcher (the same size and modification time)
+        FileTime lastModified = Files.getLastModifiedTime(folder.resolve("characteristic/custom.xml"));
+        writeCharacteristic("custom.xml", "FFF2", "Lever");
+        Files.setLastModifiedTime(folder.resolve("characteristic/custom.xml"), lastModified);
+
+        writeCharacteristic("another.xml", "FFF3", "Level");
+        watcher.reload();
+
+        assertEquals(Collections.singleton(toLongUUID("FFF3")), changes.get(1));
+        assertTrue(parser.isKnownCharacteristic(toLongUUID("FFF3")));
+        assertEquals("Level", parser.getFields(toLongUUID("FFF2")).get(0).getName());
+    }
+
+    @Test
+    public void testChangedDefinition() throws Exception {
+        writeCharacteristic("custom.xml", "FFF4", "Level");
+        watcher.reload();
+        writeCharacteristic("custom.xml", "FFF4", "Value");
+        watcher.reload();
+
+        assertEquals(Collections.singleton(toLongUUID("FFF4")), changes.get(1));
+        assertEquals("Value", parser.getFields(toLongUUID("FFF4")).get(0).getName());
+    }
+
+    @Test
+    public void testServiceDefinition() throws Exception {
+        write("service/custom.xml", "<Service name=\"Custom\" type=\"org.example.custom_service\" uuid=\"FFF0\">"
+                + "<Characteristics/></Service>");
+        watcher.reload();
+
+        assertEquals(Collections.singleton(toLongUUID("FFF0")), changes.get(0));
+        assertTrue(parser.isKnownService(toLongUUID("FFF0")));
+    }
+
+    @Test
+    public void testDeletedDefinition() throws Exception {
+        writeCharacteristic("custom.xml", "FFF5", "Level");
+        watcher.reload();
+
+        Files.delete(folder.resolve("characteristic/custom.xml"));
+        watcher.reload();
+
+        assertEquals(2, changes.size());
+        assertEquals(Collections.singleton(toLongUUID("FFF5")), changes.get(1));
+        // the parser cannot unload definitions, they stay loaded until restart
+        assertTrue(parser.isKnownCharacteristic(toLongUUID("FFF5")));
+    }
+
+    @Test
+    public void testMalformedDefinitionIsRetried() throws Exception {
+        write("characteristic/custom.xml", "<Characteristic name=\"Custom\" uuid=\"FFF6\"><Value>");
+        try {
+            watcher.reload();
+            fail();
+        } catch (IOException ignore) {
+            // half written file
+        }
+        assertTrue(changes.isEmpty());
+
+        writeCharacteristic("custom.xml", "FFF6", "Level");
+        watcher.reload();
+
+        assertEquals(1, changes.size());
+        assertEquals(Collections.singleton(toLongUUID("FFF6")), changes.get(0));
+        assertTrue(parser.isKnownCharacteristic(toLongUUID("FFF6")));
+    }
+
+    private void writeCharacteristic(String fileName, String uuid, String field) throws IOException {
+        write("characteristic/" + fileName, "<Characteristic name=\"Custom\" type=\"org.example.custom_"
+                + uuid.toLowerCase() + "\" uuid=\"" + uuid + "\"><Value><Field name=\"" + field + "\">"
+                + "<Requirement>Mandatory</Requirement><Format>uint8</Format></Field></Value></Characteristic>");
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path path = folder.resolve(file);
+        // the fingerprint is based on modification time and size, making sure the change is visible
+        long lastModified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : 0;
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        if (Files.getLastModifiedTime(path).toMillis() == lastModified) {
+            path.toFile().setLastModified(lastModified + 1000);
+        }
+    }
+
+    private static String toLongUUID(String uuid) {
+        return "0000" + uuid.toLowerCase() + "-0000-1000-8000-00805f9b34fb";
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParser;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.gattparser.spec.Field;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures cold startup cost of loading GATT specifications (standard and custom ones from an extension folder)
+ * and resolving GATT fields of commonly used characteristics: parser loading the extension folder and resolving
+ * fields vs parser registering a compiled catalog ({@link GattExtensionCatalog}) and fields read from
+ * a snapshot ({@link GattSpecificationSnapshot}).
+ * Each measurement runs in a fresh JVM so that class loading and specification parsing are accounted.
+ * The extension folder, the catalog and the snapshot are prepared by a separate JVM (as by a previous binding start),
+ * so that the GATT parser is not loaded before the measurement in either of the benchmarks.
+ *
+ * @author Vlad Kolotov
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class GattSpecificationSnapshotBenchmark {
+
+    private static final int CUSTOM_CHARACTERISTICS = 50;
+    private static final String[] CHARACTERISTICS = {
+        "00002a19-0000-1000-8000-00805f9b34fb",
+        "00002a6e-0000-1000-8000-00805f9b34fb",
+        "00002a6f-0000-1000-8000-00805f9b34fb",
+        "00002a37-0000-1000-8000-00805f9b34fb",
+        "00002a00-0000-1000-8000-00805f9b34fb",
+        "00002a01-0000-1000-8000-00805f9b34fb",
+        "00002a29-0000-1000-8000-00805f9b34fb",
+        "00002a24-0000-1000-8000-00805f9b34fb",
+        "00002a26-0000-1000-8000-00805f9b34fb",
+        "00002a38-0000-1000-8000-00805f9b34fb",
+        // custom characteristics
+        "0000ff00-0000-1000-8000-00805f9b34fb",
+        "0000ff01-0000-1000-8000-00805f9b34fb"
+    };
+
+    @State(Scope.Benchmark)
+    public static class Specifications {
+
+        private Path folder;
+        private String extensionFolder;
+        private File catalogFolder;
+        private File snapshotFile;
+
+        @Setup
+        public void setUp() throws IOException, InterruptedException {
+            folder = Files.createTempDirectory("gatt-benchmark");
+            extensionFolder = folder.resolve("extensions").toString();
+            catalogFolder = folder.resolve("catalog").toFile();
+            snapshotFile = folder.resolve("gatt-specification.snapshot").toFile();
+            Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    GattSpecificationSnapshotBenchmark.class.getName(), folder.toString()).inheritIO().start();
+            if (process.waitFor() != 0) {
+                throw new IllegalStateException("Could not prepare GATT specifications");
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            try (Stream<Path> paths = Files.walk(folder)) {
+                paths.sorted((first, second) -> second.compareTo(first)).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public void parser(Specifications state, Blackhole blackhole) {
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+        parser.loadExtensionsFromFolder(state.extensionFolder);
+        for (String uuid : CHARACTERISTICS) {
+            blackhole.consume(resolve(parser.getFields(uuid)));
+        }
+    }
+
+    @Benchmark
+    public void snapshot(Specifications state, Blackhole blackhole) throws IOException {
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+        if (!GattExtensionCatalog.load(parser, state.catalogFolder,
+                GattExtensionCatalog.computeHash(state.extensionFolder))) {
+            throw new IllegalStateException("Catalog is outdated");
+        }
+        GattSpecificationSnapshot snapshot = GattSpecificationSnapshot.open(state.snapshotFile,
+                GattSpecificationSnapshot.computeHash(state.extensionFolder));
+        for (String uuid : CHARACTERISTICS) {
+            blackhole.consume(snapshot.get(uuid));
+        }
+    }
+
+    /**
+     * Prepares an extension folder with custom GATT definitions, its compiled catalog and a snapshot
+     * of resolved fields.
+     * @param args a folder where GATT specifications are prepared
+     * @throws IOException if GATT specifications cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path folder = Paths.get(args[0]);
+        Path characteristics = Files.createDirectories(folder.resolve("extensions").resolve("characteristic"));
+        for (int i = 0; i < CUSTOM_CHARACTERISTICS; i++) {
+            String uuid = String.format("FF%02X", i);
+            Files.write(characteristics.resolve("custom_" + i + ".xml"), ("<Characteristic name=\"Custom " + i
+                    + "\" type=\"org.example.custom_" + i + "\" uuid=\"" + uuid + "\"><Value>"
+                    + "<Field name=\"Level\"><Requirement>Mandatory</Requirement><Format>uint8</Format></Field>"
+                    + "<Field name=\"Status\"><Requirement>Mandatory</Requirement><Format>uint16</Format></Field>"
+                    + "</Value></Characteristic>").getBytes(StandardCharsets.UTF_8));
+        }
+        String extensionFolder = folder.resolve("extensions").toString();
+        GattExtensionCatalog.compile(extensionFolder, folder.resolve("catalog").toFile());
+
+        BluetoothGattParser parser = BluetoothGattParserFactory.getDefault();
+        parser.loadExtensionsFromFolder(extensionFolder);
+        Map<String, Map<String, FieldSpec>> resolved = new HashMap<>();
+        for (String uuid : CHARACTERISTICS) {
+            resolved.put(uuid, resolve(parser.getFields(uuid)));
+        }
+        GattSpecificationSnapshot.write(folder.resolve("gatt-specification.snapshot").toFile(),
+                GattSpecificationSnapshot.computeHash(extensionFolder), resolved);
+    }
+
+    private static Map<String, FieldSpec> resolve(List<Field> fields) {
+        return fields.stream().collect(Collectors.toMap(BluetoothUtils::encodeFieldID,
+                CharacteristicChannelTypeProvider::toFieldSpec, (first, second) -> first));
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LruCacheTest {
+
+    private final LruCache<String, Integer> cache = new LruCache<>(2);
+
+    @Test
+    public void testEviction() {
+        cache.put("one", 1);
+        cache.put("two", 2);
+        // "one" becomes the most recently used entry
+        assertEquals(Integer.valueOf(1), cache.get("one"));
+        cache.put("three", 3);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("two"));
+        assertEquals(Integer.valueOf(1), cache.get("one"));
+        assertEquals(Integer.valueOf(3), cache.get("three"));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        assertEquals(Integer.valueOf(1), cache.computeIfAbsent("one", key -> 1));
+        assertEquals(Integer.valueOf(1), cache.computeIfAbsent("one", key -> 2));
+        // null values are not cached
+        assertNull(cache.computeIfAbsent("two", key -> null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveIf() {
+        cache.put("one", 1);
+        cache.put("two", 2);
+
+        cache.removeIf((key, value) -> value > 1);
+
+        assertEquals(Arrays.asList(1), cache.values());
+    }
+
+}
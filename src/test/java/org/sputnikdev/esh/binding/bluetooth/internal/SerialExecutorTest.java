@@ -0,0 +1,145 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SerialExecutorTest {
+
+    // drain tasks are held until the test runs them
+    private final Queue<Runnable> pool = new LinkedList<>();
+    private final List<Integer> processed = new ArrayList<>();
+
+    @Test
+    public void testOrdering() {
+        SerialExecutor executor = new SerialExecutor("test", pool::add, 10, SerialExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1, 2, 3);
+        // only one drain task is scheduled at a time
+        assertEquals(1, pool.size());
+        assertEquals(3, executor.getDepth());
+
+        runPool();
+        assertEquals(Arrays.asList(1, 2, 3), processed);
+        assertEquals(0, executor.getDepth());
+        assertEquals(3, executor.getMaxDepth());
+        assertEquals(3, executor.getProcessed());
+    }
+
+    @Test
+    public void testDropOldest() {
+        SerialExecutor executor = new SerialExecutor("test", pool::add, 2, SerialExecutor.OverflowPolicy.DROP_OLDEST);
+        submitDroppable(executor, 1, 2, 3);
+        runPool();
+        assertEquals(Arrays.asList(2, 3), processed);
+        assertEquals(1, executor.getDropped());
+    }
+
+    @Test
+    public void testLifecycleEventsAreNeverDropped() {
+        SerialExecutor executor = new SerialExecutor("test", pool::add, 2, SerialExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1);
+        submitDroppable(executor, 2);
+        // the mailbox is full, but lifecycle events are always accepted
+        submit(executor, 3);
+        assertEquals(3, executor.getDepth());
+        // the oldest droppable task is dropped
+        submitDroppable(executor, 4);
+        runPool();
+        assertEquals(Arrays.asList(1, 3, 4), processed);
+        assertEquals(1, executor.getDropped());
+
+        processed.clear();
+        submit(executor, 5, 6);
+        // only lifecycle events are pending, the new droppable task is dropped
+        submitDroppable(executor, 7);
+        runPool();
+        assertEquals(Arrays.asList(5, 6), processed);
+        assertEquals(2, executor.getDropped());
+    }
+
+    @Test
+    public void testDropNewest() {
+        SerialExecutor executor = new SerialExecutor("test", pool::add, 2, SerialExecutor.OverflowPolicy.DROP_NEWEST);
+        submitDroppable(executor, 1, 2, 3);
+        runPool();
+        assertEquals(Arrays.asList(1, 2), processed);
+        assertEquals(1, executor.getDropped());
+    }
+
+    @Test
+    public void testCallerRuns() {
+        SerialExecutor executor = new SerialExecutor("test", pool::add, 2, SerialExecutor.OverflowPolicy.CALLER_RUNS);
+        submitDroppable(executor, 1, 2, 3);
+        assertEquals(Arrays.asList(3), processed);
+        runPool();
+        assertEquals(Arrays.asList(3, 1, 2), processed);
+        assertEquals(0, executor.getDropped());
+    }
+
+    @Test
+    public void testPause() {
+        SerialExecutor executor = new SerialExecutor("test", pool::add, 10, SerialExecutor.OverflowPolicy.DROP_OLDEST);
+        submit(executor, 1, 2);
+        assertFalse(executor.isPaused());
+        executor.pause();
+        assertTrue(executor.isPaused());
+        submit(executor, 3);
+        runPool();
+        assertEquals(0, processed.size());
+        assertEquals(0, executor.getDepth());
+
+        // e.g. the handler is initialized again
+        executor.resume();
+        assertFalse(executor.isPaused());
+        submit(executor, 4);
+        runPool();
+        assertEquals(Arrays.asList(4), processed);
+    }
+
+    @Test
+    public void testDroppedCallback() {
+        List<Integer> dropped = new ArrayList<>();
+        SerialExecutor executor = new SerialExecutor("test", pool::add, 2, SerialExecutor.OverflowPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 3; i++) {
+            int task = i;
+            executor.executeDroppable(() -> processed.add(task), () -> dropped.add(task));
+        }
+        assertEquals(Arrays.asList(1), dropped);
+
+        executor.pause();
+        // discarded pending tasks and rejected tasks
+        assertEquals(Arrays.asList(1, 2, 3), dropped);
+        executor.executeDroppable(() -> processed.add(4), () -> dropped.add(4));
+        assertEquals(Arrays.asList(1, 2, 3, 4), dropped);
+        runPool();
+        assertEquals(0, processed.size());
+    }
+
+    private void submit(SerialExecutor executor, int... tasks) {
+        for (int task : tasks) {
+            executor.execute(() -> processed.add(task));
+        }
+    }
+
+    private void submitDroppable(SerialExecutor executor, int... tasks) {
+        for (int task : tasks) {
+            executor.executeDroppable(() -> processed.add(task));
+        }
+    }
+
+    private void runPool() {
+        Runnable drain;
+        while ((drain = pool.poll()) != null) {
+            drain.run();
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.sputnikdev.esh.binding.bluetooth.internal;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+    private final List<Runnable> dispatched = new ArrayList<>();
+    // a small wheel (80 ms per revolution) so that jobs span multiple rounds, the wheel is driven manually
+    private final TimingWheel wheel = new TimingWheel(10, 8, dispatched::add, clock::get);
+
+    @Test
+    public void testPeriodicJob() {
+        AtomicInteger counter = new AtomicInteger();
+        TimingWheel.Job job = wheel.scheduleWithFixedDelay(counter::incrementAndGet, 0, 100, TimeUnit.MILLISECONDS);
+        assertEquals(1, wheel.getQueueDepth());
+
+        advance(10);
+        runDispatched();
+        assertEquals(1, counter.get());
+
+        // jobs never run earlier than scheduled
+        advance(90);
+        runDispatched();
+        assertEquals(1, counter.get());
+        advance(10);
+        runDispatched();
+        assertEquals(2, counter.get());
+
+        job.cancel();
+        assertEquals(0, wheel.getQueueDepth());
+        advance(200);
+        runDispatched();
+        assertEquals(2, counter.get());
+    }
+
+    @Test
+    public void testCancel() {
+        AtomicInteger counter = new AtomicInteger();
+        TimingWheel.Job job = wheel.scheduleWithFixedDelay(counter::incrementAndGet, 50, 50, TimeUnit.MILLISECONDS);
+        job.cancel();
+        job.cancel();
+        assertTrue(job.isCancelled());
+        assertEquals(0, wheel.getQueueDepth());
+
+        advance(200);
+        runDispatched();
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void testJobsAreDispatchedIndividually() {
+        wheel.scheduleWithFixedDelay(() -> { }, 0, 100, TimeUnit.MILLISECONDS);
+        wheel.scheduleWithFixedDelay(() -> { }, 0, 100, TimeUnit.MILLISECONDS);
+
+        advance(10);
+        // a slow job must not hold up other jobs
+        assertEquals(2, dispatched.size());
+    }
+
+    @Test
+    public void testTickLag() {
+        assertFalse(wheel.tick());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(35));
+        assertTrue(wheel.tick());
+        assertEquals(25, wheel.getTickLag());
+        assertEquals(25, wheel.getMaxTickLag());
+    }
+
+    private void advance(long millis) {
+        long target = clock.get() + TimeUnit.MILLISECONDS.toNanos(millis);
+        while (clock.get() < target) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            while (wheel.tick()) {
+                // catching up
+            }
+        }
+    }
+
+    private void runDispatched() {
+        List<Runnable> tasks = new ArrayList<>(dispatched);
+        dispatched.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+}
@@ -0,0 +1,135 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    private static final URL DEVICE = new URL("/AA:BB:CC:DD:EE:FF/11:22:33:44:55:66");
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    public void testCounters() {
+        MetricsScope device = registry.device(DEVICE);
+        device.counter(MetricsRegistry.NOTIFICATIONS).increment();
+        device.counter(MetricsRegistry.NOTIFICATIONS).add(2);
+        registry.adapter("AA:BB:CC:DD:EE:FF").counter(MetricsRegistry.NOTIFICATIONS).increment();
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(3, snapshot.getCounter(MetricsRegistry.getDeviceScope(DEVICE),
+                MetricsRegistry.NOTIFICATIONS));
+        assertEquals(1, snapshot.getCounter(MetricsRegistry.getAdapterScope("AA:BB:CC:DD:EE:FF"),
+                MetricsRegistry.NOTIFICATIONS));
+        assertEquals(0, snapshot.getCounter("unknown", MetricsRegistry.NOTIFICATIONS));
+        assertEquals(2, snapshot.getScopes().size());
+
+        registry.remove(device.getName());
+        assertEquals(1, registry.snapshot().getScopes().size());
+    }
+
+    @Test
+    public void testDeviceScopes() {
+        // the same device seen by different adapters
+        MetricsScope device = registry.device(DEVICE);
+        MetricsScope other = registry.device(new URL("/11:11:11:11:11:11/11:22:33:44:55:66"));
+        assertNotSame(device, other);
+        assertEquals("device:/AA:BB:CC:DD:EE:FF/11:22:33:44:55:66", device.getName());
+        // characteristic URLs and protocols resolve to the device scope
+        assertTrue(device == registry.device(
+                new URL("tinyb:/AA:BB:CC:DD:EE:FF/11:22:33:44:55:66/0000180f-0000-1000-8000-00805f9b34fb")));
+    }
+
+    @Test
+    public void testRemovedScope() {
+        MetricsScope adapter = registry.adapter("AA:BB:CC:DD:EE:FF");
+        assertFalse(adapter.isRemoved());
+
+        registry.remove(adapter.getName());
+
+        assertTrue(adapter.isRemoved());
+        MetricsScope resolved = registry.adapter("AA:BB:CC:DD:EE:FF");
+        assertNotSame(adapter, resolved);
+        assertFalse(resolved.isRemoved());
+    }
+
+    @Test
+    public void testGauges() {
+        AtomicLong depth = new AtomicLong(5);
+        registry.scope(MetricsRegistry.SCHEDULER_SCOPE).gauge(MetricsRegistry.SCHEDULER_QUEUE_DEPTH, depth::get);
+
+        assertEquals(5, registry.snapshot().getGauge(MetricsRegistry.SCHEDULER_SCOPE,
+                MetricsRegistry.SCHEDULER_QUEUE_DEPTH));
+        // gauges are read when a snapshot is taken
+        depth.set(7);
+        assertEquals(7, registry.snapshot().getGauge(MetricsRegistry.SCHEDULER_SCOPE,
+                MetricsRegistry.SCHEDULER_QUEUE_DEPTH));
+        assertEquals(0, registry.snapshot().getGauge(MetricsRegistry.SCHEDULER_SCOPE, "unknown"));
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = registry.device(DEVICE).histogram(MetricsRegistry.PARSE_TIME);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(5000);
+
+        HistogramSnapshot snapshot = registry.snapshot()
+                .getHistogram(MetricsRegistry.getDeviceScope(DEVICE), MetricsRegistry.PARSE_TIME);
+        assertEquals(101, snapshot.getCount());
+        assertEquals(5050 + 5000, snapshot.getSum());
+        assertEquals(5000, snapshot.getMax());
+        // 50 falls into [32, 64) bucket
+        assertEquals(64, snapshot.getPercentile(0.5));
+        // 100 falls into [64, 128) bucket
+        assertEquals(128, snapshot.getPercentile(0.99));
+        // never more than the max value
+        assertEquals(5000, snapshot.getPercentile(1));
+    }
+
+    @Test
+    public void testBuckets() {
+        assertEquals(0, Histogram.bucket(0));
+        assertEquals(1, Histogram.bucket(1));
+        assertEquals(2, Histogram.bucket(3));
+        assertEquals(3, Histogram.bucket(4));
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, HistogramSnapshot.getUpperBound(Histogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void testMerge() {
+        Histogram first = registry.scope("first").histogram(MetricsRegistry.READ_TIME);
+        Histogram second = registry.scope("second").histogram(MetricsRegistry.READ_TIME);
+        first.record(10);
+        second.record(1000);
+
+        HistogramSnapshot merged = first.snapshot().merge(second.snapshot());
+        assertEquals(2, merged.getCount());
+        assertEquals(1000, merged.getMax());
+        assertEquals(505.0, merged.getMean(), 0.001);
+    }
+
+    @Test
+    public void testMinus() {
+        Histogram histogram = registry.scope("device").histogram(MetricsRegistry.READ_TIME);
+        histogram.record(10);
+        HistogramSnapshot previous = histogram.snapshot();
+        histogram.record(1000);
+        histogram.record(1000);
+
+        HistogramSnapshot window = histogram.snapshot().minus(previous);
+        assertEquals(2, window.getCount());
+        assertEquals(2000, window.getSum());
+        assertEquals(1000, window.getPercentile(0.5));
+    }
+
+}
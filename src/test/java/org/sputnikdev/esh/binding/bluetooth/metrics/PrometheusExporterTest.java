@@ -0,0 +1,129 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PrometheusExporterTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    public void testRenderCounters() {
+        registry.adapter("11:22:33:44:55:66").counter(MetricsRegistry.NOTIFICATIONS).add(3);
+        registry.device(new URL("/11:22:33:44:55:66/AA:BB:CC:DD:EE:FF")).counter(MetricsRegistry.NOTIFICATIONS).add(2);
+
+        String output = render();
+
+        assertEquals(output.indexOf("# TYPE bluetooth_notifications_total counter"),
+                output.lastIndexOf("# TYPE bluetooth_notifications_total counter"));
+        assertTrue(output.contains(
+                "bluetooth_notifications_total{device=\"AA:BB:CC:DD:EE:FF\",adapter=\"11:22:33:44:55:66\"} 2\n"));
+        // adapter metrics aggregate device metrics, they must not be summed up with them
+        assertTrue(output.contains("# TYPE bluetooth_adapter_notifications_total counter\n"));
+        assertTrue(output.contains("bluetooth_adapter_notifications_total{adapter=\"11:22:33:44:55:66\"} 3\n"));
+        assertFalse(output.contains("bluetooth_notifications_total{adapter="));
+    }
+
+    @Test
+    public void testRenderGauges() {
+        registry.scope(MetricsRegistry.SCHEDULER_SCOPE).gauge(MetricsRegistry.SCHEDULER_TICK_LAG, () -> 12);
+
+        String output = render();
+
+        assertTrue(output.contains("# TYPE bluetooth_scheduler_tick_lag_ms gauge\n"));
+        assertTrue(output.contains("bluetooth_scheduler_tick_lag_ms{scope=\"scheduler\"} 12\n"));
+    }
+
+    @Test
+    public void testRenderHistograms() {
+        Histogram histogram = registry.scope("custom").histogram(MetricsRegistry.PARSE_TIME);
+        histogram.record(1);
+        histogram.record(3);
+
+        String output = render();
+
+        assertTrue(output.contains("# TYPE bluetooth_parse_time_microseconds histogram\n"));
+        assertTrue(output.contains("bluetooth_parse_time_microseconds_bucket{scope=\"custom\",le=\"+Inf\"} 2\n"));
+        assertTrue(output.contains("bluetooth_parse_time_microseconds_sum{scope=\"custom\"} 4\n"));
+        assertTrue(output.contains("bluetooth_parse_time_microseconds_count{scope=\"custom\"} 2\n"));
+        // buckets are cumulative and inclusive, empty buckets above the maximum are not rendered
+        assertTrue(output.contains("bluetooth_parse_time_microseconds_bucket{scope=\"custom\",le=\"0\"} 0\n"));
+        assertTrue(output.contains("bluetooth_parse_time_microseconds_bucket{scope=\"custom\",le=\"1\"} 1\n"));
+        assertTrue(output.contains("bluetooth_parse_time_microseconds_bucket{scope=\"custom\",le=\"3\"} 2\n"));
+        assertFalse(output.contains("le=\"7\""));
+    }
+
+    @Test
+    public void testRenderUnboundedBucket() {
+        registry.scope("custom").histogram(MetricsRegistry.PARSE_TIME).record(Long.MAX_VALUE / 2);
+
+        String output = render();
+
+        // the last bucket is covered by "+Inf" only
+        assertFalse(output.contains("le=\"" + Long.MAX_VALUE + "\""));
+        assertFalse(output.contains("le=\"" + (Long.MAX_VALUE - 1) + "\""));
+        assertTrue(output.contains("bluetooth_parse_time_microseconds_bucket{scope=\"custom\",le=\"+Inf\"} 1\n"));
+    }
+
+    @Test
+    public void testRenderHistogramCountFromBuckets() {
+        // the count can be behind the buckets when a snapshot is taken while values are being recorded
+        long[] buckets = new long[Histogram.BUCKETS];
+        buckets[1] = 1;
+        buckets[2] = 1;
+        MetricsSnapshot snapshot = new MetricsSnapshot(0, Collections.singletonMap("custom", Collections.emptyMap()),
+                Collections.singletonMap("custom", Collections.singletonMap(MetricsRegistry.PARSE_TIME,
+                        new HistogramSnapshot(buckets, 1, 4, 3))),
+                Collections.emptyMap());
+        StringBuilder output = new StringBuilder();
+        PrometheusExporter.render(snapshot, output);
+
+        assertTrue(output.toString()
+                .contains("bluetooth_parse_time_microseconds_bucket{scope=\"custom\",le=\"+Inf\"} 2\n"));
+        assertTrue(output.toString().contains("bluetooth_parse_time_microseconds_count{scope=\"custom\"} 2\n"));
+    }
+
+    @Test
+    public void testExport() throws Exception {
+        registry.device(new URL("/11:22:33:44:55:66/AA:BB:CC:DD:EE:FF"))
+                .counter(MetricsRegistry.CONNECTIONS).increment();
+        Path folder = Files.createTempDirectory("prometheus");
+        Path file = folder.resolve("bluetooth.prom");
+
+        new PrometheusExporter(registry, file).export();
+
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(content.contains(
+                "bluetooth_connections_total{device=\"AA:BB:CC:DD:EE:FF\",adapter=\"11:22:33:44:55:66\"} 1\n"));
+        assertEquals(1, Files.list(folder).count());
+    }
+
+    @Test
+    public void testFailedExportDeletesTemporaryFile() throws Exception {
+        Path folder = Files.createTempDirectory("prometheus");
+        // a non-empty directory cannot be replaced by the exported file
+        Path file = Files.createDirectory(folder.resolve("bluetooth.prom"));
+        Files.createFile(file.resolve("other"));
+
+        new PrometheusExporter(registry, file).export();
+
+        assertEquals(1, Files.list(folder).count());
+        assertTrue(Files.isDirectory(file));
+    }
+
+    private String render() {
+        StringBuilder output = new StringBuilder();
+        PrometheusExporter.render(registry.snapshot(), output);
+        return output.toString();
+    }
+
+}
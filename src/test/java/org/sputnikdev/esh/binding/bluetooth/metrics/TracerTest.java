@@ -0,0 +1,54 @@
+package org.sputnikdev.esh.binding.bluetooth.metrics;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TracerTest {
+
+    @Test
+    public void testDisabled() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Tracer tracer = registry.getTracer();
+
+        Trace trace = tracer.start("source", "event");
+        assertTrue(trace == Trace.NONE);
+        assertFalse(tracer.isEnabled());
+        trace.stage(Trace.Stage.PARSE);
+        tracer.finish(trace);
+
+        assertTrue(tracer.getTraces().isEmpty());
+        assertTrue(registry.snapshot().getScopes().isEmpty());
+    }
+
+    @Test
+    public void testTracing() {
+        MetricsRegistry registry = new MetricsRegistry(1, 2);
+        Tracer tracer = registry.getTracer();
+
+        for (int i = 0; i < 3; i++) {
+            Trace trace = tracer.start("source" + i, "event");
+            assertTrue(trace.isSampled());
+            trace.stage(Trace.Stage.DISPATCH);
+            trace.stage(Trace.Stage.PARSE);
+            trace.stage(Trace.Stage.UPDATE_STATE);
+            tracer.finish(trace);
+        }
+
+        List<Trace> traces = tracer.getTraces();
+        assertEquals(2, traces.size());
+        assertEquals("source1", traces.get(0).getSource());
+        assertEquals("source2", traces.get(1).getSource());
+        assertEquals("event", traces.get(1).getEvent());
+
+        MetricsScope scope = registry.scope(Tracer.SCOPE);
+        assertEquals(3L, scope.histogram(Tracer.TOTAL_TIME).snapshot().getCount());
+        assertEquals(3L, scope.histogram(Tracer.getMetric(Trace.Stage.PARSE)).snapshot().getCount());
+        assertEquals("update-state-time", Tracer.getMetric(Trace.Stage.UPDATE_STATE));
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.Adapter;
+import org.sputnikdev.bluetooth.manager.transport.Device;
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A simulated adapter. Discovering and powered states are kept in memory.
+ *
+ * @author Vlad Kolotov
+ */
+class SimulatedAdapter implements Adapter {
+
+    private final URL url;
+    private final String name;
+    private final List<Device> devices = new CopyOnWriteArrayList<>();
+    private volatile String alias;
+    private volatile boolean powered = true;
+    private volatile boolean discovering;
+    private volatile Notification<Boolean> poweredNotification;
+    private volatile Notification<Boolean> discoveringNotification;
+
+    SimulatedAdapter(URL url, String name) {
+        this.url = url;
+        this.name = name;
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getAlias() {
+        return alias;
+    }
+
+    @Override
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
+
+    @Override
+    public boolean isDiscovering() {
+        return discovering;
+    }
+
+    @Override
+    public boolean startDiscovery() {
+        setDiscovering(true);
+        return true;
+    }
+
+    @Override
+    public boolean stopDiscovery() {
+        setDiscovering(false);
+        return true;
+    }
+
+    @Override
+    public void enableDiscoveringNotifications(Notification<Boolean> notification) {
+        discoveringNotification = notification;
+    }
+
+    @Override
+    public void disableDiscoveringNotifications() {
+        discoveringNotification = null;
+    }
+
+    @Override
+    public boolean isPowered() {
+        return powered;
+    }
+
+    @Override
+    public void setPowered(boolean powered) {
+        this.powered = powered;
+        Simulation.notify(poweredNotification, powered);
+    }
+
+    @Override
+    public void enablePoweredNotifications(Notification<Boolean> notification) {
+        poweredNotification = notification;
+    }
+
+    @Override
+    public void disablePoweredNotifications() {
+        poweredNotification = null;
+    }
+
+    @Override
+    public List<Device> getDevices() {
+        return new ArrayList<>(devices);
+    }
+
+    void addDevice(Device device) {
+        devices.add(device);
+    }
+
+    private void setDiscovering(boolean discovering) {
+        this.discovering = discovering;
+        Simulation.notify(discoveringNotification, discovering);
+    }
+
+}
@@ -0,0 +1,174 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.DiscoveredAdapter;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+import org.sputnikdev.bluetooth.manager.transport.Adapter;
+import org.sputnikdev.bluetooth.manager.transport.BluetoothObjectFactory;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.Device;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A simulated bluetooth transport for load and scale testing without any radio. It generates a configurable fleet
+ * of adapters and BLE devices (see {@link SimulationConfig}) which advertise RSSI and service data, send
+ * notifications when connected and fail connections, reads and writes with the configured rate.
+ *
+ * <p>The factory plugs into the bluetooth manager the same way as real transports do, e.g.:
+ * <pre>{@code
+ * SimulatedBluetoothObjectFactory factory = new SimulatedBluetoothObjectFactory(config);
+ * bluetoothManager.registerFactory(factory);
+ * factory.start();
+ * }</pre>
+ * Combined with headless handlers (see {@code BluetoothContextStub}) this allows to measure throughput, latency
+ * and memory of the binding on a plain machine.
+ *
+ * @author Vlad Kolotov
+ */
+public class SimulatedBluetoothObjectFactory implements BluetoothObjectFactory {
+
+    public static final String PROTOCOL_NAME = "simulation";
+
+    private final SimulationConfig config;
+    private final Map<String, SimulatedAdapter> adapters = new LinkedHashMap<>();
+    private final Map<URL, SimulatedDevice> devices = new LinkedHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a simulated transport with a fleet of adapters and devices.
+     * @param config simulation config
+     */
+    public SimulatedBluetoothObjectFactory(SimulationConfig config) {
+        this.config = config;
+        Random random = new Random(config.getSeed());
+        for (int i = 0; i < config.getAdapters(); i++) {
+            String adapterAddress = getAdapterAddress(i);
+            URL adapterURL = new URL(adapterAddress, null).copyWithProtocol(PROTOCOL_NAME);
+            adapters.put(adapterAddress, new SimulatedAdapter(adapterURL, "Simulated adapter " + i));
+            for (int j = 0; j < config.getDevicesPerAdapter(); j++) {
+                URL deviceURL = adapterURL.copyWithDevice(getDeviceAddress(i, j));
+                SimulatedDevice device = new SimulatedDevice(deviceURL, "Simulated device " + i + "-" + j,
+                        config.getFailureRate(), new Random(random.nextLong()));
+                devices.put(deviceURL.getDeviceURL(), device);
+                adapters.get(adapterAddress).addDevice(device);
+            }
+        }
+    }
+
+    /**
+     * Starts generating advertisements and notifications.
+     */
+    public synchronized void start() {
+        stop();
+        scheduler = Executors.newScheduledThreadPool(Math.max(config.getThreads(), 1), runnable -> {
+            Thread thread = new Thread(runnable, "bluetooth-simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Random random = new Random(config.getSeed());
+        devices.values().forEach(device -> {
+            if (config.getAdvertisementInterval() > 0) {
+                scheduler.scheduleAtFixedRate(device::advertise, random.nextInt(config.getAdvertisementInterval()),
+                        config.getAdvertisementInterval(), TimeUnit.MILLISECONDS);
+            }
+            if (config.getNotificationRate() > 0) {
+                long period = TimeUnit.SECONDS.toMicros(1) / config.getNotificationRate();
+                scheduler.scheduleAtFixedRate(device::notifyCharacteristics, random.nextInt((int) period),
+                        period, TimeUnit.MICROSECONDS);
+            }
+        });
+    }
+
+    /**
+     * Stops generating advertisements and notifications.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns all simulated devices.
+     * @return simulated devices
+     */
+    public Collection<? extends Device> getDevices() {
+        return Collections.unmodifiableCollection(devices.values());
+    }
+
+    @Override
+    public Adapter getAdapter(URL url) {
+        return adapters.get(url.getAdapterAddress());
+    }
+
+    @Override
+    public Device getDevice(URL url) {
+        return devices.get(normalize(url).getDeviceURL());
+    }
+
+    @Override
+    public Characteristic getCharacteristic(URL url) {
+        SimulatedDevice device = devices.get(normalize(url).getDeviceURL());
+        return device != null ? device.getCharacteristic(normalize(url).getCharacteristicURL()) : null;
+    }
+
+    @Override
+    public Set<DiscoveredAdapter> getDiscoveredAdapters() {
+        return adapters.values().stream()
+                .map(adapter -> new DiscoveredAdapter(adapter.getURL(), adapter.getName(), adapter.getAlias()))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Set<DiscoveredDevice> getDiscoveredDevices() {
+        return devices.values().stream()
+                .map(device -> new DiscoveredDevice(device.getURL(), device.getName(), device.getAlias(),
+                        device.getRSSI(), device.getBluetoothClass(), device.isBleEnabled()))
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public String getProtocolName() {
+        return PROTOCOL_NAME;
+    }
+
+    @Override
+    public void configure(Map<String, Object> config) { /* do nothing */ }
+
+    @Override
+    public void dispose(URL url) {
+        // simulated adapters, services and characteristics do not hold any resources
+        if (url.isDevice()) {
+            SimulatedDevice device = devices.get(normalize(url).getDeviceURL());
+            if (device != null) {
+                device.dispose();
+            }
+        }
+    }
+
+    private static URL normalize(URL url) {
+        // the manager might omit protocol
+        return url.getProtocol() == null ? url.copyWithProtocol(PROTOCOL_NAME) : url;
+    }
+
+    private static String getDeviceAddress(int adapter, int index) {
+        // a public address, the most significant byte would make some addresses look random (beacons)
+        return String.format("00:00:%02X:00:%02X:%02X", adapter & 0xFF, (index >> 8) & 0xFF, index & 0xFF);
+    }
+
+    private static String getAdapterAddress(int index) {
+        return String.format("5A:00:00:00:%02X:%02X", (index >> 8) & 0xFF, index & 0xFF);
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.Device;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class SimulatedBluetoothObjectFactoryTest {
+
+    private SimulatedBluetoothObjectFactory factory;
+
+    @After
+    public void tearDown() {
+        if (factory != null) {
+            factory.stop();
+        }
+    }
+
+    @Test
+    public void testFleet() {
+        SimulationConfig config = new SimulationConfig();
+        config.setAdapters(2);
+        config.setDevicesPerAdapter(5);
+        factory = new SimulatedBluetoothObjectFactory(config);
+
+        assertEquals(SimulatedBluetoothObjectFactory.PROTOCOL_NAME, factory.getProtocolName());
+        assertEquals(2, factory.getDiscoveredAdapters().size());
+        assertEquals(10, factory.getDiscoveredDevices().size());
+
+        Device device = factory.getDevices().iterator().next();
+        assertTrue(device == factory.getDevice(device.getURL()));
+        assertNotNull(factory.getAdapter(device.getURL().getAdapterURL()));
+        assertEquals(5, factory.getAdapter(device.getURL().getAdapterURL()).getDevices().size());
+        assertNotNull(factory.getCharacteristic(
+                device.getURL().copyWith(SimulatedDevice.BATTERY_SERVICE, SimulatedDevice.BATTERY_LEVEL)));
+    }
+
+    @Test
+    public void testNotifications() {
+        SimulationConfig config = new SimulationConfig();
+        config.setDevicesPerAdapter(1);
+        factory = new SimulatedBluetoothObjectFactory(config);
+
+        // the device is driven directly rather than by the scheduler, so that the test does not depend on timing
+        SimulatedDevice device = (SimulatedDevice) factory.getDevices().iterator().next();
+        URL url = device.getURL().copyWith(SimulatedDevice.HEART_RATE_SERVICE, SimulatedDevice.HEART_RATE_MEASUREMENT);
+        Characteristic characteristic = factory.getCharacteristic(url);
+        List<Short> rssi = new ArrayList<>();
+        List<Map<String, byte[]>> serviceData = new ArrayList<>();
+        List<byte[]> notifications = new ArrayList<>();
+        device.enableRSSINotifications(rssi::add);
+        device.enableServiceDataNotifications(serviceData::add);
+        characteristic.enableValueNotifications(notifications::add);
+
+        device.advertise();
+        device.notifyCharacteristics();
+        assertEquals(1, rssi.size());
+        assertEquals(1, serviceData.size());
+        assertTrue(serviceData.get(0).containsKey(SimulatedDevice.BATTERY_SERVICE));
+        // not connected
+        assertTrue(notifications.isEmpty());
+
+        assertTrue(device.connect());
+        device.notifyCharacteristics();
+        device.notifyCharacteristics();
+        assertEquals(2, notifications.size());
+        assertFalse(Arrays.equals(notifications.get(0), notifications.get(1)));
+    }
+
+    @Test
+    public void testDispose() {
+        SimulationConfig config = new SimulationConfig();
+        config.setDevicesPerAdapter(1);
+        factory = new SimulatedBluetoothObjectFactory(config);
+        SimulatedDevice device = (SimulatedDevice) factory.getDevices().iterator().next();
+        List<Short> rssi = new ArrayList<>();
+        device.enableRSSINotifications(rssi::add);
+        assertTrue(device.connect());
+
+        factory.dispose(device.getURL());
+
+        assertFalse(device.isConnected());
+        device.advertise();
+        assertTrue(rssi.isEmpty());
+        // disposed devices can be acquired again
+        assertTrue(device == factory.getDevice(device.getURL()));
+    }
+
+    @Test
+    public void testFailures() {
+        SimulationConfig config = new SimulationConfig();
+        config.setDevicesPerAdapter(1);
+        config.setFailureRate(1);
+        factory = new SimulatedBluetoothObjectFactory(config);
+
+        Device device = factory.getDevices().iterator().next();
+        assertFalse(device.connect());
+        assertFalse(device.isConnected());
+        Characteristic characteristic = factory.getCharacteristic(
+                device.getURL().copyWith(SimulatedDevice.BATTERY_SERVICE, SimulatedDevice.BATTERY_LEVEL));
+        assertFalse(characteristic.writeValue(new byte[] {1}));
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * A simulated characteristic. Its value is produced by a script (a function of a tick counter), the value changes
+ * on each notification. Reads and writes fail with the configured failure rate.
+ *
+ * @author Vlad Kolotov
+ */
+class SimulatedCharacteristic implements Characteristic {
+
+    private final URL url;
+    private final Set<CharacteristicAccessType> flags;
+    private final LongFunction<byte[]> script;
+    private final double failureRate;
+    private final AtomicLong ticks = new AtomicLong();
+    private volatile byte[] value;
+    private volatile Notification<byte[]> valueNotification;
+
+    SimulatedCharacteristic(URL url, Set<CharacteristicAccessType> flags, LongFunction<byte[]> script,
+                            double failureRate) {
+        this.url = url;
+        this.flags = Collections.unmodifiableSet(EnumSet.copyOf(flags));
+        this.script = script;
+        this.failureRate = failureRate;
+        value = script.apply(0);
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public Set<CharacteristicAccessType> getFlags() {
+        return flags;
+    }
+
+    @Override
+    public boolean isNotifying() {
+        return valueNotification != null;
+    }
+
+    @Override
+    public boolean isNotificationConfigurable() {
+        return flags.contains(CharacteristicAccessType.NOTIFY);
+    }
+
+    @Override
+    public byte[] readValue() {
+        if (Simulation.fails(failureRate)) {
+            throw new IllegalStateException("Simulated read failure: " + url);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean writeValue(byte[] data) {
+        if (Simulation.fails(failureRate)) {
+            return false;
+        }
+        value = data;
+        return true;
+    }
+
+    @Override
+    public void enableValueNotifications(Notification<byte[]> notification) {
+        valueNotification = notification;
+    }
+
+    @Override
+    public void disableValueNotifications() {
+        valueNotification = null;
+    }
+
+    void dispose() {
+        valueNotification = null;
+    }
+
+    /**
+     * Produces a new value and notifies about it if notifications are enabled.
+     */
+    void tick() {
+        Notification<byte[]> notification = valueNotification;
+        if (notification != null) {
+            value = script.apply(ticks.incrementAndGet());
+            Simulation.notify(notification, value);
+        }
+    }
+
+}
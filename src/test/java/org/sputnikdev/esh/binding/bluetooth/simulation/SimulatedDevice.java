@@ -0,0 +1,288 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.BluetoothAddressType;
+import org.sputnikdev.bluetooth.manager.transport.CharacteristicAccessType;
+import org.sputnikdev.bluetooth.manager.transport.Device;
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+import org.sputnikdev.bluetooth.manager.transport.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A simulated BLE device. It advertises its RSSI and battery level (as battery service data) and exposes
+ * battery, heart rate and health thermometer services. Connections fail with the configured failure rate.
+ *
+ * @author Vlad Kolotov
+ */
+class SimulatedDevice implements Device {
+
+    static final String BATTERY_SERVICE = "0000180f-0000-1000-8000-00805f9b34fb";
+    static final String BATTERY_LEVEL = "00002a19-0000-1000-8000-00805f9b34fb";
+    static final String HEART_RATE_SERVICE = "0000180d-0000-1000-8000-00805f9b34fb";
+    static final String HEART_RATE_MEASUREMENT = "00002a37-0000-1000-8000-00805f9b34fb";
+    static final String THERMOMETER_SERVICE = "00001809-0000-1000-8000-00805f9b34fb";
+    static final String TEMPERATURE_MEASUREMENT = "00002a1c-0000-1000-8000-00805f9b34fb";
+
+    private static final short MIN_RSSI = -100;
+    private static final short MAX_RSSI = -30;
+
+    private final URL url;
+    private final String name;
+    private final double failureRate;
+    private final Random random;
+    private final List<SimulatedService> services;
+    private volatile String alias;
+    private volatile short rssi;
+    private volatile boolean connected;
+    private volatile boolean blocked;
+    private volatile int batteryLevel = 100;
+    private volatile Notification<Short> rssiNotification;
+    private volatile Notification<Boolean> connectedNotification;
+    private volatile Notification<Boolean> servicesResolvedNotification;
+    private volatile Notification<Boolean> blockedNotification;
+    private volatile Notification<Map<String, byte[]>> serviceDataNotification;
+    private volatile Notification<Map<Short, byte[]>> manufacturerDataNotification;
+
+    SimulatedDevice(URL url, String name, double failureRate, Random random) {
+        this.url = url;
+        this.name = name;
+        this.failureRate = failureRate;
+        this.random = random;
+        rssi = (short) (MIN_RSSI + random.nextInt(MAX_RSSI - MIN_RSSI));
+        Set<CharacteristicAccessType> readNotify =
+                EnumSet.of(CharacteristicAccessType.READ, CharacteristicAccessType.NOTIFY);
+        Set<CharacteristicAccessType> notify = EnumSet.of(CharacteristicAccessType.NOTIFY);
+        services = Arrays.asList(
+                service(BATTERY_SERVICE, new SimulatedCharacteristic(url.copyWith(BATTERY_SERVICE, BATTERY_LEVEL),
+                        readNotify, tick -> new byte[] {(byte) batteryLevel}, failureRate)),
+                service(HEART_RATE_SERVICE, new SimulatedCharacteristic(
+                        url.copyWith(HEART_RATE_SERVICE, HEART_RATE_MEASUREMENT), notify,
+                        // uint8 heart rate, RR interval present
+                        tick -> new byte[] {0x10, (byte) (60 + tick % 40), 0x00, 0x04}, failureRate)),
+                service(THERMOMETER_SERVICE, new SimulatedCharacteristic(
+                        url.copyWith(THERMOMETER_SERVICE, TEMPERATURE_MEASUREMENT), notify,
+                        // IEEE-11073 FLOAT, exponent -1: 36.0..37.9
+                        tick -> new byte[] {0x00, (byte) (104 + tick % 20), 0x01, 0x00, (byte) 0xFF}, failureRate)));
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public int getBluetoothClass() {
+        return 0;
+    }
+
+    @Override
+    public boolean isBleEnabled() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getAlias() {
+        return alias;
+    }
+
+    @Override
+    public void setAlias(String alias) {
+        this.alias = alias;
+    }
+
+    @Override
+    public boolean connect() {
+        if (Simulation.fails(failureRate)) {
+            return false;
+        }
+        connected = true;
+        Simulation.notify(connectedNotification, true);
+        Simulation.notify(servicesResolvedNotification, true);
+        return true;
+    }
+
+    @Override
+    public boolean disconnect() {
+        connected = false;
+        Simulation.notify(servicesResolvedNotification, false);
+        Simulation.notify(connectedNotification, false);
+        return true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void enableConnectedNotifications(Notification<Boolean> notification) {
+        connectedNotification = notification;
+    }
+
+    @Override
+    public void disableConnectedNotifications() {
+        connectedNotification = null;
+    }
+
+    @Override
+    public boolean isServicesResolved() {
+        return connected;
+    }
+
+    @Override
+    public void enableServicesResolvedNotifications(Notification<Boolean> notification) {
+        servicesResolvedNotification = notification;
+    }
+
+    @Override
+    public void disableServicesResolvedNotifications() {
+        servicesResolvedNotification = null;
+    }
+
+    @Override
+    public List<Service> getServices() {
+        return connected ? new ArrayList<>(services) : Collections.emptyList();
+    }
+
+    @Override
+    public boolean isBlocked() {
+        return blocked;
+    }
+
+    @Override
+    public void setBlocked(boolean blocked) {
+        this.blocked = blocked;
+        Simulation.notify(blockedNotification, blocked);
+    }
+
+    @Override
+    public void enableBlockedNotifications(Notification<Boolean> notification) {
+        blockedNotification = notification;
+    }
+
+    @Override
+    public void disableBlockedNotifications() {
+        blockedNotification = null;
+    }
+
+    @Override
+    public short getRSSI() {
+        return rssi;
+    }
+
+    @Override
+    public short getTxPower() {
+        return 0;
+    }
+
+    @Override
+    public void enableRSSINotifications(Notification<Short> notification) {
+        rssiNotification = notification;
+    }
+
+    @Override
+    public void disableRSSINotifications() {
+        rssiNotification = null;
+    }
+
+    @Override
+    public Map<String, byte[]> getServiceData() {
+        // keyed by service UUID like real transports do
+        return Collections.singletonMap(BATTERY_SERVICE, new byte[] {(byte) batteryLevel});
+    }
+
+    @Override
+    public Map<Short, byte[]> getManufacturerData() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public BluetoothAddressType getAddressType() {
+        return BluetoothAddressType.PUBLIC;
+    }
+
+    @Override
+    public void enableServiceDataNotifications(Notification<Map<String, byte[]>> notification) {
+        serviceDataNotification = notification;
+    }
+
+    @Override
+    public void disableServiceDataNotifications() {
+        serviceDataNotification = null;
+    }
+
+    @Override
+    public void enableManufacturerDataNotifications(Notification<Map<Short, byte[]>> notification) {
+        manufacturerDataNotification = notification;
+    }
+
+    @Override
+    public void disableManufacturerDataNotifications() {
+        manufacturerDataNotification = null;
+    }
+
+    /**
+     * Disconnects the device and disables all notifications, the bluetooth manager enables them again
+     * when it acquires the device.
+     */
+    void dispose() {
+        disconnect();
+        rssiNotification = null;
+        connectedNotification = null;
+        servicesResolvedNotification = null;
+        blockedNotification = null;
+        serviceDataNotification = null;
+        manufacturerDataNotification = null;
+        services.forEach(service -> service.getSimulatedCharacteristics().forEach(SimulatedCharacteristic::dispose));
+    }
+
+    /**
+     * Returns a simulated characteristic.
+     * @param characteristicURL characteristic URL
+     * @return characteristic or null if it does not exist
+     */
+    SimulatedCharacteristic getCharacteristic(URL characteristicURL) {
+        return services.stream().flatMap(service -> service.getSimulatedCharacteristics().stream())
+                .filter(characteristic -> characteristic.getURL().equals(characteristicURL))
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * Advertises RSSI (random walk) and battery level (slowly draining) as battery service data.
+     */
+    void advertise() {
+        rssi = (short) Math.max(MIN_RSSI, Math.min(MAX_RSSI, rssi + random.nextInt(7) - 3));
+        if (random.nextInt(100) == 0) {
+            batteryLevel = batteryLevel > 0 ? batteryLevel - 1 : 100;
+        }
+        Simulation.notify(rssiNotification, rssi);
+        Simulation.notify(serviceDataNotification, getServiceData());
+    }
+
+    /**
+     * Sends notifications of all notifying characteristics if the device is connected.
+     */
+    void notifyCharacteristics() {
+        if (connected) {
+            services.forEach(service -> service.getSimulatedCharacteristics().forEach(SimulatedCharacteristic::tick));
+        }
+    }
+
+    private SimulatedService service(String serviceUUID, SimulatedCharacteristic... characteristics) {
+        return new SimulatedService(url.copyWithService(serviceUUID), Arrays.asList(characteristics));
+    }
+
+}
@@ -0,0 +1,40 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.sputnikdev.bluetooth.URL;
+import org.sputnikdev.bluetooth.manager.transport.Characteristic;
+import org.sputnikdev.bluetooth.manager.transport.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A simulated GATT service.
+ *
+ * @author Vlad Kolotov
+ */
+class SimulatedService implements Service {
+
+    private final URL url;
+    private final List<SimulatedCharacteristic> characteristics;
+
+    SimulatedService(URL url, List<SimulatedCharacteristic> characteristics) {
+        this.url = url;
+        this.characteristics = Collections.unmodifiableList(characteristics);
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public List<Characteristic> getCharacteristics() {
+        return new ArrayList<>(characteristics);
+    }
+
+    List<SimulatedCharacteristic> getSimulatedCharacteristics() {
+        return characteristics;
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.sputnikdev.bluetooth.manager.transport.Notification;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Common functionality of simulated bluetooth objects.
+ *
+ * @author Vlad Kolotov
+ */
+final class Simulation {
+
+    private Simulation() { }
+
+    /**
+     * Sends a notification if it is enabled. Errors of listeners are ignored like real transports do.
+     * @param notification notification or null if it is disabled
+     * @param value a new value
+     * @param <T> value type
+     */
+    static <T> void notify(Notification<T> notification, T value) {
+        if (notification != null) {
+            try {
+                notification.notify(value);
+            } catch (Exception ignore) {
+                // listener errors must not stop the simulation
+            }
+        }
+    }
+
+    /**
+     * Decides whether an operation fails.
+     * @param failureRate probability of a failure
+     * @return true if the operation fails
+     */
+    static boolean fails(double failureRate) {
+        return failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+/**
+ * Configuration of a simulated bluetooth fleet (see {@link SimulatedBluetoothObjectFactory}).
+ *
+ * @author Vlad Kolotov
+ */
+public class SimulationConfig {
+
+    private int adapters = 1;
+    private int devicesPerAdapter = 10;
+    private int advertisementInterval = 1000;
+    private int notificationRate = 1;
+    private double failureRate;
+    private int threads = 2;
+    private long seed = 42;
+
+    /**
+     * Returns number of simulated adapters.
+     * @return number of adapters
+     */
+    public int getAdapters() {
+        return adapters;
+    }
+
+    /**
+     * Sets number of simulated adapters.
+     * @param adapters number of adapters
+     */
+    public void setAdapters(int adapters) {
+        this.adapters = adapters;
+    }
+
+    /**
+     * Returns number of devices in range of each adapter.
+     * @return number of devices per adapter
+     */
+    public int getDevicesPerAdapter() {
+        return devicesPerAdapter;
+    }
+
+    /**
+     * Sets number of devices in range of each adapter.
+     * @param devicesPerAdapter number of devices per adapter
+     */
+    public void setDevicesPerAdapter(int devicesPerAdapter) {
+        this.devicesPerAdapter = devicesPerAdapter;
+    }
+
+    /**
+     * Returns how often (in milliseconds) each device advertises (RSSI and service data). Zero disables advertising.
+     * @return advertisement interval
+     */
+    public int getAdvertisementInterval() {
+        return advertisementInterval;
+    }
+
+    /**
+     * Sets how often (in milliseconds) each device advertises (RSSI and service data). Zero disables advertising.
+     * @param advertisementInterval advertisement interval
+     */
+    public void setAdvertisementInterval(int advertisementInterval) {
+        this.advertisementInterval = advertisementInterval;
+    }
+
+    /**
+     * Returns number of notifications per second sent by each notifying characteristic. Zero disables notifications.
+     * @return notification rate
+     */
+    public int getNotificationRate() {
+        return notificationRate;
+    }
+
+    /**
+     * Sets number of notifications per second sent by each notifying characteristic. Zero disables notifications.
+     * @param notificationRate notification rate
+     */
+    public void setNotificationRate(int notificationRate) {
+        this.notificationRate = notificationRate;
+    }
+
+    /**
+     * Returns probability (0..1) of a failure of connections, reads and writes.
+     * @return failure rate
+     */
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Sets probability (0..1) of a failure of connections, reads and writes.
+     * @param failureRate failure rate
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Returns number of threads which generate events.
+     * @return number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets number of threads which generate events.
+     * @param threads number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Returns seed of the random generator, the same seed produces the same fleet and payloads.
+     * @return random seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets seed of the random generator, the same seed produces the same fleet and payloads.
+     * @param seed random seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+}
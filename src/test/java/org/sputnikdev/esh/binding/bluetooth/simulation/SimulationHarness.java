@@ -0,0 +1,192 @@
+package org.sputnikdev.esh.binding.bluetooth.simulation;
+
+import org.eclipse.smarthome.core.thing.Channel;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusInfo;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.ThingHandlerCallback;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.sputnikdev.bluetooth.gattparser.BluetoothGattParserFactory;
+import org.sputnikdev.bluetooth.manager.BluetoothManager;
+import org.sputnikdev.bluetooth.manager.DiscoveredDevice;
+import org.sputnikdev.bluetooth.manager.impl.BluetoothManagerBuilder;
+import org.sputnikdev.esh.binding.bluetooth.handler.BluetoothDeviceHandler;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothBindingConfig;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContext;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothContextStub;
+import org.sputnikdev.esh.binding.bluetooth.internal.BluetoothUtils;
+import org.sputnikdev.esh.binding.bluetooth.metrics.HistogramSnapshot;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsRegistry;
+import org.sputnikdev.esh.binding.bluetooth.metrics.MetricsSnapshot;
+import org.sputnikdev.esh.binding.bluetooth.metrics.Tracer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the binding end to end against the simulated transport: the simulated fleet is registered in a real
+ * bluetooth manager, a real device handler is created for each simulated device and all channels get linked,
+ * so that advertisements and notifications travel the same path as on a live system (transport, governors,
+ * handler mailboxes, GATT parsing, state updates). The framework is replaced by a thing handler callback
+ * which only keeps thing statuses.
+ *
+ * <p>After a warm-up period (devices get connected, channels get built and linked) it reports:
+ * <ul>
+ *     <li>throughput - advertisements, notifications and state updates per second</li>
+ *     <li>latency - time from a transport callback till the item state is updated (sampled payloads)</li>
+ *     <li>memory - heap retained by the manager and handlers, per device</li>
+ * </ul>
+ * Usage (arguments are optional):
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.sputnikdev.esh.binding.bluetooth.simulation.SimulationHarness
+ * -Dexec.args="<adapters> <devices per adapter> <advertisement interval ms> <notifications/s> <seconds>"}.
+ *
+ * @author Vlad Kolotov
+ */
+public final class SimulationHarness {
+
+    private static final int WARM_UP = 30;
+    private static final int TRACING_SAMPLING = 10;
+
+    private final SimulationConfig simulation;
+    private final BluetoothBindingConfig config = new BluetoothBindingConfig();
+    private final List<BluetoothDeviceHandler> handlers = new ArrayList<>();
+    private final Set<ChannelUID> linked = new HashSet<>();
+    private BluetoothManager manager;
+    private SimulatedBluetoothObjectFactory factory;
+    private BluetoothContext context;
+
+    private SimulationHarness(SimulationConfig simulation) {
+        this.simulation = simulation;
+        config.setInitialConnectionControl(true);
+        config.setTracingSampling(TRACING_SAMPLING);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        SimulationConfig simulation = new SimulationConfig();
+        simulation.setAdapters(args.length > 0 ? Integer.parseInt(args[0]) : 1);
+        simulation.setDevicesPerAdapter(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+        simulation.setAdvertisementInterval(args.length > 2 ? Integer.parseInt(args[2]) : 1000);
+        simulation.setNotificationRate(args.length > 3 ? Integer.parseInt(args[3]) : 1);
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 60;
+
+        SimulationHarness harness = new SimulationHarness(simulation);
+        try {
+            harness.run(seconds);
+        } finally {
+            harness.dispose();
+        }
+    }
+
+    private void run(int seconds) throws InterruptedException {
+        long baseline = usedHeap();
+        manager = new BluetoothManagerBuilder()
+                .withRefreshRate(config.getUpdateRate())
+                .withRediscover(true)
+                .withDiscoveryRate(1)
+                .withDiscovering(true)
+                .withStarted(true)
+                .build();
+        factory = new SimulatedBluetoothObjectFactory(simulation);
+        manager.registerFactory(factory);
+        context = BluetoothContextStub.createInitializable(manager, BluetoothGattParserFactory.getDefault(), config);
+        ThingHandlerCallback callback = mock(ThingHandlerCallback.class);
+        doAnswer(invocation -> {
+            ((Thing) invocation.getArguments()[0]).setStatusInfo((ThingStatusInfo) invocation.getArguments()[1]);
+            return null;
+        }).when(callback).statusUpdated(any(Thing.class), any(ThingStatusInfo.class));
+
+        for (DiscoveredDevice device : factory.getDiscoveredDevices()) {
+            ThingUID thingUID = BluetoothUtils.getDeviceUID(device);
+            Thing thing = ThingBuilder.create(thingUID.getThingTypeUID(), thingUID)
+                    .withBridge(BluetoothUtils.getAdapterUID(device.getURL())).build();
+            BluetoothDeviceHandler handler = new BluetoothDeviceHandler(thing, context);
+            handler.setCallback(callback);
+            handler.initialize();
+            handlers.add(handler);
+        }
+        factory.start();
+
+        System.out.println("Warming up " + handlers.size() + " device handler(s) for " + WARM_UP + "s...");
+        for (int i = 0; i < WARM_UP; i++) {
+            TimeUnit.SECONDS.sleep(1);
+            // channels are built once devices get connected or advertise new data
+            linkChannels();
+        }
+        System.out.println("Online: " + handlers.stream()
+                .filter(handler -> handler.getThing().getStatus() == ThingStatus.ONLINE).count()
+                + ", linked channels: " + linked.size());
+
+        System.out.println("Measuring for " + seconds + "s...");
+        MetricsRegistry registry = context.getMetricsRegistry();
+        MetricsSnapshot before = registry.snapshot();
+        TimeUnit.SECONDS.sleep(seconds);
+        MetricsSnapshot after = registry.snapshot();
+        long retained = usedHeap() - baseline;
+
+        double window = (after.getTimestamp() - before.getTimestamp()) / 1000.0;
+        System.out.println(String.format("Advertisements/s: %.1f", count(before, after,
+                MetricsRegistry.ADVERTISEMENTS) / window));
+        System.out.println(String.format("Notifications/s:  %.1f", count(before, after,
+                MetricsRegistry.NOTIFICATIONS) / window));
+        System.out.println(String.format("State updates/s:  %.1f", count(before, after,
+                MetricsRegistry.STATE_UPDATES) / window));
+        HistogramSnapshot latency = after.getHistogram(Tracer.SCOPE, Tracer.TOTAL_TIME)
+                .minus(before.getHistogram(Tracer.SCOPE, Tracer.TOTAL_TIME));
+        System.out.println(String.format("Latency (us):     p50 %d, p95 %d, p99 %d, max %d (%d traced)",
+                latency.getPercentile(0.5), latency.getPercentile(0.95), latency.getPercentile(0.99),
+                latency.getMax(), latency.getCount()));
+        System.out.println("Mailbox dropped:  " + handlers.stream()
+                .mapToLong(handler -> handler.getMailboxDropped()).sum());
+        System.out.println(String.format("Heap retained:    %.1f MB, %.1f KB per device",
+                retained / 1048576.0, retained / 1024.0 / Math.max(handlers.size(), 1)));
+    }
+
+    private void linkChannels() {
+        for (BluetoothDeviceHandler handler : handlers) {
+            for (Channel channel : handler.getThing().getChannels()) {
+                if (linked.add(channel.getUID())) {
+                    handler.channelLinked(channel.getUID());
+                }
+            }
+        }
+    }
+
+    private void dispose() {
+        if (factory != null) {
+            factory.stop();
+        }
+        handlers.forEach(handler -> handler.dispose());
+        if (context != null) {
+            BluetoothContextStub.dispose(context);
+        }
+        if (manager != null) {
+            manager.dispose();
+        }
+    }
+
+    private static long count(MetricsSnapshot before, MetricsSnapshot after, String metric) {
+        // adapter scopes aggregate device scopes
+        return after.getScopes().stream().filter(scope -> scope.startsWith(MetricsRegistry.DEVICE_SCOPE))
+                .mapToLong(scope -> after.getCounter(scope, metric) - before.getCounter(scope, metric)).sum();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}